@@ -4,49 +4,306 @@ import org.springframework.web.bind.annotation.*;
 
 import com.tejinder.mini_vcs_api.dto.BranchDTO;
 import com.tejinder.mini_vcs_api.dto.CommitDTO;
+import com.tejinder.mini_vcs_api.dto.CommitPageDTO;
 import com.tejinder.mini_vcs_api.dto.DashboardDTO;
 import com.tejinder.mini_vcs_api.dto.FileDTO;
+import com.tejinder.mini_vcs_api.dto.GraphDTO;
+import com.tejinder.mini_vcs_api.dto.ReflogEntryDTO;
 import com.tejinder.mini_vcs_api.dto.StatusDTO;
+import com.tejinder.mini_vcs_api.service.RepositoryEventBus;
+import com.tejinder.mini_vcs_api.service.RepositoryRegistry;
 import com.tejinder.mini_vcs_api.service.RepositoryService;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
 import java.io.IOException;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
-@CrossOrigin(origins = "http://localhost:5173")
+/**
+ * Every endpoint is served for the default repository under /api/... and for
+ * any configured repository under /api/repos/{repoId}/...
+ */
+@CrossOrigin(
+        origins = "http://localhost:5173",
+        exposedHeaders = {
+                RepositoryController.NEXT_CURSOR_HEADER,
+                HttpHeaders.ETAG,
+                HttpHeaders.CONTENT_RANGE,
+                HttpHeaders.ACCEPT_RANGES
+        }
+)
 @RestController
 @RequestMapping("/api")
 public class RepositoryController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final RepositoryService repositoryService;
+    private final RepositoryRegistry repositoryRegistry;
+    private final RepositoryEventBus repositoryEventBus;
 
     public RepositoryController(
-            RepositoryService repositoryService
+            RepositoryService repositoryService,
+            RepositoryRegistry repositoryRegistry,
+            RepositoryEventBus repositoryEventBus
     ) {
         this.repositoryService = repositoryService;
+        this.repositoryRegistry = repositoryRegistry;
+        this.repositoryEventBus = repositoryEventBus;
+    }
+
+    @GetMapping("/repos")
+    public List<String> getRepositories() {
+        return repositoryRegistry.getIds();
+    }
+
+    /**
+     * Pages through the history newest first. The cursor for the next page
+     * is returned in the X-Next-Cursor header and omitted on the last page.
+     */
+    @GetMapping({"/commits", "/repos/{repoId}/commits"})
+    public ResponseEntity<List<CommitDTO>> getCommits(
+            @PathVariable(required = false) String repoId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long until,
+            @RequestParam(required = false) String path
+    ) {
+        CommitPageDTO page = repositoryService.getCommits(
+                repoId,
+                after,
+                Math.max(0, offset),
+                Math.max(1, Math.min(limit, 500)),
+                q,
+                since,
+                until,
+                path
+        );
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getCommits());
+    }
+
+    /**
+     * Gets a window of the commit graph with lanes already assigned, so the
+     * client can draw a long history by fetching rows as it scrolls.
+     */
+    @GetMapping({"/graph", "/repos/{repoId}/graph"})
+    public GraphDTO getGraph(
+            @PathVariable(required = false) String repoId,
+            @RequestParam(defaultValue = "0") int start,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        return repositoryService.getGraph(
+                repoId,
+                Math.max(0, start),
+                Math.max(1, Math.min(limit, 500))
+        );
+    }
+
+    @GetMapping({"/branches", "/repos/{repoId}/branches"})
+    public List<BranchDTO> getBranches(
+            @PathVariable(required = false) String repoId
+    ) {
+        return repositoryService.getBranches(repoId);
+    }
+
+    @GetMapping({"/reflog", "/repos/{repoId}/reflog"})
+    public List<ReflogEntryDTO> getReflog(
+            @PathVariable(required = false) String repoId,
+            @RequestParam(defaultValue = "HEAD") String ref,
+            @RequestParam(required = false) Long at,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long until,
+            @RequestParam(defaultValue = "50") int limit
+    ) throws IOException {
+        return repositoryService.getReflog(
+                repoId,
+                ref,
+                at,
+                since != null ? since : Long.MIN_VALUE,
+                until != null ? until : Long.MAX_VALUE,
+                Math.max(1, Math.min(limit, 500))
+        );
     }
 
-    @GetMapping("/commits")
-    public List<CommitDTO> getCommits() {
-        return repositoryService.getCommits();
+    /**
+     * Answers a poll with 304 Not Modified, without scanning the working
+     * tree, while the ETag from the previous response still matches.
+     */
+    @GetMapping({"/status", "/repos/{repoId}/status"})
+    public ResponseEntity<StatusDTO> getStatus(
+            @PathVariable(required = false) String repoId,
+            WebRequest request
+    ) throws IOException {
+        String tag = repositoryService.getStatusTag(repoId);
+        if (tag != null && request.checkNotModified(tag)) {
+            return null;
+        }
+
+        StatusDTO status = repositoryService.getStatus(repoId);
+        if (tag == null && request.checkNotModified(status.getVersion())) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(status.getVersion())
+                .body(status);
     }
 
-    @GetMapping("/branches")
-    public List<BranchDTO> getBranches() {
-        return repositoryService.getBranches();
+    @GetMapping({"/files", "/repos/{repoId}/files"})
+    public List<FileDTO> getFiles(
+            @PathVariable(required = false) String repoId
+    ) {
+        return repositoryService.getFiles(repoId);
     }
 
-    @GetMapping("/status")
-    public StatusDTO getStatus() {
-        return repositoryService.getStatus();
+    @GetMapping({"/dashboard", "/repos/{repoId}/dashboard"})
+    public DashboardDTO getDashboard(
+            @PathVariable(required = false) String repoId
+    ) {
+        return repositoryService.getDashboard(repoId);
+    }
+
+    /**
+     * Streams the content of a stored object. Objects never change, so the
+     * hash is the ETag and responses may be cached forever. A single byte
+     * range is honoured (206); a multi-range request gets the whole object.
+     */
+    @GetMapping({"/blobs/{hash}", "/repos/{repoId}/blobs/{hash}"})
+    public ResponseEntity<StreamingResponseBody> getBlob(
+            @PathVariable(required = false) String repoId,
+            @PathVariable String hash,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            WebRequest request
+    ) throws IOException {
+        long size = repositoryService.getBlobSize(repoId, hash);
+
+        if (request.checkNotModified(hash)) {
+            return null;
+        }
+
+        long start = 0;
+        long length = size;
+        HttpStatus status = HttpStatus.OK;
+
+        // A stale If-Range means the client's partial copy is of something else
+        boolean rangeApplies = range != null
+                && (ifRange == null || ifRange.equals("\"" + hash + "\""));
+
+        if (rangeApplies) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+
+            if (ranges.size() == 1) {
+                HttpRange requested = ranges.get(0);
+                if (size == 0 || !isSatisfiable(requested, size)) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                            .build();
+                }
+                start = requested.getRangeStart(size);
+                length = requested.getRangeEnd(size) - start + 1;
+                status = HttpStatus.PARTIAL_CONTENT;
+            }
+        }
+
+        long offset = start;
+        long count = length;
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .eTag(hash)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(length);
+
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            response.header(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + start + "-" + (start + length - 1) + "/" + size);
+        }
+
+        return response.body(out -> repositoryService.writeBlob(repoId, hash, offset, count, out));
+    }
+
+    private static boolean isSatisfiable(HttpRange range, long size) {
+        try {
+            return range.getRangeStart(size) < size;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Streams a diff as it is computed. Without {@code to} the working tree
+     * is compared; without {@code from}, the parent of {@code to} (or HEAD
+     * for the working tree). format=text gives a plain unified diff instead
+     * of JSON lines.
+     */
+    @GetMapping({"/diff", "/repos/{repoId}/diff"})
+    public ResponseEntity<StreamingResponseBody> getDiff(
+            @PathVariable(required = false) String repoId,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String path,
+            @RequestParam(defaultValue = "json") String format
+    ) throws IOException {
+        boolean text = format.equals("text");
+        if (!text && !format.equals("json")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+
+        return ResponseEntity.ok()
+                .contentType(text ? MediaType.TEXT_PLAIN : MediaType.APPLICATION_NDJSON)
+                .body(repositoryService.streamDiff(repoId, from, to, path, text));
+    }
+
+    /**
+     * Streams changes as server-sent events named commit-created, ref-moved,
+     * index-changed, worktree-changed and resync, so clients fetch again only
+     * what changed. A resync means events were dropped for a slow client.
+     */
+    @GetMapping(
+            value = {"/events", "/repos/{repoId}/events"},
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public SseEmitter getEvents(
+            @PathVariable(required = false) String repoId
+    ) {
+        return repositoryEventBus.subscribe(repoId);
     }
 
-    @GetMapping("/files")
-    public List<FileDTO> getFiles() {
-        return repositoryService.getFiles();
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleBadRequest(IllegalArgumentException e) {
+        return e.getMessage();
     }
 
-    @GetMapping("/dashboard")
-    public DashboardDTO getDashboard() throws IOException {
-        return repositoryService.getDashboard();
+    @ExceptionHandler(NoSuchElementException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public String handleUnknownRepository(NoSuchElementException e) {
+        return e.getMessage();
     }
 }
@@ -6,21 +6,29 @@ public class BranchDTO {
     private String head;
     private boolean current;
     private int commits;
+    private int ahead;
+    private int behind;
 
     public BranchDTO(
             String name,
             String head,
             boolean current,
-            int commits
+            int commits,
+            int ahead,
+            int behind
     ) {
         this.name = name;
         this.head = head;
         this.current = current;
         this.commits = commits;
+        this.ahead = ahead;
+        this.behind = behind;
     }
 
     public String getName() { return name; }
     public String getHead() { return head; }
     public boolean isCurrent() { return current; }
     public int getCommits() { return commits; }
+    public int getAhead() { return ahead; }
+    public int getBehind() { return behind; }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.tejinder.mini_vcs_api.dto;
+
+import java.util.List;
+
+public class CommitPageDTO {
+
+    private List<CommitDTO> commits;
+    private String nextCursor;
+
+    public CommitPageDTO(
+            List<CommitDTO> commits,
+            String nextCursor
+    ) {
+        this.commits = commits;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<CommitDTO> getCommits() {
+        return commits;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -5,17 +5,23 @@ public class DashboardDTO {
     private int commits;
     private int branches;
     private int files;
+    private long objects;
+    private long diskSize;
     private String head;
 
     public DashboardDTO(
             int commits,
             int branches,
             int files,
+            long objects,
+            long diskSize,
             String head
     ) {
         this.commits = commits;
         this.branches = branches;
         this.files = files;
+        this.objects = objects;
+        this.diskSize = diskSize;
         this.head = head;
     }
 
@@ -31,6 +37,14 @@ public class DashboardDTO {
         return files;
     }
 
+    public long getObjects() {
+        return objects;
+    }
+
+    public long getDiskSize() {
+        return diskSize;
+    }
+
     public String getHead() {
         return head;
     }
@@ -0,0 +1,56 @@
+package com.tejinder.mini_vcs_api.dto;
+
+public class DiffFileDTO {
+
+    private final String type = "file";
+    private String path;
+    private String status;
+    private String oldHash;
+    private String newHash;
+    private boolean binary;
+    private boolean tooLarge;
+
+    public DiffFileDTO(
+            String path,
+            String status,
+            String oldHash,
+            String newHash,
+            boolean binary,
+            boolean tooLarge
+    ) {
+        this.path = path;
+        this.status = status;
+        this.oldHash = oldHash;
+        this.newHash = newHash;
+        this.binary = binary;
+        this.tooLarge = tooLarge;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getOldHash() {
+        return oldHash;
+    }
+
+    public String getNewHash() {
+        return newHash;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public boolean isTooLarge() {
+        return tooLarge;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.tejinder.mini_vcs_api.dto;
+
+import java.util.List;
+
+public class DiffHunkDTO {
+
+    private final String type = "hunk";
+    private String path;
+    private int oldStart;
+    private int oldLines;
+    private int newStart;
+    private int newLines;
+    private List<String> lines;
+
+    public DiffHunkDTO(
+            String path,
+            int oldStart,
+            int oldLines,
+            int newStart,
+            int newLines,
+            List<String> lines
+    ) {
+        this.path = path;
+        this.oldStart = oldStart;
+        this.oldLines = oldLines;
+        this.newStart = newStart;
+        this.newLines = newLines;
+        this.lines = lines;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getOldStart() {
+        return oldStart;
+    }
+
+    public int getOldLines() {
+        return oldLines;
+    }
+
+    public int getNewStart() {
+        return newStart;
+    }
+
+    public int getNewLines() {
+        return newLines;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.tejinder.mini_vcs_api.dto;
+
+import java.util.List;
+
+public class GraphDTO {
+
+    private int total;
+    private int width;
+    private int start;
+    private List<GraphRowDTO> rows;
+    private List<GraphEdgeDTO> edges;
+
+    public GraphDTO(
+            int total,
+            int width,
+            int start,
+            List<GraphRowDTO> rows,
+            List<GraphEdgeDTO> edges
+    ) {
+        this.total = total;
+        this.width = width;
+        this.start = start;
+        this.rows = rows;
+        this.edges = edges;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public List<GraphRowDTO> getRows() {
+        return rows;
+    }
+
+    public List<GraphEdgeDTO> getEdges() {
+        return edges;
+    }
+}
\ No newline at end of file
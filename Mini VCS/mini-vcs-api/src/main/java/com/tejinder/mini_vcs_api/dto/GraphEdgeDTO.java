@@ -0,0 +1,44 @@
+package com.tejinder.mini_vcs_api.dto;
+
+public class GraphEdgeDTO {
+
+    private int fromRow;
+    private int toRow;
+    private int fromLane;
+    private int toLane;
+    private int lane;
+
+    public GraphEdgeDTO(
+            int fromRow,
+            int toRow,
+            int fromLane,
+            int toLane,
+            int lane
+    ) {
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.fromLane = fromLane;
+        this.toLane = toLane;
+        this.lane = lane;
+    }
+
+    public int getFromRow() {
+        return fromRow;
+    }
+
+    public int getToRow() {
+        return toRow;
+    }
+
+    public int getFromLane() {
+        return fromLane;
+    }
+
+    public int getToLane() {
+        return toLane;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+}
\ No newline at end of file
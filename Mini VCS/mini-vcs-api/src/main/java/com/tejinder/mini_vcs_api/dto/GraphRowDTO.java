@@ -0,0 +1,67 @@
+package com.tejinder.mini_vcs_api.dto;
+
+import java.util.List;
+
+public class GraphRowDTO {
+
+    private int row;
+    private String id;
+    private String message;
+    private String timestamp;
+    private int lane;
+    private List<String> parents;
+    private List<String> branches;
+    private boolean head;
+
+    public GraphRowDTO(
+            int row,
+            String id,
+            String message,
+            String timestamp,
+            int lane,
+            List<String> parents,
+            List<String> branches,
+            boolean head
+    ) {
+        this.row = row;
+        this.id = id;
+        this.message = message;
+        this.timestamp = timestamp;
+        this.lane = lane;
+        this.parents = parents;
+        this.branches = branches;
+        this.head = head;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    public List<String> getParents() {
+        return parents;
+    }
+
+    public List<String> getBranches() {
+        return branches;
+    }
+
+    public boolean isHead() {
+        return head;
+    }
+}
\ No newline at end of file
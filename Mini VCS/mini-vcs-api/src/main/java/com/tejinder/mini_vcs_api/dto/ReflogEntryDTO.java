@@ -0,0 +1,44 @@
+package com.tejinder.mini_vcs_api.dto;
+
+public class ReflogEntryDTO {
+
+    private String ref;
+    private String oldId;
+    private String newId;
+    private String timestamp;
+    private String message;
+
+    public ReflogEntryDTO(
+            String ref,
+            String oldId,
+            String newId,
+            String timestamp,
+            String message
+    ) {
+        this.ref = ref;
+        this.oldId = oldId;
+        this.newId = newId;
+        this.timestamp = timestamp;
+        this.message = message;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public String getOldId() {
+        return oldId;
+    }
+
+    public String getNewId() {
+        return newId;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.tejinder.mini_vcs_api.dto;
+
+public class RepositoryEventDTO {
+
+    private String repo;
+    private String type;
+    private String ref;
+    private String oldId;
+    private String newId;
+
+    public RepositoryEventDTO(
+            String repo,
+            String type,
+            String ref,
+            String oldId,
+            String newId
+    ) {
+        this.repo = repo;
+        this.type = type;
+        this.ref = ref;
+        this.oldId = oldId;
+        this.newId = newId;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public String getOldId() {
+        return oldId;
+    }
+
+    public String getNewId() {
+        return newId;
+    }
+}
\ No newline at end of file
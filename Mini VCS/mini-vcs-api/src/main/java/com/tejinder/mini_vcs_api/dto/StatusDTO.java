@@ -4,18 +4,35 @@ import java.util.List;
 
 public class StatusDTO {
 
+    private String version;
+    private List<String> staged;
     private List<String> modified;
     private List<String> deleted;
     private List<String> untracked;
+    private List<String> conflicted;
 
     public StatusDTO(
+            String version,
+            List<String> staged,
             List<String> modified,
             List<String> deleted,
-            List<String> untracked
+            List<String> untracked,
+            List<String> conflicted
     ) {
+        this.version = version;
+        this.staged = staged;
         this.modified = modified;
         this.deleted = deleted;
         this.untracked = untracked;
+        this.conflicted = conflicted;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<String> getStaged() {
+        return staged;
     }
 
     public List<String> getModified() {
@@ -29,4 +46,8 @@ public class StatusDTO {
     public List<String> getUntracked() {
         return untracked;
     }
+
+    public List<String> getConflicted() {
+        return conflicted;
+    }
 }
\ No newline at end of file
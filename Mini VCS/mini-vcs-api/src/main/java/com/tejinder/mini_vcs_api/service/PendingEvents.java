@@ -0,0 +1,63 @@
+package com.tejinder.mini_vcs_api.service;
+
+import com.tejinder.mini_vcs_api.vcs.core.RepositoryEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The events waiting to be sent to one subscriber.
+ *
+ * Events are coalesced by key, oldest first. Once more than the capacity in
+ * distinct events are waiting, they are all dropped and replaced by a single
+ * resync, and later events are ignored until that has been taken. Not
+ * thread-safe; the owner synchronizes.
+ */
+final class PendingEvents {
+
+    private final int capacity;
+    private final LinkedHashMap<String, RepositoryEvent> pending = new LinkedHashMap<>();
+    private boolean overflowed;
+
+    PendingEvents(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds an event, folding it into a waiting one with the same key
+     * @param event The event
+     */
+    void add(RepositoryEvent event) {
+        if (overflowed) {
+            return;
+        }
+
+        RepositoryEvent earlier = pending.get(event.getKey());
+        if (earlier != null) {
+            pending.put(event.getKey(), earlier.coalesce(event));
+        } else if (pending.size() >= capacity) {
+            pending.clear();
+            overflowed = true;
+        } else {
+            pending.put(event.getKey(), event);
+        }
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty() && !overflowed;
+    }
+
+    /**
+     * Takes every waiting event
+     * @return The events oldest first, or just a resync after an overflow
+     */
+    List<RepositoryEvent> take() {
+        List<RepositoryEvent> batch = overflowed
+                ? List.of(RepositoryEvent.resync())
+                : new ArrayList<>(pending.values());
+        pending.clear();
+        overflowed = false;
+        return batch;
+    }
+}
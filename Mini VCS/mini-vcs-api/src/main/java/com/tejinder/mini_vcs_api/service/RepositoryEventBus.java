@@ -0,0 +1,233 @@
+package com.tejinder.mini_vcs_api.service;
+
+import com.tejinder.mini_vcs_api.dto.RepositoryEventDTO;
+import com.tejinder.mini_vcs_api.vcs.core.RepositoryEvent;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import vcs.util.TaskScope;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans repository events out to server-sent event subscribers.
+ *
+ * Every repository reports its changes through the registry to this one
+ * bus. Each subscriber has its own bounded buffer, drained by its own task,
+ * so a slow client never holds up a repository or other clients. Pending
+ * events are coalesced by key (a ref that moves twice is sent once); if a
+ * client falls more than {@link #MAX_PENDING_EVENTS} distinct events behind,
+ * its buffer is replaced by a single resync event.
+ */
+@Component
+public class RepositoryEventBus {
+
+    private static final int MAX_PENDING_EVENTS = 64;
+    private static final long HEARTBEAT_SECONDS = 25;
+
+    private final RepositoryRegistry registry;
+
+    private final Map<String, Set<Subscriber>> subscribers
+            = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService heartbeat
+            = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mini-vcs-events-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public RepositoryEventBus(RepositoryRegistry registry) {
+
+        this.registry = registry;
+
+        registry.addListener(this::publish);
+
+        // Keeps idle connections open through proxies and finds dead clients
+        heartbeat.scheduleAtFixedRate(
+                this::sendHeartbeats,
+                HEARTBEAT_SECONDS,
+                HEARTBEAT_SECONDS,
+                TimeUnit.SECONDS
+        );
+    }
+
+    /**
+     * Subscribes to the events of a repository.
+     * @param repoId The repo id, or null for the default repo
+     * @return The emitter to return from the request
+     */
+    public SseEmitter subscribe(String repoId) {
+
+        String key = registry.resolveId(repoId);
+
+        // Loads the repository, which starts watching its working tree
+        registry.get(key);
+
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(key, emitter);
+
+        subscribers
+                .computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+                .add(subscriber);
+
+        emitter.onCompletion(subscriber::remove);
+        emitter.onTimeout(subscriber::remove);
+        emitter.onError(e -> subscriber.remove());
+
+        // Sends the response headers right away
+        subscriber.heartbeat();
+
+        return emitter;
+    }
+
+    private void publish(String repoId, RepositoryEvent event) {
+
+        Set<Subscriber> set = subscribers.get(repoId);
+
+        if (set == null) {
+            return;
+        }
+
+        for (Subscriber subscriber : set) {
+            subscriber.offer(event);
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber subscriber : set) {
+                subscriber.heartbeat();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        heartbeat.shutdownNow();
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber subscriber : set) {
+                subscriber.emitter.complete();
+            }
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * One client: its pending events and whether a task is sending them.
+     */
+    private class Subscriber {
+
+        private final String repoId;
+        private final SseEmitter emitter;
+
+        /** Guarded by this. */
+        private final PendingEvents pending = new PendingEvents(MAX_PENDING_EVENTS);
+        private boolean heartbeatDue;
+        private boolean draining;
+        private volatile boolean closed;
+
+        Subscriber(String repoId, SseEmitter emitter) {
+            this.repoId = repoId;
+            this.emitter = emitter;
+        }
+
+        void offer(RepositoryEvent event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                pending.add(event);
+            }
+            scheduleDrain();
+        }
+
+        void heartbeat() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                heartbeatDue = true;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            TaskScope.execute(this::drain);
+        }
+
+        /** Sends until nothing is pending; runs on one task per subscriber at a time. */
+        private void drain() {
+            while (true) {
+                List<RepositoryEvent> batch;
+                boolean sendHeartbeat;
+
+                synchronized (this) {
+                    if (closed || (pending.isEmpty() && !heartbeatDue)) {
+                        draining = false;
+                        return;
+                    }
+
+                    batch = pending.take();
+                    sendHeartbeat = heartbeatDue && batch.isEmpty();
+                    heartbeatDue = false;
+                }
+
+                try {
+                    if (sendHeartbeat) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    for (RepositoryEvent event : batch) {
+                        emitter.send(toEvent(event));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away
+                    remove();
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+
+        private SseEmitter.SseEventBuilder toEvent(RepositoryEvent event) {
+
+            String name = event.getType().name().toLowerCase(Locale.ROOT).replace('_', '-');
+
+            return SseEmitter.event()
+                    .name(name)
+                    .data(
+                            new RepositoryEventDTO(
+                                    repoId,
+                                    name,
+                                    event.getRef(),
+                                    event.getOldId(),
+                                    event.getNewId()
+                            ),
+                            MediaType.APPLICATION_JSON
+                    );
+        }
+
+        void remove() {
+            closed = true;
+            Set<Subscriber> set = subscribers.get(repoId);
+            if (set != null) {
+                set.remove(this);
+            }
+        }
+    }
+}
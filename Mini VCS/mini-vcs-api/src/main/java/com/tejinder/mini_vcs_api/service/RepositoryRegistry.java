@@ -0,0 +1,262 @@
+package com.tejinder.mini_vcs_api.service;
+
+import com.tejinder.mini_vcs_api.vcs.core.Repository;
+import com.tejinder.mini_vcs_api.vcs.core.RepositoryEvent;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps one independently loaded {@link Repository} per configured repo id.
+ *
+ * Repositories are configured as mini-vcs.repos.&lt;id&gt;=&lt;path&gt; and
+ * loaded on first use. The least recently used ones are closed once more
+ * than mini-vcs.registry.max-open are open or their estimated heap exceeds
+ * mini-vcs.registry.max-memory; they are simply loaded again when next used.
+ *
+ * A request may still be using a repository when it is evicted, so evicted
+ * repositories are only weakly held: one that is still reachable is handed
+ * out again rather than loaded a second time. There is never more than one
+ * live handle, with its own writer lock, journal and reflog, per path.
+ */
+@Component
+public class RepositoryRegistry implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_OPEN = 16;
+    private static final DataSize DEFAULT_MAX_MEMORY = DataSize.ofMegabytes(256);
+
+    private final Map<String, String> paths;
+    private final String defaultId;
+    private final int maxOpen;
+    private final long maxMemory;
+
+    /** Open repositories, least recently used first. */
+    private final LinkedHashMap<String, Repository> open
+            = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Evicted repositories, until nothing uses them any more. */
+    private final Map<String, WeakReference<Repository>> evicted
+            = new HashMap<>();
+
+    /** One lock per id, so loading one repository never blocks another. */
+    private final Map<String, Object> loadLocks
+            = new ConcurrentHashMap<>();
+
+    private final List<BiConsumer<String, RepositoryEvent>> listeners
+            = new CopyOnWriteArrayList<>();
+
+    public RepositoryRegistry(Environment environment) {
+
+        Binder binder = Binder.get(environment);
+
+        this.paths = new TreeMap<>(
+                binder.bind(
+                        "mini-vcs.repos",
+                        Bindable.mapOf(String.class, String.class)
+                ).orElse(Map.of())
+        );
+
+        this.defaultId = binder.bind("mini-vcs.default-repo", String.class)
+                .orElse(paths.size() == 1 ? paths.keySet().iterator().next() : "default");
+
+        this.maxOpen = Math.max(1,
+                binder.bind("mini-vcs.registry.max-open", Integer.class)
+                        .orElse(DEFAULT_MAX_OPEN));
+
+        this.maxMemory = binder.bind("mini-vcs.registry.max-memory", DataSize.class)
+                .orElse(DEFAULT_MAX_MEMORY)
+                .toBytes();
+    }
+
+    /**
+     * Gets the repository with the given id, loading it if it is not open.
+     * @param id The configured repo id, or null for the default repo
+     * @return The repository
+     * @throws NoSuchElementException If no repo is configured with the id
+     */
+    public Repository get(String id) {
+
+        String key = resolveId(id);
+
+        String path = paths.get(key);
+
+        synchronized (this) {
+            Repository repository = open.get(key);
+            if (repository != null) {
+                return repository;
+            }
+        }
+
+        synchronized (loadLocks.computeIfAbsent(key, k -> new Object())) {
+
+            Repository revived;
+            synchronized (this) {
+                Repository repository = open.get(key);
+                if (repository != null) {
+                    return repository;
+                }
+                revived = revive(key);
+            }
+
+            if (revived != null) {
+                if (!listeners.isEmpty()) {
+                    // Eviction stopped the watcher that produces worktree events
+                    revived.getStatusTag();
+                }
+                return revived;
+            }
+
+            Repository repository = Repository.open(path);
+
+            if (!listeners.isEmpty()) {
+                repository.addListener(event -> fire(key, event));
+            }
+
+            synchronized (this) {
+                open.put(key, repository);
+                evict(key);
+            }
+
+            return repository;
+        }
+    }
+
+    /**
+     * Gets the configured id a route refers to.
+     * @param id The repo id, or null for the default repo
+     * @return The id
+     * @throws NoSuchElementException If no repo is configured with the id
+     */
+    public String resolveId(String id) {
+
+        String key = id != null ? id : defaultId;
+
+        if (!paths.containsKey(key)) {
+            throw new NoSuchElementException("Unknown repository: " + key);
+        }
+
+        return key;
+    }
+
+    /**
+     * Registers a listener for changes to every repository, including ones
+     * loaded again after eviction. Must be registered before repositories
+     * are used; it is called while the changed repository is locked.
+     * @param listener Called with the repo id and the event
+     */
+    public void addListener(BiConsumer<String, RepositoryEvent> listener) {
+        listeners.add(listener);
+    }
+
+    private void fire(String id, RepositoryEvent event) {
+        for (BiConsumer<String, RepositoryEvent> listener : listeners) {
+            listener.accept(id, event);
+        }
+    }
+
+    /**
+     * Lists the configured repo ids.
+     * @return The ids, sorted
+     */
+    public List<String> getIds() {
+        return new ArrayList<>(paths.keySet());
+    }
+
+    /**
+     * Gets the id used by routes that do not name a repo.
+     * @return The default repo id
+     */
+    public String getDefaultId() {
+        return defaultId;
+    }
+
+    /**
+     * Closes every open repository when the application shuts down, which
+     * also forces their pending reflog entries.
+     */
+    @Override
+    public synchronized void close() {
+        for (Repository repository : open.values()) {
+            repository.close();
+        }
+        for (WeakReference<Repository> reference : evicted.values()) {
+            Repository repository = reference.get();
+            if (repository != null) {
+                repository.close();
+            }
+        }
+        open.clear();
+        evicted.clear();
+    }
+
+    /**
+     * Makes an evicted repository current again if something still holds it.
+     * @return The repository, or null if it has been collected
+     */
+    private Repository revive(String key) {
+        WeakReference<Repository> reference = evicted.remove(key);
+        Repository repository = reference != null ? reference.get() : null;
+        if (repository != null) {
+            open.put(key, repository);
+            evict(key);
+        }
+        return repository;
+    }
+
+    /**
+     * Checks if a repository is currently open, i.e. not evicted.
+     * @param id The configured repo id
+     * @return true if it is open
+     */
+    synchronized boolean isOpen(String id) {
+        return open.containsKey(id);
+    }
+
+    /**
+     * Closes the least recently used repositories until the open count and
+     * estimated memory fit the limits. The repository just loaded is kept
+     * even if it alone exceeds the memory cap. Runs only after a load or
+     * revival, so growth of open repositories is caught at the next one.
+     * Closing only stops the watcher and syncs the reflog; a request still
+     * holding the repository can keep using it.
+     */
+    private void evict(String keep) {
+
+        long memory = 0;
+        for (Repository repository : open.values()) {
+            memory += repository.estimateMemory();
+        }
+
+        Iterator<Map.Entry<String, Repository>> eldest = open.entrySet().iterator();
+
+        while ((open.size() > maxOpen || memory > maxMemory) && eldest.hasNext()) {
+
+            Map.Entry<String, Repository> entry = eldest.next();
+
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+
+            memory -= entry.getValue().estimateMemory();
+            entry.getValue().close();
+            evicted.put(entry.getKey(), new WeakReference<>(entry.getValue()));
+            eldest.remove();
+        }
+    }
+}
@@ -2,85 +2,389 @@ package com.tejinder.mini_vcs_api.service;
 
 import com.tejinder.mini_vcs_api.dto.BranchDTO;
 import com.tejinder.mini_vcs_api.dto.CommitDTO;
+import com.tejinder.mini_vcs_api.dto.CommitPageDTO;
 import com.tejinder.mini_vcs_api.dto.DashboardDTO;
+import com.tejinder.mini_vcs_api.dto.DiffFileDTO;
+import com.tejinder.mini_vcs_api.dto.DiffHunkDTO;
 import com.tejinder.mini_vcs_api.dto.FileDTO;
+import com.tejinder.mini_vcs_api.dto.GraphDTO;
+import com.tejinder.mini_vcs_api.dto.GraphEdgeDTO;
+import com.tejinder.mini_vcs_api.dto.GraphRowDTO;
+import com.tejinder.mini_vcs_api.dto.ReflogEntryDTO;
 import com.tejinder.mini_vcs_api.dto.StatusDTO;
 import com.tejinder.mini_vcs_api.vcs.core.Commit;
+import com.tejinder.mini_vcs_api.vcs.core.CommitLookup;
+import com.tejinder.mini_vcs_api.vcs.core.DiffTool;
+import com.tejinder.mini_vcs_api.vcs.core.FileDiff;
+import com.tejinder.mini_vcs_api.vcs.core.GraphLayout;
+import com.tejinder.mini_vcs_api.vcs.core.Reflog;
 import com.tejinder.mini_vcs_api.vcs.core.Repository;
+import com.tejinder.mini_vcs_api.vcs.core.RepositorySnapshot;
+import com.tejinder.mini_vcs_api.vcs.core.TreeDiff;
+import com.tejinder.mini_vcs_api.vcs.core.WorkingTreeStatus;
 
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
+import vcs.datastructures.LRUCache;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
 @Service
 public class RepositoryService {
 
-    public List<CommitDTO> getCommits() {
+    private static final int MAX_SCANNED_COMMITS = 5000;
+    private static final int COMMIT_PAGE_CACHE_SIZE = 256;
 
-        List<CommitDTO> result
+    private final RepositoryRegistry registry;
+    private final JsonMapper jsonMapper;
+
+    private final LRUCache<String, CommitPageDTO> commitPages
+            = new LRUCache<>(COMMIT_PAGE_CACHE_SIZE);
+
+    public RepositoryService(
+            RepositoryRegistry registry,
+            JsonMapper jsonMapper
+    ) {
+        this.registry = registry;
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * Gets one page of the first-parent history, newest first, keeping only
+     * commits that match every given filter; a path filter names a file or
+     * a directory, which matches changes to anything below it. The walk
+     * starts after the cursor (or at HEAD, skipping offset commits) and
+     * loads commits lazily, so the first page costs the same however deep
+     * the history is. A walk that examines {@link #MAX_SCANNED_COMMITS}
+     * commits without filling the page stops early and returns a cursor to
+     * resume from.
+     */
+    public CommitPageDTO getCommits(
+            String repoId,
+            String after,
+            int offset,
+            int limit,
+            String query,
+            Long since,
+            Long until,
+            String path
+    ) {
+
+        Repository repo
+                = registry.get(repoId);
+
+        RepositorySnapshot snapshot
+                = repo.snapshot();
+
+        CommitLookup history
+                = snapshot.getHistory();
+
+        String headId
+                = snapshot.getHeadId();
+
+        if (after != null && history.getCommit(after) == null) {
+            throw new IllegalArgumentException("Unknown commit: " + after);
+        }
+
+        String startId
+                = after != null
+                ? history.getParentId(after)
+                : headId;
+
+        // History never changes below a commit, so pages are cached by where they start
+        String key
+                = repo.getRootPath() + "|" + startId + "|" + (after == null ? offset : 0)
+                + "|" + limit + "|" + query + "|" + since + "|" + until + "|" + path;
+
+        CommitPageDTO cached
+                = commitPages.get(key);
+
+        if (cached != null) {
+            return withHead(cached, headId);
+        }
+
+        String needle
+                = query != null && !query.isEmpty()
+                ? query.toLowerCase()
+                : null;
+
+        List<CommitDTO> page
                 = new ArrayList<>();
 
-        try {
+        String lastSeen
+                = null;
 
-            Repository repo
-                    = Repository.getInstance(
-                            "D:/Projects/Mini-Version-Control-System/Mini VCS/myrepo"
-                    );
+        int scanned
+                = 0;
 
-            List<Commit> commits
-                    = repo.getCommitHistory()
-                            .getCommitHistory();
+        Iterator<Commit> walk
+                = history.iterate(startId);
 
-            for (Commit commit : commits) {
+        for (int i = 0; after == null && i < offset && walk.hasNext(); i++) {
+            walk.next();
+        }
 
-                result.add(
-                        new CommitDTO(
-                                commit.getId(),
-                                commit.getMessage(),
-                                commit.getParentId(),
-                                commit.getTimestamp().toString(),
-                                commit.getId().equals(
-                                        repo.getHeadCommit().getId()
-                                )
-                        )
-                );
+        while (page.size() < limit && scanned < MAX_SCANNED_COMMITS && walk.hasNext()) {
+
+            Commit commit
+                    = walk.next();
+
+            lastSeen = commit.getId();
+            scanned++;
+
+            long time
+                    = commit.getTimestamp().getTime();
+
+            if (until != null && time > until) {
+                continue;
             }
 
-        } catch (Exception e) {
+            // First-parent history is ordered by time, so nothing older can match
+            if (since != null && time < since) {
+                lastSeen = null;
+                break;
+            }
 
-            e.printStackTrace();
+            if (needle != null && (commit.getMessage() == null
+                    || !commit.getMessage().toLowerCase().contains(needle))) {
+                continue;
+            }
+
+            if (path != null && !changesPath(history, commit, path)) {
+                continue;
+            }
+
+            page.add(
+                    new CommitDTO(
+                            commit.getId(),
+                            commit.getMessage(),
+                            commit.getParentId(),
+                            commit.getTimestamp().toString(),
+                            false
+                    )
+            );
         }
 
-        return result;
+        String nextCursor
+                = lastSeen != null && walk.hasNext()
+                ? lastSeen
+                : null;
+
+        CommitPageDTO result
+                = new CommitPageDTO(page, nextCursor);
+
+        commitPages.put(key, result);
+
+        return withHead(result, headId);
+    }
+
+    /**
+     * Checks whether a commit changed a file, or any file below a
+     * directory, relative to its first parent.
+     */
+    private static boolean changesPath(CommitLookup history, Commit commit, String path) {
+
+        Commit parent
+                = history.getCommit(commit.getParentId());
+
+        String file
+                = path.endsWith("/")
+                ? path.substring(0, path.length() - 1)
+                : path;
+
+        if (!Objects.equals(versionOf(parent, file), commit.getFileVersionId(file))) {
+            return true;
+        }
+
+        String directory
+                = file + "/";
+
+        for (String changed : commit.getFiles()) {
+            if (changed.startsWith(directory)
+                    && !Objects.equals(versionOf(parent, changed), commit.getFileVersionId(changed))) {
+                return true;
+            }
+        }
+
+        // Files under the directory that the commit deleted
+        if (parent != null) {
+            for (String removed : parent.getFiles()) {
+                if (removed.startsWith(directory) && commit.getFileVersionId(removed) == null) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static String versionOf(Commit commit, String path) {
+        return commit != null ? commit.getFileVersionId(path) : null;
+    }
+
+    /**
+     * Copies a cached page, marking the commit HEAD currently points to.
+     */
+    private static CommitPageDTO withHead(CommitPageDTO page, String headId) {
+
+        List<CommitDTO> commits
+                = new ArrayList<>(page.getCommits().size());
+
+        for (CommitDTO commit : page.getCommits()) {
+
+            commits.add(
+                    new CommitDTO(
+                            commit.getId(),
+                            commit.getMessage(),
+                            commit.getParent(),
+                            commit.getTimestamp(),
+                            commit.getId().equals(headId)
+                    )
+            );
+        }
+
+        return new CommitPageDTO(commits, page.getNextCursor());
+    }
+
+    /**
+     * Gets one window of the laid-out commit graph: the rows from start, and
+     * every edge that reaches into them, including edges from commits above
+     * the window. Only the commits in the window are loaded.
+     */
+    public GraphDTO getGraph(String repoId, int start, int limit) {
+
+        Repository repo
+                = registry.get(repoId);
+
+        RepositorySnapshot snapshot
+                = repo.snapshot();
+
+        GraphLayout layout
+                = repo.getGraphLayout();
+
+        CommitLookup history
+                = snapshot.getHistory();
+
+        Map<String, List<String>> branchesAt
+                = new HashMap<>();
+
+        for (Map.Entry<String, String> branch : snapshot.getBranches().entrySet()) {
+            if (branch.getValue() != null) {
+                branchesAt.computeIfAbsent(branch.getValue(), id -> new ArrayList<>())
+                        .add(branch.getKey());
+            }
+        }
+
+        int end
+                = Math.min(layout.size(), start + limit);
+
+        List<GraphRowDTO> rows
+                = new ArrayList<>();
+
+        for (int row = start; row < end; row++) {
+
+            String id
+                    = layout.getId(row);
+
+            Commit commit
+                    = history.getCommit(id);
+
+            List<String> parents
+                    = new ArrayList<>();
+
+            for (int parentRow : layout.getParentRows(row)) {
+                parents.add(layout.getId(parentRow));
+            }
+
+            rows.add(
+                    new GraphRowDTO(
+                            row,
+                            id,
+                            commit != null ? commit.getMessage() : null,
+                            commit != null ? commit.getTimestamp().toString() : null,
+                            layout.getLane(row),
+                            parents,
+                            branchesAt.getOrDefault(id, List.of()),
+                            id.equals(snapshot.getHeadId())
+                    )
+            );
+        }
+
+        List<GraphEdgeDTO> edges
+                = new ArrayList<>();
+
+        for (GraphLayout.Edge edge : layout.getEdges(start, end)) {
+
+            edges.add(
+                    new GraphEdgeDTO(
+                            edge.getFromRow(),
+                            edge.getToRow(),
+                            edge.getFromLane(),
+                            edge.getToLane(),
+                            edge.getLane()
+                    )
+            );
+        }
+
+        return new GraphDTO(layout.size(), layout.getWidth(), start, rows, edges);
     }
 
-    public List<BranchDTO> getBranches() {
+    public List<BranchDTO> getBranches(String repoId) {
 
         List<BranchDTO> result = new ArrayList<>();
 
+        Repository repo
+                = registry.get(repoId);
+
         try {
 
-            Repository repo
-                    = Repository.getInstance(
-                            "D:/Projects/Mini-Version-Control-System/Mini VCS/myrepo"
-                    );
+            RepositorySnapshot snapshot
+                    = repo.snapshot();
 
-            List<String> branches
-                    = repo.getCommitHistory().getBranches();
+            Map<String, String> branches
+                    = snapshot.getBranches();
 
             String currentBranch
-                    = repo.getCommitHistory().getCurrentBranch();
+                    = snapshot.getCurrentBranch();
+
+            String currentHead
+                    = branches.get(currentBranch);
+
+            // Each count is a few bitmap operations with the reachability
+            // index, so forking threads for them would cost more than it saves
+            for (String branch : branches.keySet()) {
 
-            for (String branch : branches) {
+                String head
+                        = branches.get(branch);
+
+                int[] aheadBehind
+                        = snapshot.getHistory()
+                                .getAheadBehind(head, currentHead);
 
                 result.add(
                         new BranchDTO(
                                 branch,
-                                repo.getCommitHistory()
-                                        .getBranchHead(branch),
-                                branch.equals(currentBranch), 0
+                                head,
+                                branch.equals(currentBranch),
+                                snapshot.getHistory().countCommits(head),
+                                aheadBehind[0],
+                                aheadBehind[1]
                         )
                 );
             }
@@ -92,37 +396,92 @@ public class RepositoryService {
         return result;
     }
 
-    public StatusDTO getStatus() {
+    /**
+     * Reads the reflog of HEAD or a branch. When a time is given, only the
+     * entry in effect at that time is returned.
+     * @throws IllegalArgumentException If the ref name is invalid
+     */
+    public List<ReflogEntryDTO> getReflog(
+            String repoId,
+            String ref,
+            Long at,
+            long since,
+            long until,
+            int limit
+    ) throws IOException {
+
+        List<ReflogEntryDTO> result = new ArrayList<>();
+
+        Repository repo
+                = registry.get(repoId);
+
+        List<Reflog.Entry> entries = new ArrayList<>();
+
+        if (at != null) {
+
+            Reflog.Entry entry = repo.getReflogAt(ref, at);
+
+            if (entry != null) {
+                entries.add(entry);
+            }
+
+        } else {
+
+            entries = repo.getReflog(ref, since, until, limit);
+        }
+
+        for (Reflog.Entry entry : entries) {
+
+            result.add(
+                    new ReflogEntryDTO(
+                            ref,
+                            entry.getOldId(),
+                            entry.getNewId(),
+                            new Date(entry.getTimestamp()).toString(),
+                            entry.getMessage()
+                    )
+            );
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets a tag for the current status without scanning the working tree
+     * @return The tag, or null if it can only be known by scanning
+     */
+    public String getStatusTag(String repoId) {
+
+        return registry.get(repoId).getStatusTag();
+    }
+
+    public StatusDTO getStatus(String repoId) throws IOException {
+
+        WorkingTreeStatus status
+                = registry.get(repoId).getStatus();
 
         return new StatusDTO(
-                List.of(
-                        "hello.txt",
-                        "notes.txt"
-                ),
-                List.of(
-                        "old.txt"
-                ),
-                List.of(
-                        "temp.txt",
-                        "draft.txt"
-                )
+                status.getVersion(),
+                status.getStaged(),
+                status.getModified(),
+                status.getDeleted(),
+                status.getUntracked(),
+                status.getConflicted()
         );
     }
 
-    public List<FileDTO> getFiles() {
+    public List<FileDTO> getFiles(String repoId) {
 
         List<FileDTO> result
                 = new ArrayList<>();
 
-        try {
+        Repository repo
+                = registry.get(repoId);
 
-            Repository repo
-                    = Repository.getInstance(
-                            "D:/Projects/Mini-Version-Control-System/Mini VCS/myrepo"
-                    );
+        try {
 
             Commit head
-                    = repo.getHeadCommit();
+                    = repo.snapshot().getHeadCommit();
 
             if (head == null) {
                 return result;
@@ -148,36 +507,152 @@ public class RepositoryService {
         return result;
     }
 
-    public DashboardDTO getDashboard() throws IOException {
+    /**
+     * Gets the size of a stored object
+     * @throws IllegalArgumentException If the hash is not a well-formed object id
+     * @throws NoSuchElementException If there is no such object
+     */
+    public long getBlobSize(String repoId, String hash) throws IOException {
 
-        Repository repo
-                    = Repository.getInstance(
-                            "D:/Projects/Mini-Version-Control-System/Mini VCS/myrepo"
-                    );
+        if (!Repository.isObjectId(hash)) {
+            throw new IllegalArgumentException("Invalid object id: " + hash);
+        }
+
+        long size
+                = registry.get(repoId).getObjectSize(hash);
+
+        if (size < 0) {
+            throw new NoSuchElementException("Unknown object: " + hash);
+        }
+
+        return size;
+    }
+
+    /**
+     * Streams part of a stored object to the client without loading it
+     */
+    public void writeBlob(String repoId, String hash, long offset, long length, OutputStream out)
+            throws IOException {
+
+        registry.get(repoId).copyObject(
+                hash,
+                offset,
+                length,
+                Channels.newChannel(out)
+        );
+    }
+
+    /**
+     * Prepares a diff and returns a body that streams it, file by file, as
+     * they are computed. Revisions and the path are checked before anything
+     * is written, so mistakes still get a proper error status.
+     * @param text true for a plain unified diff, false for JSON lines: one
+     *             "file" object per changed file followed by its "hunk" objects
+     */
+    public StreamingResponseBody streamDiff(String repoId, String from, String to, String path, boolean text)
+            throws IOException {
+
+        TreeDiff diff
+                = registry.get(repoId).diff(from, to, path);
+
+        return out -> {
+
+            Writer writer
+                    = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+            diff.forEach(file -> {
+
+                if (text) {
+                    writeUnifiedDiff(file, writer);
+                } else {
+                    writeDiffLines(file, writer);
+                }
 
-        int commits
-                = repo.getCommitHistory()
-                        .getAllCommits()
-                        .size();
+                // Hand each file to the client as soon as it is done
+                writer.flush();
+            });
+
+            writer.flush();
+        };
+    }
+
+    private void writeDiffLines(FileDiff file, Writer writer) throws IOException {
+
+        writer.write(jsonMapper.writeValueAsString(
+                new DiffFileDTO(
+                        file.getPath(),
+                        file.getStatus().name().toLowerCase(Locale.ROOT),
+                        file.getOldHash(),
+                        file.getNewHash(),
+                        file.isBinary(),
+                        file.isTooLarge()
+                )
+        ));
+        writer.write('\n');
+
+        for (DiffTool.Hunk hunk : file.getHunks()) {
+
+            writer.write(jsonMapper.writeValueAsString(
+                    new DiffHunkDTO(
+                            file.getPath(),
+                            hunk.getOldStart(),
+                            hunk.getOldCount(),
+                            hunk.getNewStart(),
+                            hunk.getNewCount(),
+                            hunk.getLines()
+                    )
+            ));
+            writer.write('\n');
+        }
+    }
+
+    private static void writeUnifiedDiff(FileDiff file, Writer writer) throws IOException {
+
+        String oldName = file.getOldHash() != null ? "a/" + file.getPath() : "/dev/null";
+        String newName = file.getNewHash() != null ? "b/" + file.getPath() : "/dev/null";
+
+        writer.write("diff --mini-vcs a/" + file.getPath() + " b/" + file.getPath() + "\n");
+
+        if (file.isBinary()) {
+            writer.write("Binary files " + oldName + " and " + newName + " differ\n");
+            return;
+        }
+        if (file.isTooLarge()) {
+            writer.write("Files " + oldName + " and " + newName + " differ (too large to diff)\n");
+            return;
+        }
+
+        writer.write("--- " + oldName + "\n");
+        writer.write("+++ " + newName + "\n");
+
+        for (DiffTool.Hunk hunk : file.getHunks()) {
+            writer.write(hunk.getHeader() + "\n");
+            for (String line : hunk.getLines()) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
 
-        int branches
-                = repo.getCommitHistory()
-                        .getBranches()
-                        .size();
+    /**
+     * Reads the dashboard totals from the latest snapshot. They are kept up
+     * to date by the repository as it changes, so this does no I/O.
+     */
+    public DashboardDTO getDashboard(String repoId) {
 
-        int files =
-                repo.getTrackedFileCount();
+        RepositorySnapshot snapshot
+                = registry.get(repoId).snapshot();
 
-        String head
-                = repo.getCommitHistory()
-                        .getHeadCommit()
-                        .getMessage();
+        Commit headCommit
+                = snapshot.getHeadCommit();
 
         return new DashboardDTO(
-                commits,
-                branches,
-                files,
-                head
+                snapshot.getCommitCount(),
+                snapshot.getBranches().size(),
+                snapshot.getTrackedFileCount(),
+                snapshot.getObjectCount(),
+                snapshot.getDiskSize(),
+                headCommit != null ? headCommit.getMessage() : null
         );
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.tejinder.mini_vcs_api.vcs;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import com.tejinder.mini_vcs_api.vcs.core.Repository;
+
+/**
+ * Command-line front end for the repository engine the API serves, e.g.
+ *
+ *   java -cp target/classes com.tejinder.mini_vcs_api.vcs.Main merge feature
+ *
+ * Commands run against the repository in the current directory.
+ */
+public class Main {
+
+    private static final String USAGE = """
+    Mini VCS - Available Commands:
+    ---------------------------------
+    init <directory>                  Initialize a new repository
+    add <file>                        Add a file to tracking
+    commit <message>                  Commit staged changes
+    status                            Show repository status
+    log                               Show commit history
+
+    checkout <commitId>               Checkout a commit
+    checkout <branchName>             Switch to a branch
+
+    branch                            List all branches
+    branch <name>                     Create a new branch
+    merge <branch>                    Merge a branch into the current branch
+
+    reflog [ref] [n]                  Show the last n moves of HEAD or a branch
+
+    help                              Show this help message
+    """;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        String command = args[0];
+        String currentDir = Paths.get("").toAbsolutePath().toString();
+        Repository repository = null;
+
+        try {
+            if (command.equals("init")) {
+                if (args.length < 2) {
+                    System.out.println("Usage: init <directory>");
+                    return;
+                }
+                String path = args[1];
+                Repository.getInstance(path).init(path);
+                return;
+            } else {
+                repository = Repository.getInstance(currentDir);
+            }
+
+            switch (command) {
+                case "add" -> {
+                    if (args.length < 2) {
+                        System.out.println("Usage: add <file>");
+                        return;
+                    }
+                    repository.add(args[1]);
+                }
+                case "commit" -> {
+                    if (args.length < 2) {
+                        System.out.println("Usage: commit <message>");
+                        return;
+                    }
+                    repository.commit(args[1]);
+                }
+                case "status" ->
+                    repository.status();
+                case "log" ->
+                    repository.log();
+                case "checkout" -> {
+                    if (args.length < 2) {
+                        System.out.println("Usage: checkout <commitId>");
+                        return;
+                    }
+                    repository.checkout(args[1]);
+                }
+                case "branch" -> {
+                    if (args.length == 1) {
+                        repository.listBranches();
+                    } else {
+                        repository.createBranch(args[1]);
+                    }
+                }
+                case "merge" -> {
+                    if (args.length < 2) {
+                        System.out.println("Usage: merge <branch>");
+                        return;
+                    }
+                    repository.merge(args[1]);
+                }
+                case "reflog" -> {
+                    if (args.length > 2 && !args[2].matches("\\d+")) {
+                        System.out.println("Usage: reflog [ref] [n]");
+                        return;
+                    }
+                    String ref = args.length > 1 ? args[1] : "HEAD";
+                    int limit = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+                    repository.reflog(ref, limit);
+                }
+                case "help" ->
+                    System.out.println(USAGE);
+                default -> {
+                    System.out.println("Unknown command: " + command);
+                    System.out.println(USAGE);
+                }
+            }
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        } finally {
+            if (repository != null) {
+                repository.close();
+            }
+        }
+    }
+}
@@ -4,17 +4,26 @@ import vcs.datastructures.HashTable;
 import vcs.util.HashUtils;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Represents a commit in the version control system.
  * A commit captures the state of tracked files at a specific point in time.
+ * Ordinary commits have one parent; merge commits record the merged branch
+ * head as a second parent. The commit graph stores two parents per commit,
+ * so more than two are rejected.
  */
 public class Commit {
+    /** Parents a commit can have; the commit graph has room for two. */
+    public static final int MAX_PARENTS = 2;
+
     private String id;
     private String message;
     private Date timestamp;
     private String parent;
+    private List<String> mergeParents; // Parents after the first, for merge commits
     private HashTable<String, String> fileVersions; // Maps file paths to file version hashes
 
     /**
@@ -22,6 +31,7 @@ public class Commit {
      */
     public Commit() {
         this.fileVersions = new HashTable<>();
+        this.mergeParents = new ArrayList<>();
         this.timestamp = new Date();
     }
 
@@ -69,6 +79,41 @@ public class Commit {
         return parent;  // Added this method to match `CommitHistory` expectations
     }
 
+    /**
+     * Gets the ids of all parents of this commit, first parent first.
+     * @return The parent ids (empty for the initial commit)
+     */
+    public List<String> getParents() {
+        List<String> parents = new ArrayList<>(1 + mergeParents.size());
+        if (parent != null) {
+            parents.add(parent);
+        }
+        parents.addAll(mergeParents);
+        return parents;
+    }
+
+    /**
+     * Sets all parents of this commit, first parent first.
+     * @param parents The parent ids
+     * @throws IllegalArgumentException If there are more than {@link #MAX_PARENTS} parents
+     */
+    public void setParents(List<String> parents) {
+        if (parents.size() > MAX_PARENTS) {
+            throw new IllegalArgumentException(
+                    "A commit has at most " + MAX_PARENTS + " parents, got " + parents.size());
+        }
+        this.parent = parents.isEmpty() ? null : parents.get(0);
+        this.mergeParents = new ArrayList<>(parents.subList(Math.min(1, parents.size()), parents.size()));
+    }
+
+    /**
+     * Checks whether this commit has more than one parent.
+     * @return true for merge commits
+     */
+    public boolean isMerge() {
+        return !mergeParents.isEmpty();
+    }
+
     public void addFile(String filePath, String versionHash) {
         fileVersions.put(filePath, versionHash);
     }
@@ -77,6 +122,14 @@ public class Commit {
         return fileVersions.keys();
     }
 
+    /**
+     * Gets the number of files in this commit
+     * @return The file count
+     */
+    public int getFileCount() {
+        return fileVersions.size();
+    }
+
     public String getFileVersionId(String filePath) {
         return fileVersions.get(filePath);
     }
@@ -93,6 +146,10 @@ public class Commit {
             sb.append(parent).append("\n");
         }
 
+        for (String mergeParent : mergeParents) {
+            sb.append("merge ").append(mergeParent).append("\n");
+        }
+
         for (String filePath : fileVersions.keys()) {
             sb.append(filePath).append("=").append(fileVersions.get(filePath)).append("\n");
         }
@@ -121,6 +178,15 @@ public class Commit {
             dos.writeUTF(fileVersions.get(filePath));
         }
 
+        // Extra parents trail the original format, so single-parent commits
+        // serialize exactly as before and older readers still load merges
+        if (!mergeParents.isEmpty()) {
+            dos.writeInt(mergeParents.size());
+            for (String mergeParent : mergeParents) {
+                dos.writeUTF(mergeParent);
+            }
+        }
+
         dos.flush();
         return baos.toByteArray();
     }
@@ -151,6 +217,13 @@ public class Commit {
             commit.fileVersions.put(filePath, versionHash);
         }
 
+        if (dis.available() > 0) {
+            int mergeParentCount = dis.readInt();
+            for (int i = 0; i < mergeParentCount; i++) {
+                commit.mergeParents.add(dis.readUTF());
+            }
+        }
+
         return commit;
     }
 
@@ -161,6 +234,7 @@ public class Commit {
                ", message='" + message + '\'' +
                ", timestamp=" + timestamp +
                ", parent='" + parent + '\'' +
+               (mergeParents.isEmpty() ? "" : ", mergeParents=" + mergeParents) +
                ", fileCount=" + fileVersions.size() +
                '}';
     }
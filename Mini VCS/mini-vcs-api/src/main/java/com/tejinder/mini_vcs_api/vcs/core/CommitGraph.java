@@ -0,0 +1,573 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, memory-mapped index of the commit DAG stored in .mini-vcs/commit-graph.
+ * For every commit it records the parents, the generation number and the
+ * timestamp in fixed-width records sorted by commit id, so loading history is
+ * a single mmap instead of one object read per commit.
+ *
+ * New commits are appended to a small unsorted tail file and folded into the
+ * sorted base once the tail grows past {@link #COMPACT_THRESHOLD} records.
+ * Positions are stable until the next compaction: base records come first in
+ * id order, followed by tail records in append order. Records have room for
+ * two parents, the most a {@link Commit} can have.
+ */
+public class CommitGraph {
+    private static final String GRAPH_FILE = "commit-graph";
+    private static final String TAIL_FILE = "commit-graph.tail";
+
+    private static final int MAGIC = 0x4d564347; // "MVCG"
+    private static final int VERSION = 1;
+    private static final int ID_BYTES = 20;
+    private static final int FANOUT_ENTRIES = 256;
+    private static final int HEADER_SIZE = 12 + FANOUT_ENTRIES * 4;
+
+    /** id, first parent, second parent, generation, timestamp */
+    static final int RECORD_SIZE = ID_BYTES * 3 + 4 + 8;
+
+    private static final int COMPACT_THRESHOLD = 512;
+    private static final byte[] NO_ID = new byte[ID_BYTES];
+
+    private final Path vcsDir;
+    private ByteBuffer base;
+    private int baseCount;
+    private final List<byte[]> tail = new ArrayList<>();
+    private final Map<String, Integer> tailIndex = new HashMap<>();
+    private int epoch;
+
+    private CommitGraph(Path vcsDir) {
+        this.vcsDir = vcsDir;
+    }
+
+    /**
+     * Opens the commit graph of a repository, mapping the sorted base file and
+     * reading the (small) tail. Missing files yield an empty graph.
+     * @param vcsDir The .mini-vcs directory
+     * @return The commit graph
+     * @throws IOException If the files exist but cannot be read
+     */
+    public static CommitGraph open(Path vcsDir) throws IOException {
+        CommitGraph graph = new CommitGraph(vcsDir);
+        graph.mapBase();
+        graph.readTail();
+        return graph;
+    }
+
+    private void mapBase() throws IOException {
+        Path graphPath = vcsDir.resolve(GRAPH_FILE);
+        if (!Files.exists(graphPath)) {
+            base = null;
+            baseCount = 0;
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(graphPath, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Corrupt commit-graph file: " + graphPath);
+            }
+
+            int count = mapped.getInt(8);
+            if (mapped.capacity() < HEADER_SIZE + (long) count * RECORD_SIZE) {
+                throw new IOException("Truncated commit-graph file: " + graphPath);
+            }
+
+            base = mapped;
+            baseCount = count;
+        }
+    }
+
+    private void readTail() throws IOException {
+        tail.clear();
+        tailIndex.clear();
+
+        Path tailPath = vcsDir.resolve(TAIL_FILE);
+        if (!Files.exists(tailPath)) {
+            return;
+        }
+
+        byte[] data = Files.readAllBytes(tailPath);
+        // A torn final record from a crash mid-append is simply ignored
+        for (int offset = 0; offset + RECORD_SIZE <= data.length; offset += RECORD_SIZE) {
+            byte[] record = Arrays.copyOfRange(data, offset, offset + RECORD_SIZE);
+            String id = toHex(record, 0);
+            if (!tailIndex.containsKey(id) && basePosition(id) < 0) {
+                tailIndex.put(id, tail.size());
+                tail.add(record);
+            }
+        }
+    }
+
+    /**
+     * Gets the directory the graph is stored in.
+     * @return The .mini-vcs directory
+     */
+    Path getDirectory() {
+        return vcsDir;
+    }
+
+    /**
+     * Gets the number of commits in the graph.
+     * @return The number of commits
+     */
+    public synchronized int size() {
+        return baseCount + tail.size();
+    }
+
+    /**
+     * Gets a number that changes whenever positions are reassigned, i.e. on
+     * every compaction. Position-indexed caches must be dropped when it changes.
+     * @return The current epoch
+     */
+    public synchronized int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Checks whether the graph contains a commit.
+     * @param commitId The commit id
+     * @return true if the commit is in the graph
+     */
+    public synchronized boolean contains(String commitId) {
+        return position(commitId) >= 0;
+    }
+
+    /**
+     * Gets the position of a commit in the graph.
+     * @param commitId The commit id
+     * @return The position, or -1 if the commit is not in the graph
+     */
+    public synchronized int position(String commitId) {
+        if (!isCommitId(commitId)) {
+            return -1;
+        }
+
+        int position = basePosition(commitId);
+        if (position >= 0) {
+            return position;
+        }
+
+        Integer tailPosition = tailIndex.get(commitId);
+        return tailPosition != null ? baseCount + tailPosition : -1;
+    }
+
+    /**
+     * Finds the commits whose ids start with a prefix, by binary search over
+     * the sorted base and a scan of the small tail.
+     * @param prefix Hexadecimal id prefix (any case)
+     * @param limit Maximum number of matches to return
+     * @return Matching commit ids, at most limit of them
+     */
+    public synchronized List<String> findByPrefix(String prefix, int limit) {
+        List<String> matches = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty() || prefix.length() > ID_BYTES * 2) {
+            return matches;
+        }
+
+        String lower = prefix.toLowerCase();
+        StringBuilder padded = new StringBuilder(lower);
+        while (padded.length() < ID_BYTES * 2) {
+            padded.append('0');
+        }
+        if (!isCommitId(padded.toString())) {
+            return matches;
+        }
+
+        for (int position = baseLowerBound(fromHex(padded.toString()));
+                position < baseCount && matches.size() < limit; position++) {
+            String id = readId(position, 0);
+            if (!id.startsWith(lower)) {
+                break;
+            }
+            matches.add(id);
+        }
+
+        for (String id : tailIndex.keySet()) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            if (id.startsWith(lower)) {
+                matches.add(id);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the id of the commit at a position.
+     * @param position The position
+     * @return The commit id
+     */
+    public synchronized String idAt(int position) {
+        return readId(position, 0);
+    }
+
+    /**
+     * Gets the parents of the commit at a position.
+     * @param position The position
+     * @return Positions of the parents (empty for a root commit)
+     */
+    public synchronized int[] parentPositions(int position) {
+        String first = readId(position, ID_BYTES);
+        String second = readId(position, ID_BYTES * 2);
+
+        if (first == null) {
+            return new int[0];
+        }
+        if (second == null) {
+            return new int[] {position(first)};
+        }
+        return new int[] {position(first), position(second)};
+    }
+
+    /**
+     * Gets the parents of a commit.
+     * @param commitId The commit id
+     * @return Parent ids, first parent first (empty for a root or unknown commit)
+     */
+    public synchronized List<String> getParents(String commitId) {
+        List<String> parents = new ArrayList<>(2);
+        int position = position(commitId);
+        if (position < 0) {
+            return parents;
+        }
+
+        String first = readId(position, ID_BYTES);
+        String second = readId(position, ID_BYTES * 2);
+        if (first != null) {
+            parents.add(first);
+        }
+        if (second != null) {
+            parents.add(second);
+        }
+        return parents;
+    }
+
+    /**
+     * Gets the generation number of a commit: 1 for a root commit, otherwise
+     * one more than the largest generation of its parents.
+     * @param commitId The commit id
+     * @return The generation number, or 0 if the commit is not in the graph
+     */
+    public synchronized int getGeneration(String commitId) {
+        int position = position(commitId);
+        return position < 0 ? 0 : generationAt(position);
+    }
+
+    /**
+     * Gets the generation number of the commit at a position.
+     * @param position The position
+     * @return The generation number
+     */
+    public synchronized int generationAt(int position) {
+        if (position < baseCount) {
+            return base.getInt(recordOffset(position) + ID_BYTES * 3);
+        }
+        return ByteBuffer.wrap(tail.get(position - baseCount)).getInt(ID_BYTES * 3);
+    }
+
+    /**
+     * Gets the timestamp of a commit.
+     * @param commitId The commit id
+     * @return The timestamp in milliseconds, or 0 if the commit is not in the graph
+     */
+    public synchronized long getTimestamp(String commitId) {
+        int position = position(commitId);
+        return position < 0 ? 0 : timestampAt(position);
+    }
+
+    /**
+     * Gets the timestamp of the commit at a position.
+     * @param position The position
+     * @return The timestamp in milliseconds
+     */
+    public synchronized long timestampAt(int position) {
+        if (position < baseCount) {
+            return base.getLong(recordOffset(position) + ID_BYTES * 3 + 4);
+        }
+        return ByteBuffer.wrap(tail.get(position - baseCount)).getLong(ID_BYTES * 3 + 4);
+    }
+
+    /**
+     * Appends a commit. Its parents must already be in the graph for its
+     * generation number to be exact. The record is written to the tail file
+     * and the tail is compacted into the sorted base when it grows too large.
+     * @param commit The commit to add
+     * @throws IOException If the graph cannot be written
+     */
+    public synchronized void append(Commit commit) throws IOException {
+        appendAll(List.of(commit));
+    }
+
+    /**
+     * Appends several commits in one write, parents before children.
+     * @param commits The commits to add
+     * @throws IOException If a commit has more parents than a record holds, or the graph cannot be written
+     */
+    public synchronized void appendAll(List<Commit> commits) throws IOException {
+        for (Commit commit : commits) {
+            // Only a commit written by something else can get here; never drop a parent
+            if (commit.getParents().size() > Commit.MAX_PARENTS) {
+                throw new IOException("Commit " + commit.getId() + " has " + commit.getParents().size()
+                        + " parents; the commit graph holds " + Commit.MAX_PARENTS);
+            }
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(commits.size() * RECORD_SIZE);
+
+        for (Commit commit : commits) {
+            if (contains(commit.getId())) {
+                continue;
+            }
+
+            byte[] record = toRecord(commit);
+            tailIndex.put(commit.getId(), tail.size());
+            tail.add(record);
+            batch.put(record);
+        }
+
+        batch.flip();
+        if (!batch.hasRemaining()) {
+            return;
+        }
+
+        Files.createDirectories(vcsDir);
+        try (FileChannel channel = FileChannel.open(vcsDir.resolve(TAIL_FILE),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        }
+
+        if (tail.size() >= COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the graph as a single sorted file and empties the tail.
+     * The mapping of the old base is dropped before the file is replaced,
+     * since Windows refuses to replace a mapped file. If it still cannot be
+     * replaced (e.g. the mapping has not been released yet, or another
+     * handle maps it) the sorted records are kept in memory and the tail
+     * file on disk, which together still describe the graph, and the next
+     * attempt waits until the tail has grown by another
+     * {@link #COMPACT_THRESHOLD} records.
+     * @throws IOException If the new graph cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        if (tail.isEmpty()) {
+            return;
+        }
+
+        List<byte[]> records = new ArrayList<>(size());
+        for (int i = 0; i < baseCount; i++) {
+            byte[] record = new byte[RECORD_SIZE];
+            base.get(recordOffset(i), record);
+            records.add(record);
+        }
+        records.addAll(tail);
+        records.sort(Comparator.comparing((byte[] record) -> record, CommitGraph::compareIds));
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + records.size() * RECORD_SIZE);
+        out.putInt(MAGIC).putInt(VERSION).putInt(records.size());
+
+        int[] fanout = new int[FANOUT_ENTRIES];
+        for (byte[] record : records) {
+            fanout[record[0] & 0xff]++;
+        }
+        int running = 0;
+        for (int i = 0; i < FANOUT_ENTRIES; i++) {
+            running += fanout[i];
+            out.putInt(running);
+        }
+        for (byte[] record : records) {
+            out.put(record);
+        }
+        out.flip();
+
+        Path graphPath = vcsDir.resolve(GRAPH_FILE);
+        Path temp = vcsDir.resolve(GRAPH_FILE + ".lock");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        }
+
+        // Read from the new records meanwhile, so nothing here holds the old mapping
+        out.rewind();
+        base = out;
+        baseCount = records.size();
+        tail.clear();
+        tailIndex.clear();
+        epoch++;
+
+        try {
+            try {
+                Files.move(temp, graphPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, graphPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            System.err.println("Could not replace " + graphPath + ", keeping the tail until "
+                    + COMPACT_THRESHOLD + " more commits: " + e.getMessage());
+            return;
+        }
+
+        Files.deleteIfExists(vcsDir.resolve(TAIL_FILE));
+        mapBase();
+    }
+
+    /**
+     * Gets the ids of all commits in position order.
+     * @return The commit ids
+     */
+    public synchronized List<String> ids() {
+        List<String> ids = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            ids.add(idAt(i));
+        }
+        return ids;
+    }
+
+    private int basePosition(String commitId) {
+        if (base == null || baseCount == 0) {
+            return -1;
+        }
+
+        byte[] key = fromHex(commitId);
+        int first = key[0] & 0xff;
+        int low = first == 0 ? 0 : base.getInt(12 + (first - 1) * 4);
+        int high = base.getInt(12 + first * 4) - 1;
+
+        byte[] probe = new byte[ID_BYTES];
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            base.get(recordOffset(mid), probe);
+            int cmp = compareIds(probe, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Finds the first base position whose id is not less than the key. */
+    private int baseLowerBound(byte[] key) {
+        if (base == null || baseCount == 0) {
+            return 0;
+        }
+
+        int first = key[0] & 0xff;
+        int low = first == 0 ? 0 : base.getInt(12 + (first - 1) * 4);
+        int high = base.getInt(12 + first * 4);
+
+        byte[] probe = new byte[ID_BYTES];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            base.get(recordOffset(mid), probe);
+            if (compareIds(probe, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private String readId(int position, int fieldOffset) {
+        byte[] id = new byte[ID_BYTES];
+        if (position < baseCount) {
+            base.get(recordOffset(position) + fieldOffset, id);
+        } else {
+            System.arraycopy(tail.get(position - baseCount), fieldOffset, id, 0, ID_BYTES);
+        }
+        return Arrays.equals(id, NO_ID) ? null : toHex(id, 0);
+    }
+
+    private static int recordOffset(int position) {
+        return HEADER_SIZE + position * RECORD_SIZE;
+    }
+
+    private byte[] toRecord(Commit commit) {
+        List<String> parents = commit.getParents();
+        int generation = 1;
+        for (String parent : parents) {
+            generation = Math.max(generation, getGeneration(parent) + 1);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(fromHex(commit.getId()));
+        record.put(parents.size() > 0 ? fromHex(parents.get(0)) : NO_ID);
+        record.put(parents.size() > 1 ? fromHex(parents.get(1)) : NO_ID);
+        record.putInt(generation);
+        record.putLong(commit.getTimestamp().getTime());
+        return record.array();
+    }
+
+    private static boolean isCommitId(String id) {
+        if (id == null || id.length() != ID_BYTES * 2) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (Character.digit(id.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compareIds(byte[] a, byte[] b) {
+        for (int i = 0; i < ID_BYTES; i++) {
+            int cmp = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[ID_BYTES];
+        for (int i = 0; i < ID_BYTES; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes, int offset) {
+        StringBuilder hex = new StringBuilder(ID_BYTES * 2);
+        for (int i = offset; i < offset + ID_BYTES; i++) {
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
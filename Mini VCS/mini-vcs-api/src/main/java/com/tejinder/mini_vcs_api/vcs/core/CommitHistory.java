@@ -1,17 +1,49 @@
 package com.tejinder.mini_vcs_api.vcs.core;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.*;
+import vcs.datastructures.LRUCache;
 
 /**
  * Manages the history of commits in the repository. Provides methods to
  * navigate through the commit history.
+ * When backed by a {@link CommitGraph}, the shape of the history comes from
+ * the graph and full commits are only loaded from the object store on demand,
+ * through a bounded LRU cache, so memory use does not grow with history length.
+ * The branches and HEAD kept here change with every checkout and commit;
+ * readers that must not see that go through {@link CommitLookup}.
  */
-public class CommitHistory implements Serializable {
+public class CommitHistory implements CommitLookup, Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private Map<String, Commit> commits;
+    /** Number of commits kept in memory when they can be reloaded on demand. */
+    private static final int COMMIT_CACHE_SIZE = 1024;
+
+    /** Number of ahead/behind results kept; keys are head pairs, so entries never go stale. */
+    private static final int AHEAD_BEHIND_CACHE_SIZE = 4096;
+
+    /**
+     * Loads a commit object on demand.
+     */
+    @FunctionalInterface
+    public interface CommitLoader {
+        /**
+         * Loads the commit with the given id.
+         * @param commitId The commit id
+         * @return The commit, or null if it does not exist
+         * @throws IOException If the commit cannot be read
+         */
+        Commit load(String commitId) throws IOException;
+    }
+
+    private transient CommitGraph graph;
+    private transient CommitLoader loader;
+    private transient ReachabilityIndex reachability;
+    private transient LRUCache<String, int[]> aheadBehind = new LRUCache<>(AHEAD_BEHIND_CACHE_SIZE);
+    private LRUCache<String, Commit> commits;
     private Map<String, String> branches;
     private String currentBranch;
     private String headCommitId;
@@ -24,13 +56,50 @@ public class CommitHistory implements Serializable {
     }
 
     public CommitHistory() {
-        this.commits = new HashMap<>();
-        this.branches = new HashMap<>();
+        // Without a loader the cache is the only copy of each commit, so it must not evict
+        this.commits = new LRUCache<>(Integer.MAX_VALUE);
+        // Readers copy the branches while a writer may be moving one
+        this.branches = Collections.synchronizedMap(new HashMap<>());
         this.currentBranch = "master";
         this.branches.put(currentBranch, null);
         this.headCommitId = null;
     }
 
+    /**
+     * Creates a history backed by a commit graph; commits are loaded lazily.
+     * @param graph The commit graph
+     * @param loader Loader used to fetch full commits
+     */
+    public CommitHistory(CommitGraph graph, CommitLoader loader) {
+        this();
+        this.commits = new LRUCache<>(COMMIT_CACHE_SIZE);
+        this.graph = graph;
+        this.loader = loader;
+        this.reachability = new ReachabilityIndex(graph, () -> getBranchHeads().values());
+    }
+
+    public CommitGraph getCommitGraph() {
+        return graph;
+    }
+
+    /**
+     * Gets the number of commits currently held in memory
+     * @return The number of cached commits
+     */
+    public int getCachedCommitCount() {
+        return commits.size();
+    }
+
+    /**
+     * Points HEAD and the current branch at a commit that is already stored,
+     * without loading any history.
+     * @param commitId The commit id
+     */
+    public void restoreHead(String commitId) {
+        branches.put(currentBranch, commitId);
+        headCommitId = commitId;
+    }
+
     public void addCommit(Commit commit) {
         commits.put(commit.getId(), commit);
         branches.put(currentBranch, commit.getId());
@@ -38,38 +107,128 @@ public class CommitHistory implements Serializable {
     }
 
     public Commit getCommit(String commitId) {
-        return commits.get(commitId);
+        if (commitId == null) {
+            return null;
+        }
+
+        Commit commit = commits.get(commitId);
+        if (commit == null && loader != null) {
+            try {
+                commit = loader.load(commitId);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load commit " + commitId, e);
+            }
+            if (commit != null) {
+                commits.put(commitId, commit);
+            }
+        }
+        return commit;
     }
 
     public Commit getHeadCommit() {
-        return headCommitId != null ? commits.get(headCommitId) : null;
+        return getCommit(headCommitId);
     }
 
     // Get the parent commit ID of a commit
     public String getParentId(String commitId) {
-        Commit commit = commits.get(commitId);
+        if (graph != null && graph.contains(commitId)) {
+            List<String> parents = graph.getParents(commitId);
+            return parents.isEmpty() ? null : parents.get(0);
+        }
+        Commit commit = getCommit(commitId);
         return commit != null ? commit.getParentId() : null;
     }
 
     public List<Commit> getAllCommits() {
-        return new ArrayList<>(commits.values());
+        if (graph == null) {
+            return new ArrayList<>(commits.values());
+        }
+
+        List<Commit> all = new ArrayList<>(graph.size());
+        for (String commitId : graph.ids()) {
+            Commit commit = getCommit(commitId);
+            if (commit != null) {
+                all.add(commit);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Gets the number of commits in the history without loading them.
+     * @return The number of commits
+     */
+    public int size() {
+        return graph != null ? graph.size() : commits.size();
     }
 
     public List<Commit> getCommitHistory() {
         List<Commit> history = new ArrayList<>();
-        String currentId = headCommitId;
+        Iterator<Commit> walk = iterate(headCommitId);
+
+        while (walk.hasNext()) {
+            history.add(walk.next());
+        }
+
+        Collections.reverse(history);
+        return history;
+    }
+
+    /**
+     * Walks the first-parent history from a commit, newest first, loading each
+     * commit only when the iterator reaches it.
+     * @param startId The commit to start from (null yields an empty walk)
+     * @return Iterator over the commits
+     */
+    public Iterator<Commit> iterate(String startId) {
+        return new Iterator<>() {
+            private String nextId = startId;
+            private Commit next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && nextId != null) {
+                    next = getCommit(nextId);
+                    if (next == null) {
+                        nextId = null;
+                    }
+                }
+                return next != null;
+            }
 
-        while (currentId != null) {
-            Commit commit = commits.get(currentId);
-            if (commit == null) {
-                break;
+            @Override
+            public Commit next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Commit current = next;
+                next = null;
+                nextId = getParentId(current.getId());
+                return current;
             }
+        };
+    }
 
-            history.add(0, commit);
-            currentId = commit.getParentId();  // This now fetches from Commit's parentId
+    /**
+     * Gets one page of the first-parent history, newest first. Skipped commits
+     * are stepped over through the commit graph without being loaded.
+     * @param startId The commit to start from, or null for HEAD
+     * @param offset Number of commits to skip
+     * @param limit Maximum number of commits to return
+     * @return The commits on the page
+     */
+    public List<Commit> getCommitHistory(String startId, int offset, int limit) {
+        String currentId = startId != null ? startId : headCommitId;
+        for (int i = 0; i < offset && currentId != null; i++) {
+            currentId = getParentId(currentId);
         }
 
-        return history;
+        List<Commit> page = new ArrayList<>(Math.min(limit, 256));
+        Iterator<Commit> walk = iterate(currentId);
+        while (page.size() < limit && walk.hasNext()) {
+            page.add(walk.next());
+        }
+        return page;
     }
 
     public String getHeadCommitId() {
@@ -77,7 +236,7 @@ public class CommitHistory implements Serializable {
     }
 
     public boolean isEmpty() {
-        return commits.isEmpty();
+        return size() == 0 && commits.isEmpty();
     }
 
     public boolean createBranch(String branchName) {
@@ -102,7 +261,19 @@ public class CommitHistory implements Serializable {
     }
 
     public List<String> getBranches() {
-        return new ArrayList<>(branches.keySet());
+        synchronized (branches) {
+            return new ArrayList<>(branches.keySet());
+        }
+    }
+
+    /**
+     * Gets a copy of every branch and the commit it points to
+     * @return Map of branch name to head commit id (null for a branch without commits), sorted by name
+     */
+    public Map<String, String> getBranchHeads() {
+        synchronized (branches) {
+            return new TreeMap<>(branches);
+        }
     }
 
     public String getBranchHead(String branchName) {
@@ -110,14 +281,153 @@ public class CommitHistory implements Serializable {
     }
 
     public boolean checkout(String commitId) {
-        if (!commits.containsKey(commitId)) {
+        if (getCommit(commitId) == null) {
             return false;
         }
         headCommitId = commitId;
         return true;
     }
 
+    /**
+     * Finds the best common ancestor of two commits.
+     * @param first The first commit id
+     * @param second The second commit id
+     * @return The merge base, or null if the commits share no history
+     */
+    public String findMergeBase(String first, String second) {
+        if (graph != null && graph.contains(first) && graph.contains(second)) {
+            return MergeBase.find(graph, first, second);
+        }
+
+        // Without a graph, collect one side's ancestors and walk the other breadth-first
+        Set<String> ancestors = collectAncestors(first);
+        Deque<String> pending = new ArrayDeque<>();
+
+        Set<String> seen = new HashSet<>();
+        pending.add(second);
+        while (!pending.isEmpty()) {
+            String commitId = pending.poll();
+            if (ancestors.contains(commitId)) {
+                return commitId;
+            }
+            Commit commit = getCommit(commitId);
+            if (commit != null && seen.add(commitId)) {
+                pending.addAll(commit.getParents());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether one commit is an ancestor of (or equal to) another.
+     * @param ancestor The possible ancestor
+     * @param descendant The possible descendant
+     * @return true if ancestor is reachable from descendant
+     */
+    public boolean isAncestor(String ancestor, String descendant) {
+        if (graph != null && graph.contains(ancestor) && graph.contains(descendant)) {
+            return reachability.isAncestor(ancestor, descendant);
+        }
+        return ancestor != null && ancestor.equals(findMergeBase(ancestor, descendant));
+    }
+
+    /**
+     * Lists the commits reachable from one commit but not from another,
+     * e.g. the commits on a branch that are not yet on the current branch.
+     * @param exclude Commit whose history is excluded (may be null)
+     * @param include Commit whose history is listed
+     * @return The commit ids, newest first
+     */
+    public List<String> getCommitsBetween(String exclude, String include) {
+        if (graph != null && graph.contains(include)) {
+            return reachability.commitsBetween(exclude, include);
+        }
+
+        Set<String> excluded = collectAncestors(exclude);
+        List<String> result = new ArrayList<>();
+        for (String commitId : collectAncestors(include)) {
+            if (!excluded.contains(commitId)) {
+                result.add(commitId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the commits reachable from one commit but not from another.
+     * @param exclude Commit whose history is excluded (may be null)
+     * @param include Commit whose history is counted
+     * @return The number of commits
+     */
+    public int countCommitsBetween(String exclude, String include) {
+        if (graph != null && graph.contains(include)) {
+            return reachability.countBetween(exclude, include);
+        }
+        return getCommitsBetween(exclude, include).size();
+    }
+
+    /**
+     * Counts the commits in the history of a commit, including itself.
+     * @param commitId The commit id
+     * @return The number of commits, or 0 for null or unknown commits
+     */
+    public int countCommits(String commitId) {
+        return countCommitsBetween(null, commitId);
+    }
+
+    /**
+     * Counts how far a branch head has diverged from another head. Results are
+     * cached by the pair of head ids, so moving either ref naturally misses
+     * the cache, and the other head's history is shared across all lookups.
+     * @param head The branch head
+     * @param upstream The head to compare against, e.g. the current branch
+     * @return {ahead, behind}: commits only in head and commits only in upstream
+     */
+    public int[] getAheadBehind(String head, String upstream) {
+        if (head == null || upstream == null || head.equals(upstream)) {
+            return new int[] {0, 0};
+        }
+
+        String key = head + ".." + upstream;
+        int[] counts = aheadBehind.get(key);
+        if (counts == null) {
+            counts = new int[] {
+                countCommitsBetween(upstream, head),
+                countCommitsBetween(head, upstream)
+            };
+            aheadBehind.put(key, counts);
+        }
+        return counts.clone();
+    }
+
+    private Set<String> collectAncestors(String commitId) {
+        Set<String> ancestors = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        if (commitId != null) {
+            pending.add(commitId);
+        }
+        while (!pending.isEmpty()) {
+            Commit commit = getCommit(pending.poll());
+            if (commit != null && ancestors.add(commit.getId())) {
+                pending.addAll(commit.getParents());
+            }
+        }
+        return ancestors;
+    }
+
     public Commit mergeBranch(String branchName) {
+        return mergeBranch(branchName, null);
+    }
+
+    /**
+     * Merges a branch into the current branch. Fast-forwards when possible,
+     * otherwise creates a merge commit with both heads as parents.
+     * @param branchName The branch to merge
+     * @param mergedFiles The merged snapshot (path to version hash), or null
+     *                    to keep the current head's files
+     * @return The new head commit, or null if the branch does not exist
+     */
+    public Commit mergeBranch(String branchName, Map<String, String> mergedFiles) {
         if (!branches.containsKey(branchName)) {
             return null;
         }
@@ -127,7 +437,7 @@ public class CommitHistory implements Serializable {
             return null;
         }
 
-        Commit branchHead = commits.get(branchHeadId);
+        Commit branchHead = getCommit(branchHeadId);
         Commit currentHead = getHeadCommit();
 
         if (currentHead == null) {
@@ -136,22 +446,60 @@ public class CommitHistory implements Serializable {
             return branchHead;
         }
 
-        // Updated Commit constructor call with correct parameters
-        Commit mergeCommit = new Commit(
-                "Merge branch '" + branchName + "' into " + currentBranch,
-                currentHead.getId()
-        );
+        String base = findMergeBase(currentHead.getId(), branchHeadId);
+
+        if (branchHeadId.equals(base)) {
+            // Already up to date
+            return currentHead;
+        }
+
+        if (currentHead.getId().equals(base)) {
+            // Fast-forward
+            headCommitId = branchHeadId;
+            branches.put(currentBranch, headCommitId);
+            return branchHead;
+        }
 
-        // The mergeCommit should have the current commit and branch commit as parents
-        mergeCommit.setParent(currentHead.getId());
+        Commit mergeCommit = new Commit();
+        mergeCommit.setMessage("Merge branch '" + branchName + "' into " + currentBranch);
+        mergeCommit.setParents(List.of(currentHead.getId(), branchHeadId));
 
+        if (mergedFiles != null) {
+            for (Map.Entry<String, String> file : mergedFiles.entrySet()) {
+                mergeCommit.addFile(file.getKey(), file.getValue());
+            }
+        } else {
+            for (String filePath : currentHead.getFiles()) {
+                mergeCommit.addFile(filePath, currentHead.getFileVersionId(filePath));
+            }
+        }
+
+        mergeCommit.generateId();
         addCommit(mergeCommit);
         return mergeCommit;
     }
 
     public String getHistoryGraph() {
+        return getHistoryGraph(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Renders one page of the history, newest first.
+     * @param offset Number of commits to skip
+     * @param limit Maximum number of commits to render
+     * @return One line per commit
+     */
+    public String getHistoryGraph(int offset, int limit) {
         StringBuilder graph = new StringBuilder();
-        List<Commit> history = getCommitHistory();
+        List<Commit> history = getCommitHistory(headCommitId, offset, limit);
+
+        Map<String, StringBuilder> labels = new HashMap<>();
+        for (Map.Entry<String, String> branch : getBranchHeads().entrySet()) {
+            if (branch.getValue() != null) {
+                labels.computeIfAbsent(branch.getValue(), id -> new StringBuilder())
+                        .append(" [").append(branch.getKey()).append("]");
+            }
+        }
 
         for (Commit commit : history) {
             String commitId = commit.getId();
@@ -159,12 +507,7 @@ public class CommitHistory implements Serializable {
                     ? commitId.substring(0, 7)
                     : commitId;
 
-            StringBuilder branchInfo = new StringBuilder();
-            for (Map.Entry<String, String> branch : branches.entrySet()) {
-                if (commitId.equals(branch.getValue())) {
-                    branchInfo.append(" [").append(branch.getKey()).append("]");
-                }
-            }
+            StringBuilder branchInfo = labels.getOrDefault(commitId, new StringBuilder());
 
             graph.append(shortId)
                     .append(branchInfo)
@@ -180,7 +523,7 @@ public class CommitHistory implements Serializable {
 
     @Override
     public String toString() {
-        return "CommitHistory[commits=" + commits.size()
+        return "CommitHistory[commits=" + size()
                 + ", currentBranch=" + currentBranch + "]";
     }
 }
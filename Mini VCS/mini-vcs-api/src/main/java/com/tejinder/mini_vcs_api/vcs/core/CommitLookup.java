@@ -0,0 +1,57 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.util.Iterator;
+
+/**
+ * Read-only access to the commits of a repository.
+ *
+ * Commits are immutable and only ever added, so every answer here depends
+ * only on the ids asked about, never on where HEAD or the branches point.
+ * That lets one lookup be shared by every {@link RepositorySnapshot},
+ * while refs are copied into each snapshot as values.
+ */
+public interface CommitLookup {
+
+    /**
+     * Gets a commit
+     * @param commitId The commit id
+     * @return The commit, or null for null or unknown ids
+     */
+    Commit getCommit(String commitId);
+
+    /**
+     * Gets the first parent of a commit
+     * @param commitId The commit id
+     * @return The parent id, or null for a root or unknown commit
+     */
+    String getParentId(String commitId);
+
+    /**
+     * Walks the first-parent history from a commit, newest first, loading each
+     * commit only when the iterator reaches it.
+     * @param startId The commit to start from (null yields an empty walk)
+     * @return Iterator over the commits
+     */
+    Iterator<Commit> iterate(String startId);
+
+    /**
+     * Counts the commits in the history of a commit, including itself.
+     * @param commitId The commit id
+     * @return The number of commits, or 0 for null or unknown commits
+     */
+    int countCommits(String commitId);
+
+    /**
+     * Counts how far one head has diverged from another.
+     * @param head The branch head
+     * @param upstream The head to compare against
+     * @return {ahead, behind}: commits only in head and commits only in upstream
+     */
+    int[] getAheadBehind(String head, String upstream);
+
+    /**
+     * Gets the commit graph the lookup is backed by
+     * @return The graph, or null for a repository that is not loaded
+     */
+    CommitGraph getCommitGraph();
+}
@@ -0,0 +1,67 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Splits content into variable-size chunks at content-defined boundaries
+ * using the FastCDC Gear rolling hash with normalized chunking.
+ * Because boundaries depend only on nearby bytes, an edit in a large file
+ * changes only the chunks around it and the rest deduplicate on re-add.
+ */
+public class ContentChunker {
+    public static final int MIN_CHUNK = 512 * 1024;
+    public static final int AVG_CHUNK = 2 * 1024 * 1024;
+    public static final int MAX_CHUNK = 8 * 1024 * 1024;
+
+    /** Stricter mask (more bits) before the average size, looser one after it. */
+    private static final long MASK_S = (1L << 23) - 1;
+    private static final long MASK_L = (1L << 19) - 1;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: the table is part of the on-disk format and must never change
+        Random random = new Random(0x6d696e692d766373L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private ContentChunker() {
+    }
+
+    /**
+     * Finds the length of the next chunk.
+     * @param buffer Buffer holding the content
+     * @param start Absolute index of the first byte of the chunk
+     * @param length Number of bytes available from start
+     * @return Length of the chunk starting at start
+     */
+    public static int nextChunk(ByteBuffer buffer, int start, int length) {
+        if (length <= MIN_CHUNK) {
+            return length;
+        }
+
+        int limit = Math.min(length, MAX_CHUNK);
+        int normal = Math.min(AVG_CHUNK, limit);
+        long hash = 0;
+        int i = MIN_CHUNK;
+
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[buffer.get(start + i) & 0xff];
+            if ((hash & MASK_S) == 0) {
+                return i + 1;
+            }
+        }
+
+        for (; i < limit; i++) {
+            hash = (hash << 1) + GEAR[buffer.get(start + i) & 0xff];
+            if ((hash & MASK_L) == 0) {
+                return i + 1;
+            }
+        }
+
+        return limit;
+    }
+}
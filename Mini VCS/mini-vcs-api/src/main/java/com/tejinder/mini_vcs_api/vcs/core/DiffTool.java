@@ -1,6 +1,7 @@
 package com.tejinder.mini_vcs_api.vcs.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -29,6 +30,221 @@ public class DiffTool {
         return diff.toArray(new String[0]);
     }
 
+    /**
+     * A run of changes with the unchanged lines around them, as in a unified
+     * diff. Each line starts with ' ', '-' or '+'.
+     */
+    public static final class Hunk {
+        private final int oldStart;
+        private final int oldCount;
+        private final int newStart;
+        private final int newCount;
+        private final List<String> lines;
+
+        Hunk(int oldStart, int oldCount, int newStart, int newCount, List<String> lines) {
+            this.oldStart = oldStart;
+            this.oldCount = oldCount;
+            this.newStart = newStart;
+            this.newCount = newCount;
+            this.lines = lines;
+        }
+
+        /** First old line, 1-based; the line before the hunk if it has no old lines. */
+        public int getOldStart() {
+            return oldStart;
+        }
+
+        public int getOldCount() {
+            return oldCount;
+        }
+
+        /** First new line, 1-based; the line before the hunk if it has no new lines. */
+        public int getNewStart() {
+            return newStart;
+        }
+
+        public int getNewCount() {
+            return newCount;
+        }
+
+        public List<String> getLines() {
+            return lines;
+        }
+
+        /**
+         * Gets the hunk header
+         * @return The header, e.g. "@@ -1,3 +1,4 @@"
+         */
+        public String getHeader() {
+            return "@@ -" + oldStart + "," + oldCount + " +" + newStart + "," + newCount + " @@";
+        }
+    }
+
+    /**
+     * Splits content into lines for diffing. A final newline ends the last
+     * line rather than starting an empty one.
+     * @param content The content
+     * @return The lines
+     */
+    public static String[] lines(String content) {
+        if (content.isEmpty()) {
+            return new String[0];
+        }
+        String[] lines = content.split("\n", -1);
+        return content.endsWith("\n") ? Arrays.copyOf(lines, lines.length - 1) : lines;
+    }
+
+    /**
+     * Estimates the size of the table {@link #matchLines} needs: the lines
+     * left once the common prefix and suffix are matched, multiplied.
+     * @param a Lines of the first version
+     * @param b Lines of the second version
+     * @return The number of table cells
+     */
+    public static long matchCost(String[] a, String[] b) {
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix])) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) {
+            suffix++;
+        }
+        return (long) (a.length - prefix - suffix) * (b.length - prefix - suffix);
+    }
+
+    /**
+     * Computes the hunks of a unified diff.
+     * @param a Lines of the old version
+     * @param b Lines of the new version
+     * @param context Number of unchanged lines to show around each change
+     * @return The hunks, in order; empty if the versions are equal
+     */
+    public static List<Hunk> unifiedDiff(String[] a, String[] b, int context) {
+        int[] match = matchLines(a, b);
+
+        // Edit script: one entry per old, new or shared line, in order
+        int total = a.length + b.length;
+        char[] kinds = new char[total];
+        String[] texts = new String[total];
+        int[] oldBefore = new int[total];
+        int[] newBefore = new int[total];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i <= a.length; i++) {
+            int next = i < a.length && match[i] >= 0 ? match[i] : (i == a.length ? b.length : j);
+            while (j < next) {
+                kinds[n] = '+';
+                texts[n] = b[j];
+                oldBefore[n] = i;
+                newBefore[n++] = j++;
+            }
+            if (i == a.length) {
+                break;
+            }
+            kinds[n] = match[i] >= 0 ? ' ' : '-';
+            texts[n] = a[i];
+            oldBefore[n] = i;
+            newBefore[n++] = j;
+            if (match[i] >= 0) {
+                j++;
+            }
+        }
+
+        List<Hunk> hunks = new ArrayList<>();
+        int k = 0;
+        while (k < n) {
+            while (k < n && kinds[k] == ' ') {
+                k++;
+            }
+            if (k == n) {
+                break;
+            }
+
+            // Extend over changes separated by at most 2 * context unchanged lines
+            int lastChange = k;
+            for (int m = k + 1; m < n && m - lastChange <= 2 * context; m++) {
+                if (kinds[m] != ' ') {
+                    lastChange = m;
+                }
+            }
+
+            int start = Math.max(0, k - context);
+            int end = Math.min(n, lastChange + 1 + context);
+
+            List<String> lines = new ArrayList<>(end - start);
+            int oldCount = 0;
+            int newCount = 0;
+            for (int m = start; m < end; m++) {
+                lines.add(kinds[m] + texts[m]);
+                if (kinds[m] != '+') {
+                    oldCount++;
+                }
+                if (kinds[m] != '-') {
+                    newCount++;
+                }
+            }
+
+            hunks.add(new Hunk(
+                    oldCount > 0 ? oldBefore[start] + 1 : oldBefore[start],
+                    oldCount,
+                    newCount > 0 ? newBefore[start] + 1 : newBefore[start],
+                    newCount,
+                    lines
+            ));
+            k = end;
+        }
+
+        return hunks;
+    }
+
+    /**
+     * Matches lines of one version to lines of another along their longest
+     * common subsequence.
+     * @param a Lines of the first version
+     * @param b Lines of the second version
+     * @return For each line of a, the index of the matching line in b, or -1
+     */
+    static int[] matchLines(String[] a, String[] b) {
+        int[] match = new int[a.length];
+        Arrays.fill(match, -1);
+
+        // Edits are usually local: match the common prefix and suffix
+        // directly and run the quadratic LCS only on what lies between
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix])) {
+            match[prefix] = prefix;
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) {
+            match[a.length - 1 - suffix] = b.length - 1 - suffix;
+            suffix++;
+        }
+
+        String[] middleA = Arrays.copyOfRange(a, prefix, a.length - suffix);
+        String[] middleB = Arrays.copyOfRange(b, prefix, b.length - suffix);
+        int[][] lcs = computeLCS(middleA, middleB);
+
+        int i = middleA.length;
+        int j = middleB.length;
+        while (i > 0 && j > 0) {
+            if (middleA[i - 1].equals(middleB[j - 1])) {
+                match[prefix + i - 1] = prefix + j - 1;
+                i--;
+                j--;
+            } else if (lcs[i][j - 1] >= lcs[i - 1][j]) {
+                j--;
+            } else {
+                i--;
+            }
+        }
+
+        return match;
+    }
+
     /**
      * Computes the longest common subsequence between two arrays of strings.
      * @param a First array of strings
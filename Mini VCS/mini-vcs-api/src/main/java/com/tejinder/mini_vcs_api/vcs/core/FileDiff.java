@@ -0,0 +1,89 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.util.List;
+
+/**
+ * The changes to one file between two trees. Binary files and files too
+ * large to diff carry no hunks, only the summary.
+ */
+public final class FileDiff {
+
+    /**
+     * How the file changed.
+     */
+    public enum Status {
+        ADDED,
+        DELETED,
+        MODIFIED
+    }
+
+    private final String path;
+    private final Status status;
+    private final String oldHash;
+    private final String newHash;
+    private final boolean binary;
+    private final boolean tooLarge;
+    private final List<DiffTool.Hunk> hunks;
+
+    FileDiff(
+            String path,
+            Status status,
+            String oldHash,
+            String newHash,
+            boolean binary,
+            boolean tooLarge,
+            List<DiffTool.Hunk> hunks
+    ) {
+        this.path = path;
+        this.status = status;
+        this.oldHash = oldHash;
+        this.newHash = newHash;
+        this.binary = binary;
+        this.tooLarge = tooLarge;
+        this.hunks = List.copyOf(hunks);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the hash of the old version
+     * @return The hash, or null if the file was added
+     */
+    public String getOldHash() {
+        return oldHash;
+    }
+
+    /**
+     * Gets the hash of the new version
+     * @return The hash, or null if the file was deleted
+     */
+    public String getNewHash() {
+        return newHash;
+    }
+
+    /**
+     * Checks if either version looks binary, in which case there are no hunks
+     * @return true for binary files
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Checks if the file was too large to diff, in which case there are no hunks
+     * @return true for files over the size or cost limit
+     */
+    public boolean isTooLarge() {
+        return tooLarge;
+    }
+
+    public List<DiffTool.Hunk> getHunks() {
+        return hunks;
+    }
+}
@@ -1,15 +1,49 @@
 package com.tejinder.mini_vcs_api.vcs.core;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * Represents a specific version of a file in the version control system.
- * Each version is uniquely identified by a hash of its content.
+ * Each version is uniquely identified by a hash of its content, computed
+ * as the repository's {@link ObjectFormat} says.
+ * The content is held in a read-only buffer that may live on the heap,
+ * off-heap, or be memory-mapped straight from disk, so it can be shared
+ * between the working tree, the hasher and the object store without copies.
+ * Versions read from the index know only their hash and size; their content
+ * is fetched from the object store the first time it is needed.
  */
 public class FileVersion {
+    /** Files smaller than this are read onto the heap instead of being mapped. */
+    private static final int MAP_THRESHOLD = 64 * 1024;
+
     private final String hash;
-    private final byte[] content;
+    private final long size;
+    private final ContentLoader loader;
+    private volatile ByteBuffer content;
+
+    /**
+     * Loads the content of an object on demand.
+     */
+    @FunctionalInterface
+    public interface ContentLoader {
+        /**
+         * Loads the content of the object with the given hash.
+         * @param hash Hash of the object
+         * @return Read-only buffer over the object's content
+         * @throws IOException If the object cannot be read
+         */
+        ByteBuffer load(String hash) throws IOException;
+    }
 
     /**
      * Creates a new file version with the given hash and content.
@@ -18,8 +52,121 @@ public class FileVersion {
      * @param content Content of the file
      */
     public FileVersion(String hash, byte[] content) {
+        this(hash, ByteBuffer.wrap(Arrays.copyOf(content, content.length)));
+    }
+
+    /**
+     * Creates a new file version backed by the given buffer without copying it.
+     * Only the bytes between the buffer's position and limit are used; the
+     * buffer is exposed read-only from here on.
+     * @param hash Hash of the file content
+     * @param content Buffer holding the content
+     */
+    public FileVersion(String hash, ByteBuffer content) {
+        this.hash = hash;
+        this.content = content.slice().asReadOnlyBuffer();
+        this.size = this.content.remaining();
+        this.loader = null;
+    }
+
+    /**
+     * Creates a file version that refers to an object by hash and size only.
+     * The content is loaded through the loader on first access.
+     * @param hash Hash of the file content
+     * @param size Size of the content in bytes
+     * @param loader Loader used to fetch the content
+     */
+    public FileVersion(String hash, long size, ContentLoader loader) {
         this.hash = hash;
-        this.content = Arrays.copyOf(content, content.length);
+        this.size = size;
+        this.loader = loader;
+    }
+
+    /**
+     * Creates a file version for the file at the given path, hashing its raw bytes.
+     * @param path Path of the file to read
+     * @return The file version
+     * @throws IOException If the file cannot be read
+     */
+    public static FileVersion fromFile(Path path) throws IOException {
+        return fromFile(path, ObjectFormat.RAW);
+    }
+
+    /**
+     * Creates a file version for the file at the given path, hashing it in place.
+     * Large files are memory-mapped read-only; small ones are read onto the heap.
+     * @param path Path of the file to read
+     * @param format How the repository names objects
+     * @return The file version
+     * @throws IOException If the file cannot be read
+     */
+    public static FileVersion fromFile(Path path, ObjectFormat format) throws IOException {
+        ByteBuffer buffer = readBuffer(path);
+        return new FileVersion(format.hash(buffer.duplicate()), buffer);
+    }
+
+    /**
+     * Creates a file version for an object whose hash is already known.
+     * @param hash Hash of the object
+     * @param path Path of the object file
+     * @return The file version
+     * @throws IOException If the file cannot be read
+     */
+    public static FileVersion fromFile(String hash, Path path) throws IOException {
+        return new FileVersion(hash, readBuffer(path));
+    }
+
+    /**
+     * Reads a file into a read-only buffer, mapping it when it is large enough
+     * for mapping to pay off.
+     * @param path Path of the file to read
+     * @return Buffer positioned at the start of the content
+     * @throws IOException If the file cannot be read
+     */
+    static ByteBuffer readBuffer(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or EOF
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Gets the content buffer, loading it first if this version is lazy.
+     * @return The shared read-only content buffer
+     */
+    private ByteBuffer content() {
+        ByteBuffer loaded = content;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = content;
+                if (loaded == null) {
+                    try {
+                        loaded = loader.load(hash).slice().asReadOnlyBuffer();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to load object " + hash, e);
+                    }
+                    content = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Checks whether the content has been loaded into memory or mapped.
+     * @return true if the content is available without further I/O
+     */
+    public boolean isLoaded() {
+        return content != null;
     }
 
     /**
@@ -32,10 +179,77 @@ public class FileVersion {
 
     /**
      * Gets a copy of the content of this file version.
+     * Prefer {@link #getContentBuffer()} or {@link #openStream()} to avoid the copy.
      * @return A defensive copy of the content as a byte array
      */
     public byte[] getContent() {
-        return Arrays.copyOf(content, content.length);
+        ByteBuffer view = content().duplicate();
+        byte[] copy = new byte[view.remaining()];
+        view.get(copy);
+        return copy;
+    }
+
+    /**
+     * Gets a read-only view of the content. The view has its own position and
+     * limit, so callers may consume it freely.
+     * @return Read-only buffer over the content
+     */
+    public ByteBuffer getContentBuffer() {
+        return content().duplicate();
+    }
+
+    /**
+     * Gets a read-only view of part of the content.
+     * @param offset Offset of the first byte
+     * @param length Number of bytes
+     * @return Read-only buffer over the requested range
+     */
+    public ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = content().duplicate();
+        Objects.checkFromIndexSize(offset, length, view.remaining());
+        view.position(offset).limit(offset + length);
+        return view.slice();
+    }
+
+    /**
+     * Opens a stream over the content without copying it up front.
+     * @return Input stream reading the content
+     */
+    public InputStream openStream() {
+        ByteBuffer view = content().duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, view.remaining());
+                view.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+
+    /**
+     * Writes the content to a channel, e.g. an object file or a socket.
+     * @param channel The channel to write to
+     * @throws IOException If writing fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer view = content().duplicate();
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
     }
 
     /**
@@ -43,39 +257,38 @@ public class FileVersion {
      * @return The content as a string
      */
     public String getContentAsString() {
-        return new String(content);
+        return StandardCharsets.UTF_8.decode(content().duplicate()).toString();
     }
 
     /**
-     * Gets the size of this file version in bytes.
+     * Gets the size of this file version in bytes without loading its content.
      * @return The size in bytes
      */
-    public int getSize() {
-        return content.length;
+    public long getSize() {
+        return size;
     }
 
     /**
      * Checks if this file version is equal to another one.
+     * Versions are content-addressed, so equal hashes mean equal content.
      * @param other The other file version to compare with
-     * @return true if the file versions have the same hash and content
+     * @return true if the file versions have the same hash
      */
     @Override
     public boolean equals(Object other) {
         if (this == other) return true;
         if (!(other instanceof FileVersion)) return false;
         FileVersion that = (FileVersion) other;
-        return Objects.equals(this.hash, that.hash) && Arrays.equals(this.content, that.content);
+        return Objects.equals(this.hash, that.hash);
     }
 
     /**
-     * Returns a hash code for this file version based on its hash and content.
+     * Returns a hash code for this file version based on its hash.
      * @return The hash code
      */
     @Override
     public int hashCode() {
-        int result = Objects.hash(hash);
-        result = 31 * result + Arrays.hashCode(content);
-        return result;
+        return Objects.hashCode(hash);
     }
 
     /**
@@ -84,6 +297,6 @@ public class FileVersion {
      */
     @Override
     public String toString() {
-        return "FileVersion{hash='" + hash + "', size=" + content.length + " bytes}";
+        return "FileVersion{hash='" + hash + "', size=" + getSize() + " bytes}";
     }
 }
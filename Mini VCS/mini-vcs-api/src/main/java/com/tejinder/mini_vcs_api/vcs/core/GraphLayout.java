@@ -0,0 +1,397 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Row and lane assignment for drawing the commit DAG reachable from a set
+ * of tips, computed once so clients can fetch any window of rows cheaply.
+ *
+ * Rows are in topological order, newest first: a commit always comes
+ * before its parents, and among the commits that are ready the most recent
+ * one goes next. Lanes are then handed out in a single pass over the rows,
+ * the way `git log --graph` does it: a commit takes the lane that was
+ * waiting for it (the leftmost one if several were), its first parent
+ * inherits that lane, and other parents reuse the lane already waiting for
+ * them or take the lowest free one.
+ *
+ * Every parent link becomes an edge that leaves the child's lane, runs down
+ * {@link Edge#getLane()} and enters the parent's lane at the parent's row.
+ * The set of edges crossing each {@link #CHECKPOINT_INTERVAL}th row is kept,
+ * so the edges of a window are found without walking from the top.
+ */
+public final class GraphLayout {
+    private static final int CHECKPOINT_INTERVAL = 256;
+
+    private final String[] ids;
+    private final int[] lanes;
+    private final int[] edgeStart;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final int[] edgeLane;
+    private final int[][] checkpoints;
+    private final int width;
+
+    /**
+     * One parent link of the layout.
+     */
+    public static final class Edge {
+        private final int fromRow;
+        private final int toRow;
+        private final int fromLane;
+        private final int toLane;
+        private final int lane;
+
+        Edge(int fromRow, int toRow, int fromLane, int toLane, int lane) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.fromLane = fromLane;
+            this.toLane = toLane;
+            this.lane = lane;
+        }
+
+        /** @return The row of the child commit */
+        public int getFromRow() {
+            return fromRow;
+        }
+
+        /** @return The row of the parent commit */
+        public int getToRow() {
+            return toRow;
+        }
+
+        /** @return The lane of the child commit */
+        public int getFromLane() {
+            return fromLane;
+        }
+
+        /** @return The lane of the parent commit */
+        public int getToLane() {
+            return toLane;
+        }
+
+        /** @return The lane the edge runs down between the two rows */
+        public int getLane() {
+            return lane;
+        }
+    }
+
+    private GraphLayout(String[] ids, int[] lanes, int[] edgeStart, int[] edgeFrom, int[] edgeTo,
+                        int[] edgeLane, int[][] checkpoints, int width) {
+        this.ids = ids;
+        this.lanes = lanes;
+        this.edgeStart = edgeStart;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeLane = edgeLane;
+        this.checkpoints = checkpoints;
+        this.width = width;
+    }
+
+    /**
+     * Lays out every commit reachable from the tips.
+     * @param graph The commit graph, or null for an empty layout
+     * @param tips The commits to start from (unknown ids and nulls are ignored)
+     * @return The layout
+     */
+    public static GraphLayout build(CommitGraph graph, Collection<String> tips) {
+        if (graph == null) {
+            return build(new String[0], new int[0][], new long[0], new int[0]);
+        }
+
+        // Positions only move on compaction, which needs this lock
+        synchronized (graph) {
+            int size = graph.size();
+            int[][] parents = new int[size][];
+            long[] times = new long[size];
+            int[] generations = new int[size];
+
+            List<Integer> starts = new ArrayList<>();
+            for (String tip : tips) {
+                int position = tip != null ? graph.position(tip) : -1;
+                if (position >= 0 && parents[position] == null) {
+                    parents[position] = new int[0];
+                    starts.add(position);
+                }
+            }
+
+            int[] stack = new int[size];
+            int depth = 0;
+            for (int start : starts) {
+                stack[depth++] = start;
+            }
+            while (depth > 0) {
+                int position = stack[--depth];
+                int[] found = graph.parentPositions(position);
+                times[position] = graph.timestampAt(position);
+                generations[position] = graph.generationAt(position);
+
+                int kept = 0;
+                for (int parent : found) {
+                    // A parent missing from the graph ends the line there
+                    if (parent < 0) {
+                        continue;
+                    }
+                    found[kept++] = parent;
+                    if (parents[parent] == null) {
+                        parents[parent] = new int[0];
+                        stack[depth++] = parent;
+                    }
+                }
+                parents[position] = kept == found.length ? found : Arrays.copyOf(found, kept);
+            }
+
+            String[] positionIds = new String[size];
+            for (int position = 0; position < size; position++) {
+                if (parents[position] != null) {
+                    positionIds[position] = graph.idAt(position);
+                }
+            }
+
+            return build(positionIds, parents, times, generations);
+        }
+    }
+
+    /**
+     * Orders and lays out the commits that have a parents entry; all arrays
+     * are indexed by commit-graph position.
+     */
+    private static GraphLayout build(String[] positionIds, int[][] parents, long[] times, int[] generations) {
+        int size = positionIds.length;
+        int[] children = new int[size];
+        int count = 0;
+        for (int position = 0; position < size; position++) {
+            if (parents[position] != null) {
+                count++;
+                for (int parent : parents[position]) {
+                    children[parent]++;
+                }
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>((a, b) -> {
+            int cmp = Long.compare(times[b], times[a]);
+            if (cmp == 0) {
+                cmp = Integer.compare(generations[b], generations[a]);
+            }
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        for (int position = 0; position < size; position++) {
+            if (parents[position] != null && children[position] == 0) {
+                ready.add(position);
+            }
+        }
+
+        int[] order = new int[count];
+        int[] rowOf = new int[size];
+        int rows = 0;
+        while (!ready.isEmpty()) {
+            int position = ready.poll();
+            rowOf[position] = rows;
+            order[rows++] = position;
+            for (int parent : parents[position]) {
+                if (--children[parent] == 0) {
+                    ready.add(parent);
+                }
+            }
+        }
+
+        String[] ids = new String[count];
+        int[] lanes = new int[count];
+        int[] edgeStart = new int[count + 1];
+        int[] edgeFrom = new int[countEdges(parents, order)];
+        int[] edgeTo = new int[edgeFrom.length];
+        int[] edgeLane = new int[edgeFrom.length];
+        int[][] checkpoints = new int[(count + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL][];
+
+        // Row each lane is waiting for, or -1 when the lane is free
+        int[] waiting = new int[4];
+        Arrays.fill(waiting, -1);
+        int used = 0;
+        int width = 0;
+
+        int[] open = new int[16];
+        int openCount = 0;
+        int edges = 0;
+
+        for (int row = 0; row < count; row++) {
+            if (row % CHECKPOINT_INTERVAL == 0) {
+                checkpoints[row / CHECKPOINT_INTERVAL] = Arrays.copyOf(open, openCount);
+            }
+
+            int lane = -1;
+            for (int i = 0; i < used; i++) {
+                if (waiting[i] == row) {
+                    if (lane < 0) {
+                        lane = i;
+                    }
+                    waiting[i] = -1;
+                }
+            }
+            if (lane < 0) {
+                lane = freeLane(waiting, used);
+            }
+            waiting = ensureLane(waiting, lane);
+
+            int position = order[row];
+            ids[row] = positionIds[position];
+            lanes[row] = lane;
+            edgeStart[row] = edges;
+
+            int[] rowParents = parents[position];
+            for (int k = 0; k < rowParents.length; k++) {
+                int parentRow = rowOf[rowParents[k]];
+
+                // The first parent always carries on in the commit's own lane;
+                // if another lane waits for it too, the lines meet at the parent
+                int via = k == 0 ? lane : -1;
+                for (int i = 0; i < used && via < 0; i++) {
+                    if (waiting[i] == parentRow) {
+                        via = i;
+                    }
+                }
+                if (via < 0) {
+                    via = freeLane(waiting, Math.max(used, lane + 1));
+                }
+
+                waiting = ensureLane(waiting, via);
+                waiting[via] = parentRow;
+                used = Math.max(used, via + 1);
+
+                edgeFrom[edges] = row;
+                edgeTo[edges] = parentRow;
+                edgeLane[edges] = via;
+                if (openCount == open.length) {
+                    open = Arrays.copyOf(open, openCount * 2);
+                }
+                open[openCount++] = edges;
+                edges++;
+            }
+
+            used = Math.max(used, lane + 1);
+            width = Math.max(width, used);
+            while (used > 0 && waiting[used - 1] < 0) {
+                used--;
+            }
+
+            // Keep the edges that still reach the next row
+            int kept = 0;
+            for (int i = 0; i < openCount; i++) {
+                if (edgeTo[open[i]] > row) {
+                    open[kept++] = open[i];
+                }
+            }
+            openCount = kept;
+        }
+        edgeStart[count] = edges;
+
+        return new GraphLayout(ids, lanes, edgeStart, edgeFrom, edgeTo, edgeLane, checkpoints, width);
+    }
+
+    private static int[] ensureLane(int[] waiting, int lane) {
+        if (lane < waiting.length) {
+            return waiting;
+        }
+        int grown = waiting.length;
+        waiting = Arrays.copyOf(waiting, Math.max(grown * 2, lane + 1));
+        Arrays.fill(waiting, grown, waiting.length, -1);
+        return waiting;
+    }
+
+    private static int countEdges(int[][] parents, int[] order) {
+        int edges = 0;
+        for (int position : order) {
+            edges += parents[position].length;
+        }
+        return edges;
+    }
+
+    private static int freeLane(int[] waiting, int used) {
+        for (int i = 0; i < used; i++) {
+            if (waiting[i] < 0) {
+                return i;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Gets the number of rows
+     * @return The number of commits laid out
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the number of lanes needed to draw the whole graph
+     * @return The width in lanes
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the commit on a row
+     * @param row The row
+     * @return The commit id
+     */
+    public String getId(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Gets the lane of the commit on a row
+     * @param row The row
+     * @return The lane, counted from 0 on the left
+     */
+    public int getLane(int row) {
+        return lanes[row];
+    }
+
+    /**
+     * Gets the rows of a commit's parents
+     * @param row The row of the commit
+     * @return The parent rows, first parent first
+     */
+    public int[] getParentRows(int row) {
+        return Arrays.copyOfRange(edgeTo, edgeStart[row], edgeStart[row + 1]);
+    }
+
+    /**
+     * Gets every edge that touches a range of rows: those leaving a commit in
+     * the range and those passing through or ending in it from above.
+     * @param start The first row
+     * @param end One past the last row
+     * @return The edges, ordered by child row
+     */
+    public List<Edge> getEdges(int start, int end) {
+        List<Edge> result = new ArrayList<>();
+        start = Math.max(0, start);
+        end = Math.min(end, ids.length);
+        if (start >= end) {
+            return result;
+        }
+
+        int checkpoint = start / CHECKPOINT_INTERVAL;
+        for (int edge : checkpoints[checkpoint]) {
+            addIfReaches(result, edge, start);
+        }
+        for (int edge = edgeStart[checkpoint * CHECKPOINT_INTERVAL]; edge < edgeStart[end]; edge++) {
+            addIfReaches(result, edge, start);
+        }
+        return result;
+    }
+
+    private void addIfReaches(List<Edge> result, int edge, int start) {
+        if (edgeTo[edge] < start) {
+            return;
+        }
+        int fromRow = edgeFrom[edge];
+        int toRow = edgeTo[edge];
+        result.add(new Edge(fromRow, toRow, lanes[fromRow], lanes[toRow], edgeLane[edge]));
+    }
+}
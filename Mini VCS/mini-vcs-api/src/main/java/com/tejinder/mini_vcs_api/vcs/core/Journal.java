@@ -0,0 +1,398 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead journal for updates that touch several files in .mini-vcs,
+ * such as a commit moving the branch ref, HEAD and the index together.
+ *
+ * A transaction writes every new file to a ".new" sibling, forces all of
+ * them in one pass, and then records its intent in .mini-vcs/journal
+ * ending with a commit marker. Only then are refs moved (compare-and-swap)
+ * and the new files renamed into place, after which the journal is removed.
+ * On load, {@link #recover()} replays a journal that reached its commit
+ * marker and rolls back one that did not, so a crash never leaves a torn
+ * index or a HEAD that disagrees with the refs. Objects and commits are
+ * content-addressed and written before the transaction starts, so they
+ * need no journaling.
+ *
+ * A transaction holds .mini-vcs/lock from its first ".new" file until the
+ * journal is removed, and recovery only runs when it can take that lock, so
+ * a second handle or process loading the repository never mistakes a live
+ * transaction for a crashed one.
+ */
+public class Journal {
+    private static final String JOURNAL_FILE = "journal";
+    private static final String LOCK_FILE = "lock";
+    private static final String NEW_SUFFIX = ".new";
+    private static final String COMMIT_MARKER = "commit";
+    private static final String NONE = "-";
+    // File locks are held per process, so handles in one process also
+    // share a lock per repository
+    private static final Map<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path vcsDir;
+    private final RefStore refStore;
+
+    /**
+     * Creates a journal for a repository.
+     * @param vcsDir The .mini-vcs directory
+     * @param refStore The refs updated by transactions
+     */
+    public Journal(Path vcsDir, RefStore refStore) {
+        this.vcsDir = vcsDir;
+        this.refStore = refStore;
+    }
+
+    /**
+     * Starts a transaction.
+     * @return The transaction
+     */
+    public Transaction begin() {
+        return new Transaction();
+    }
+
+    /**
+     * A group of ref moves, file writes and file deletions that are applied
+     * together or not at all.
+     */
+    public class Transaction {
+        private final Map<String, String[]> refs = new LinkedHashMap<>();
+        private final Map<Path, byte[]> writes = new LinkedHashMap<>();
+        private final List<Path> deletes = new ArrayList<>();
+
+        private Transaction() {
+        }
+
+        /**
+         * Moves a ref, provided it still points where the caller expects.
+         * @param name The ref name
+         * @param expected The expected current id (null for a new or unborn ref)
+         * @param newId The new id
+         * @return This transaction
+         */
+        public Transaction updateRef(String name, String expected, String newId) {
+            refs.put(name, new String[] {expected, newId});
+            return this;
+        }
+
+        /**
+         * Replaces a file in the .mini-vcs directory.
+         * @param target The file to replace
+         * @param content The new content
+         * @return This transaction
+         */
+        public Transaction write(Path target, byte[] content) {
+            writes.put(target, content);
+            return this;
+        }
+
+        /**
+         * Deletes a file in the .mini-vcs directory if it exists.
+         * @param target The file to delete
+         * @return This transaction
+         */
+        public Transaction delete(Path target) {
+            deletes.add(target);
+            return this;
+        }
+
+        /**
+         * Writes and forces the new files, records the journal and applies
+         * the updates. A single file write skips the journal, since its
+         * rename is already atomic.
+         * @throws IOException If the transaction cannot be applied; nothing
+         *                     is changed if a ref was moved by someone else
+         */
+        public void commit() throws IOException {
+            synchronized (Journal.this) {
+                try (Lock held = lock()) {
+                    apply();
+                }
+            }
+        }
+
+        private void apply() throws IOException {
+            boolean journaled = refs.size() + writes.size() + deletes.size() > 1;
+            Path journal = vcsDir.resolve(JOURNAL_FILE);
+
+            try {
+                for (Map.Entry<Path, byte[]> write : writes.entrySet()) {
+                    writeFile(newPath(write.getKey()), write.getValue(), false);
+                }
+                // One pass of fsyncs for the whole transaction
+                for (Path target : writes.keySet()) {
+                    force(newPath(target));
+                }
+                if (journaled) {
+                    writeFile(journal, describe().getBytes(StandardCharsets.UTF_8), true);
+                }
+
+                if (!refs.isEmpty()) {
+                    RefStore.Transaction refUpdate = refStore.transaction();
+                    for (Map.Entry<String, String[]> ref : refs.entrySet()) {
+                        refUpdate.update(ref.getKey(), ref.getValue()[0], ref.getValue()[1]);
+                    }
+                    refUpdate.commit();
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Path target : writes.keySet()) {
+                    Files.deleteIfExists(newPath(target));
+                }
+                Files.deleteIfExists(journal);
+                throw e;
+            }
+
+            // From here on the journal lets recovery finish the job
+            for (Path target : writes.keySet()) {
+                moveIntoPlace(newPath(target), target);
+            }
+            for (Path target : deletes) {
+                Files.deleteIfExists(target);
+            }
+            forceDirectory(vcsDir);
+            Files.deleteIfExists(journal);
+        }
+
+        private String describe() {
+            StringBuilder content = new StringBuilder();
+            for (Map.Entry<String, String[]> ref : refs.entrySet()) {
+                content.append("ref ").append(ref.getKey())
+                        .append(" ").append(orNone(ref.getValue()[0]))
+                        .append(" ").append(orNone(ref.getValue()[1])).append("\n");
+            }
+            for (Path target : writes.keySet()) {
+                content.append("write ").append(vcsDir.relativize(target)).append("\n");
+            }
+            for (Path target : deletes) {
+                content.append("delete ").append(vcsDir.relativize(target)).append("\n");
+            }
+            return content.append(COMMIT_MARKER).append("\n").toString();
+        }
+    }
+
+    /**
+     * Finishes or undoes a transaction interrupted by a crash. A journal with
+     * a commit marker is replayed, unless one of its refs has since been moved
+     * elsewhere, in which case it is rolled back like an incomplete journal.
+     * Nothing is done while another handle or process holds the repository
+     * lock, since its transaction is still running.
+     * @return true if a journal was replayed
+     * @throws IOException If the journal cannot be applied
+     */
+    public synchronized boolean recover() throws IOException {
+        try (Lock held = tryLock()) {
+            // Someone is in the middle of a transaction, which is not ours to undo
+            return held != null && recoverLocked();
+        }
+    }
+
+    private boolean recoverLocked() throws IOException {
+        Path journal = vcsDir.resolve(JOURNAL_FILE);
+        List<String> lines = Files.exists(journal)
+                ? Files.readAllLines(journal, StandardCharsets.UTF_8)
+                : List.of();
+
+        boolean replay = !lines.isEmpty() && lines.get(lines.size() - 1).equals(COMMIT_MARKER);
+        if (replay) {
+            RefStore.Transaction refUpdate = refStore.transaction();
+            for (String line : lines) {
+                String[] parts = line.split(" ");
+                if (parts[0].equals("ref") && parts.length == 4) {
+                    String current = refStore.get(parts[1]);
+                    String expected = fromNone(parts[2]);
+                    String newId = fromNone(parts[3]);
+                    if (Objects.equals(current, expected)) {
+                        refUpdate.update(parts[1], expected, newId);
+                    } else if (!Objects.equals(current, newId)) {
+                        System.err.println("Rolling back interrupted update: ref "
+                                + parts[1] + " was moved to " + current);
+                        replay = false;
+                    }
+                }
+            }
+            if (replay) {
+                refUpdate.commit();
+            }
+        }
+
+        if (replay) {
+            for (String line : lines) {
+                String[] parts = line.split(" ", 2);
+                if (parts[0].equals("write")) {
+                    Path target = vcsDir.resolve(parts[1]);
+                    if (Files.exists(newPath(target))) {
+                        moveIntoPlace(newPath(target), target);
+                    }
+                } else if (parts[0].equals("delete")) {
+                    Files.deleteIfExists(vcsDir.resolve(parts[1]));
+                }
+            }
+            forceDirectory(vcsDir);
+        }
+
+        // Whatever was not replayed is discarded, including files written
+        // before a crash that came ahead of the journal itself
+        try (Stream<Path> files = Files.list(vcsDir)) {
+            for (Path file : files.toList()) {
+                if (file.getFileName().toString().endsWith(NEW_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        Files.deleteIfExists(journal);
+        return replay;
+    }
+
+    /**
+     * Exclusive hold on the repository lock, released on close.
+     */
+    static class Lock implements AutoCloseable {
+        private final ReentrantLock local;
+        private final FileChannel channel;
+
+        private Lock(ReentrantLock local, FileChannel channel) {
+            this.local = local;
+            this.channel = channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closing the channel releases the file lock
+            release(local, channel);
+        }
+    }
+
+    /**
+     * Takes the repository lock, waiting for whoever holds it.
+     * @return The held lock
+     * @throws IOException If the lock file cannot be opened
+     */
+    Lock lock() throws IOException {
+        ReentrantLock local = localLock();
+        local.lock();
+        FileChannel channel = null;
+        try {
+            channel = openLockFile();
+            channel.lock();
+            return new Lock(local, channel);
+        } catch (IOException | RuntimeException e) {
+            release(local, channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the repository lock if nobody holds it.
+     * @return The held lock, or null if it is taken
+     * @throws IOException If the lock file cannot be opened
+     */
+    Lock tryLock() throws IOException {
+        ReentrantLock local = localLock();
+        if (!local.tryLock()) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = openLockFile();
+            if (channel.tryLock() != null) {
+                return new Lock(local, channel);
+            }
+        } catch (OverlappingFileLockException e) {
+            // Held by this thread further up the stack
+        } catch (IOException | RuntimeException e) {
+            release(local, channel);
+            throw e;
+        }
+        release(local, channel);
+        return null;
+    }
+
+    private static void release(ReentrantLock local, FileChannel channel) throws IOException {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    private ReentrantLock localLock() {
+        return LOCAL_LOCKS.computeIfAbsent(vcsDir.toAbsolutePath().normalize(), path -> new ReentrantLock());
+    }
+
+    private FileChannel openLockFile() throws IOException {
+        // The file itself is kept; only the lock on it matters
+        return FileChannel.open(vcsDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+    }
+
+    private static Path newPath(Path target) {
+        return target.resolveSibling(target.getFileName() + NEW_SUFFIX);
+    }
+
+    private static String orNone(String id) {
+        return id != null ? id : NONE;
+    }
+
+    private static String fromNone(String id) {
+        return NONE.equals(id) ? null : id;
+    }
+
+    private static void writeFile(Path file, byte[] content, boolean force) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    /** Makes renames durable where the platform allows syncing a directory. */
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform (e.g. Windows); renames are still atomic
+        }
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds common ancestors of commits using the commit graph.
+ * Commits are painted from both sides and visited in generation order
+ * through a priority queue, so the walk stops as soon as every commit left
+ * to visit is already known to be below a common ancestor; on two
+ * long-lived branches only the commits down to the fork point are touched.
+ */
+public class MergeBase {
+    private static final int PARENT1 = 1;
+    private static final int PARENT2 = 2;
+    private static final int STALE = 4;
+    private static final int RESULT = 8;
+
+    private MergeBase() {
+    }
+
+    /**
+     * Finds the best common ancestor of two commits.
+     * @param graph The commit graph
+     * @param first The first commit id
+     * @param second The second commit id
+     * @return The merge base, or null if the commits share no history
+     */
+    public static String find(CommitGraph graph, String first, String second) {
+        List<String> bases = findAll(graph, first, second);
+        return bases.isEmpty() ? null : bases.get(0);
+    }
+
+    /**
+     * Finds all best common ancestors of two commits, i.e. common ancestors
+     * that are not themselves ancestors of another common ancestor.
+     * @param graph The commit graph
+     * @param first The first commit id
+     * @param second The second commit id
+     * @return The merge bases, highest generation first
+     */
+    public static List<String> findAll(CommitGraph graph, String first, String second) {
+        int a = graph.position(first);
+        int b = graph.position(second);
+        List<String> result = new ArrayList<>();
+
+        if (a < 0 || b < 0) {
+            return result;
+        }
+        if (a == b) {
+            result.add(first);
+            return result;
+        }
+
+        List<Integer> candidates = paintDownToCommon(graph, a, b);
+        for (int candidate : candidates) {
+            boolean redundant = false;
+            for (int other : candidates) {
+                if (other != candidate && isAncestor(graph, candidate, other)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                result.add(graph.idAt(candidate));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether one commit is an ancestor of (or equal to) another.
+     * The walk never descends below the ancestor's generation.
+     * @param graph The commit graph
+     * @param ancestor The possible ancestor
+     * @param descendant The possible descendant
+     * @return true if ancestor is reachable from descendant
+     */
+    public static boolean isAncestor(CommitGraph graph, String ancestor, String descendant) {
+        int a = graph.position(ancestor);
+        int d = graph.position(descendant);
+        return a >= 0 && d >= 0 && isAncestor(graph, a, d);
+    }
+
+    static boolean isAncestor(CommitGraph graph, int ancestor, int descendant) {
+        if (ancestor == descendant) {
+            return true;
+        }
+
+        int floor = graph.generationAt(ancestor);
+        if (graph.generationAt(descendant) <= floor) {
+            return false;
+        }
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        Set<Integer> seen = new HashSet<>();
+        stack.push(descendant);
+        seen.add(descendant);
+
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            for (int parent : graph.parentPositions(current)) {
+                if (parent == ancestor) {
+                    return true;
+                }
+                if (parent >= 0 && graph.generationAt(parent) > floor && seen.add(parent)) {
+                    stack.push(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<Integer> paintDownToCommon(CommitGraph graph, int a, int b) {
+        Map<Integer, Integer> flags = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>((x, y) -> {
+            int byGeneration = Integer.compare(graph.generationAt(y), graph.generationAt(x));
+            return byGeneration != 0
+                    ? byGeneration
+                    : Long.compare(graph.timestampAt(y), graph.timestampAt(x));
+        });
+
+        Set<Integer> queued = new HashSet<>();
+
+        flags.put(a, PARENT1);
+        flags.put(b, PARENT2);
+        queue.add(a);
+        queue.add(b);
+        queued.add(a);
+        queued.add(b);
+        int active = 2; // queued commits that are not yet stale
+
+        List<Integer> result = new ArrayList<>();
+        while (active > 0) {
+            int current = queue.poll();
+            queued.remove(current);
+            int flag = flags.get(current);
+            if ((flag & STALE) == 0) {
+                active--;
+            }
+
+            int paint = flag & (PARENT1 | PARENT2 | STALE);
+            if (paint == (PARENT1 | PARENT2)) {
+                if ((flag & RESULT) == 0) {
+                    flags.put(current, flag | RESULT);
+                    result.add(current);
+                }
+                // Everything below a common ancestor is uninteresting
+                paint |= STALE;
+            }
+
+            for (int parent : graph.parentPositions(current)) {
+                if (parent < 0) {
+                    continue;
+                }
+                int parentFlag = flags.getOrDefault(parent, 0);
+                if ((parentFlag & paint) == paint) {
+                    continue;
+                }
+
+                int updated = parentFlag | paint;
+                flags.put(parent, updated);
+
+                // Queue order depends only on generation and time, so a queued
+                // commit just takes the new paint without being re-queued
+                if (queued.contains(parent)) {
+                    if ((parentFlag & STALE) == 0 && (updated & STALE) != 0) {
+                        active--;
+                    }
+                } else {
+                    queue.add(parent);
+                    queued.add(parent);
+                    if ((updated & STALE) == 0) {
+                        active++;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,162 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Utility class for three-way merging of text file versions.
+ * Both sides are aligned to the common base line by line; regions changed on
+ * only one side are taken from that side, and regions changed differently on
+ * both sides are written out between conflict markers. Files whose line
+ * matching would need a table of more than {@link #MAX_MATCH_CELLS} cells
+ * are not aligned at all; they become a single whole-file conflict.
+ */
+public class MergeTool {
+    public static final String OURS_MARKER = "<<<<<<< ";
+    public static final String SEPARATOR_MARKER = "=======";
+    public static final String THEIRS_MARKER = ">>>>>>> ";
+    // Same cap as diffs; merges run several files at once, each with two tables
+    private static final long MAX_MATCH_CELLS = 1L << 21;
+
+    private MergeTool() {
+    }
+
+    /**
+     * Result of a three-way merge.
+     */
+    public static class Result {
+        private final String content;
+        private final int conflicts;
+
+        Result(String content, int conflicts) {
+            this.content = content;
+            this.conflicts = conflicts;
+        }
+
+        /**
+         * Gets the merged content, including conflict markers if any
+         * @return The merged content
+         */
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * Gets the number of conflicting regions
+         * @return The number of conflicts
+         */
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        /**
+         * Checks if the merge produced conflicts
+         * @return true if at least one region conflicts
+         */
+        public boolean hasConflicts() {
+            return conflicts > 0;
+        }
+    }
+
+    /**
+     * Merges two versions of a text file against their common base.
+     * @param base Content of the common ancestor
+     * @param ours Content of the current branch
+     * @param theirs Content of the branch being merged
+     * @param oursLabel Label written after the ours conflict marker
+     * @param theirsLabel Label written after the theirs conflict marker
+     * @return The merge result
+     */
+    public static Result merge(String base, String ours, String theirs, String oursLabel, String theirsLabel) {
+        if (ours.equals(base)) {
+            return new Result(theirs, 0);
+        }
+        if (theirs.equals(base) || ours.equals(theirs)) {
+            return new Result(ours, 0);
+        }
+
+        // Keep the trailing empty element so a final newline survives the merge
+        String[] baseLines = base.split("\n", -1);
+        String[] ourLines = ours.split("\n", -1);
+        String[] theirLines = theirs.split("\n", -1);
+
+        if (DiffTool.matchCost(baseLines, ourLines) > MAX_MATCH_CELLS
+                || DiffTool.matchCost(baseLines, theirLines) > MAX_MATCH_CELLS) {
+            return wholeFileConflict(ours, theirs, oursLabel, theirsLabel);
+        }
+
+        int[] toOurs = DiffTool.matchLines(baseLines, ourLines);
+        int[] toTheirs = DiffTool.matchLines(baseLines, theirLines);
+
+        List<String> merged = new ArrayList<>(Math.max(ourLines.length, theirLines.length));
+        int conflicts = 0;
+        int b = 0;
+        int o = 0;
+        int t = 0;
+
+        while (b < baseLines.length || o < ourLines.length || t < theirLines.length) {
+            // Lines unchanged on both sides are copied through
+            if (b < baseLines.length && toOurs[b] == o && toTheirs[b] == t) {
+                merged.add(baseLines[b]);
+                b++;
+                o++;
+                t++;
+                continue;
+            }
+
+            // Find the next base line both sides still agree on
+            int sync = b;
+            while (sync < baseLines.length && (toOurs[sync] < 0 || toTheirs[sync] < 0)) {
+                sync++;
+            }
+            int oursEnd = sync < baseLines.length ? toOurs[sync] : ourLines.length;
+            int theirsEnd = sync < baseLines.length ? toTheirs[sync] : theirLines.length;
+
+            String[] baseRegion = Arrays.copyOfRange(baseLines, b, sync);
+            String[] ourRegion = Arrays.copyOfRange(ourLines, o, oursEnd);
+            String[] theirRegion = Arrays.copyOfRange(theirLines, t, theirsEnd);
+
+            if (Arrays.equals(ourRegion, baseRegion)) {
+                Collections.addAll(merged, theirRegion);
+            } else if (Arrays.equals(theirRegion, baseRegion) || Arrays.equals(ourRegion, theirRegion)) {
+                Collections.addAll(merged, ourRegion);
+            } else {
+                conflicts++;
+                merged.add(OURS_MARKER + oursLabel);
+                Collections.addAll(merged, ourRegion);
+                merged.add(SEPARATOR_MARKER);
+                Collections.addAll(merged, theirRegion);
+                merged.add(THEIRS_MARKER + theirsLabel);
+            }
+
+            b = sync;
+            o = oursEnd;
+            t = theirsEnd;
+        }
+
+        return new Result(String.join("\n", merged), conflicts);
+    }
+
+    /**
+     * Puts both versions between conflict markers, for files too far apart
+     * to align line by line.
+     */
+    private static Result wholeFileConflict(String ours, String theirs, String oursLabel, String theirsLabel) {
+        StringBuilder content = new StringBuilder(ours.length() + theirs.length() + 64);
+        content.append(OURS_MARKER).append(oursLabel).append('\n');
+        appendLines(content, ours);
+        content.append(SEPARATOR_MARKER).append('\n');
+        appendLines(content, theirs);
+        content.append(THEIRS_MARKER).append(theirsLabel).append('\n');
+        return new Result(content.toString(), 1);
+    }
+
+    private static void appendLines(StringBuilder content, String text) {
+        content.append(text);
+        if (!text.isEmpty() && !text.endsWith("\n")) {
+            content.append('\n');
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import vcs.util.HashUtils;
+
+/**
+ * How a repository names the objects holding file content, recorded in
+ * .mini-vcs/format.
+ *
+ * Repositories created before the format file existed hashed content as
+ * text: decoded with the platform charset and encoded again as UTF-8. That
+ * gives the same id as the raw bytes for ASCII, and for UTF-8 text on a
+ * UTF-8 platform, but not for binary files or for text in another charset
+ * such as cp1252 on Windows, where different files could even share an id.
+ * New repositories hash the raw bytes. A repository without the file keeps
+ * the text hash, so the ids in its commits still match its working files;
+ * ids are only ever compared within one repository, so the two never mix.
+ * Commit ids, chunk ids and other internal objects are not affected.
+ */
+public enum ObjectFormat {
+    /** SHA-1 of the content read as platform text; repositories without a format file. */
+    TEXT(1),
+    /** SHA-1 of the raw bytes. */
+    RAW(2);
+
+    private static final String FORMAT_FILE = "format";
+    private static final String KEY = "objects";
+
+    private final int version;
+
+    ObjectFormat(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Incremental hash of one object's content.
+     */
+    public interface Digest {
+        /**
+         * Adds the remaining bytes of a buffer.
+         * @param content Buffer to add; its position is advanced to its limit
+         */
+        void update(ByteBuffer content);
+
+        /**
+         * Completes the hash.
+         * @return The object id
+         */
+        String finish();
+    }
+
+    /**
+     * Reads the format of a repository.
+     * @param vcsDir The .mini-vcs directory
+     * @return The format in the format file, {@link #TEXT} for an existing
+     *         repository without one, or {@link #RAW} if there is no repository
+     * @throws IOException If the file cannot be read or names a format this version does not know
+     */
+    public static ObjectFormat read(Path vcsDir) throws IOException {
+        Path file = vcsDir.resolve(FORMAT_FILE);
+        if (!Files.exists(file)) {
+            return Files.isDirectory(vcsDir) ? TEXT : RAW;
+        }
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length == 2 && parts[0].equals(KEY)) {
+                for (ObjectFormat format : values()) {
+                    if (parts[1].equals(Integer.toString(format.version))) {
+                        return format;
+                    }
+                }
+                throw new IOException("Unsupported object format " + parts[1] + " in " + file);
+            }
+        }
+        throw new IOException("No object format in " + file);
+    }
+
+    /**
+     * Records this format for a new repository.
+     * @param vcsDir The .mini-vcs directory
+     * @throws IOException If writing fails
+     */
+    public void write(Path vcsDir) throws IOException {
+        Files.writeString(vcsDir.resolve(FORMAT_FILE), KEY + " " + version + "\n", StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the id of some content.
+     * @param content Buffer to hash; its position is advanced to its limit
+     * @return The object id
+     */
+    public String hash(ByteBuffer content) {
+        return this == TEXT ? HashUtils.generateTextSHA1(content) : HashUtils.generateSHA1(content);
+    }
+
+    /**
+     * Gets the id a file's content would be stored under.
+     * @param file The file to hash
+     * @return The object id
+     * @throws IOException If the file cannot be read
+     */
+    public String hash(Path file) throws IOException {
+        return this == TEXT ? HashUtils.generateTextSHA1(file) : HashUtils.generateSHA1(file);
+    }
+
+    /**
+     * Starts an incremental hash, for content read a piece at a time.
+     * @return A new digest
+     */
+    public Digest newDigest() {
+        if (this == TEXT) {
+            HashUtils.TextDigest text = new HashUtils.TextDigest();
+            return new Digest() {
+                @Override
+                public void update(ByteBuffer content) {
+                    text.update(content);
+                }
+
+                @Override
+                public String finish() {
+                    return text.finish();
+                }
+            };
+        }
+
+        MessageDigest raw;
+        try {
+            raw = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 algorithm not available", e);
+        }
+        return new Digest() {
+            @Override
+            public void update(ByteBuffer content) {
+                raw.update(content);
+            }
+
+            @Override
+            public String finish() {
+                return HashUtils.bytesToHex(raw.digest());
+            }
+        };
+    }
+}
@@ -0,0 +1,473 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import vcs.util.HashUtils;
+
+/**
+ * Content-addressed, write-once store for objects under .mini-vcs/objects.
+ * An object is written at most once: a write is skipped when the object file
+ * already exists, and otherwise goes to a temporary file that is forced to
+ * disk and atomically renamed into place, so readers never observe a
+ * partially written object and two writers of the same content end with the
+ * same file. Nothing is listed or cached up front, so opening a store and
+ * adding one file costs the same however many objects it holds.
+ * Temporary files live in a sibling tmp directory, so the objects
+ * directory only changes when an object is renamed into it.
+ * Large files are stored as content-defined chunks plus a chunk-list
+ * manifest kept under the hash of the whole file, so a small edit only adds
+ * the chunks around it.
+ */
+public class ObjectStore {
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    /** Leading NUL keeps the header from colliding with any text file. */
+    private static final byte[] MANIFEST_MAGIC
+            = "\0mini-vcs-chunks 1\n".getBytes(StandardCharsets.US_ASCII);
+
+    /** Files at least this large are stored as chunks. */
+    public static final long LARGE_FILE_THRESHOLD = 64L * 1024 * 1024;
+
+    /** Size of the region of a large file mapped at a time while chunking. */
+    private static final int CHUNK_WINDOW = 256 * 1024 * 1024;
+
+    /**
+     * Entry of a chunk-list manifest.
+     */
+    private static class Chunk {
+        final String hash;
+        final long size;
+
+        Chunk(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+
+    private final Path objectsDir;
+    private final Path tempDir;
+    private volatile RepositoryCounters counters;
+    private final Object moveLock = new Object();
+
+    /**
+     * Creates a store over the given objects directory.
+     * @param objectsDir The objects directory
+     */
+    public ObjectStore(Path objectsDir) {
+        this.objectsDir = objectsDir;
+        this.tempDir = objectsDir.resolveSibling("tmp");
+    }
+
+    /**
+     * Sets the counters to report new objects to.
+     * @param counters The repository counters
+     */
+    void setCounters(RepositoryCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Counts the objects and the space they take by listing the store.
+     * @return The object count and the total size in bytes
+     * @throws IOException If the store cannot be listed
+     */
+    public long[] measure() throws IOException {
+        long[] totals = new long[2];
+        if (!Files.isDirectory(objectsDir)) {
+            return totals;
+        }
+
+        try (Stream<Path> stream = Files.list(objectsDir)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                if (!path.getFileName().toString().startsWith(TEMP_PREFIX) && Files.isRegularFile(path)) {
+                    totals[0]++;
+                    totals[1] += Files.size(path);
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Gets the modification time of the objects directory, which moves
+     * whenever an object is added.
+     * @return The time in nanoseconds, or 0 if the directory does not exist
+     * @throws IOException If the directory cannot be read
+     */
+    public long lastModified() throws IOException {
+        if (!Files.isDirectory(objectsDir)) {
+            return 0;
+        }
+        return Files.getLastModifiedTime(objectsDir).to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the path of the file backing an object.
+     * @param hash Hash of the object
+     * @return Path of the object file
+     */
+    public Path path(String hash) {
+        return objectsDir.resolve(hash);
+    }
+
+    /**
+     * Checks whether an object exists in the store.
+     * @param hash Hash of the object
+     * @return true if the object exists
+     */
+    public boolean contains(String hash) {
+        return Files.exists(path(hash));
+    }
+
+    /**
+     * Writes a file version's content under its hash unless it already exists.
+     * @param version The file version to store
+     * @return true if a new object was written
+     * @throws IOException If writing fails
+     */
+    public boolean write(FileVersion version) throws IOException {
+        return write(version.getHash(), version.getContentBuffer());
+    }
+
+    /**
+     * Writes raw bytes under the given hash unless the object already exists.
+     * @param hash Hash of the object
+     * @param data Content of the object
+     * @return true if a new object was written
+     * @throws IOException If writing fails
+     */
+    public boolean write(String hash, byte[] data) throws IOException {
+        return write(hash, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Writes a buffer under the given hash unless the object already exists.
+     * @param hash Hash of the object
+     * @param data Content of the object; consumed from a private view
+     * @return true if a new object was written
+     * @throws IOException If writing fails
+     */
+    public boolean write(String hash, ByteBuffer data) throws IOException {
+        // Racing a concurrent writer is harmless: the rename below keeps one copy
+        if (contains(hash)) {
+            return false;
+        }
+
+        Files.createDirectories(objectsDir);
+        Files.createDirectories(tempDir);
+        Path target = path(hash);
+        long size = data.remaining();
+        Path temp = tempDir.resolve(TEMP_PREFIX + hash + "-"
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        boolean written = false;
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer view = data.duplicate();
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+                channel.force(false);
+            }
+
+            // Renames are serialized so two writers of the same object count it once
+            synchronized (moveLock) {
+                boolean existed = Files.exists(target);
+                long modifiedBefore = lastModified();
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                written = !existed;
+                RepositoryCounters current = counters;
+                if (current != null) {
+                    current.objectMoved(written ? size : -1, modifiedBefore, lastModified());
+                }
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Another writer got there first with identical content
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return written;
+    }
+
+    /**
+     * Stores a large file as content-defined chunks and a manifest, in a
+     * repository that hashes raw bytes.
+     * @param file The file to store
+     * @return A lazy version whose hash is the hash of the whole file
+     * @throws IOException If reading or writing fails
+     */
+    public FileVersion writeChunked(Path file) throws IOException {
+        return writeChunked(file, ObjectFormat.RAW);
+    }
+
+    /**
+     * Stores a large file as content-defined chunks and a manifest.
+     * The file is mapped a window at a time, so files larger than 2 GB work
+     * and memory use stays bounded. Chunks already in the store are skipped.
+     * Chunks are always named by their raw bytes; only the manifest, which
+     * commits refer to, is named as the repository's format says.
+     * @param file The file to store
+     * @param format How the repository names objects
+     * @return A lazy version whose hash is the hash of the whole file
+     * @throws IOException If reading or writing fails
+     */
+    public FileVersion writeChunked(Path file, ObjectFormat format) throws IOException {
+        ObjectFormat.Digest fileDigest = format.newDigest();
+        StringBuilder manifest = new StringBuilder();
+        long size;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            long position = 0;
+
+            while (position < size) {
+                int windowLength = (int) Math.min(CHUNK_WINDOW, size - position);
+                boolean lastWindow = position + windowLength == size;
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowLength);
+
+                int offset = 0;
+                while (offset < windowLength) {
+                    int remaining = windowLength - offset;
+                    if (!lastWindow && remaining < ContentChunker.MAX_CHUNK) {
+                        // Remap so the next cut point sees a full window of lookahead
+                        break;
+                    }
+
+                    int length = ContentChunker.nextChunk(window, offset, remaining);
+                    ByteBuffer chunk = window.duplicate();
+                    chunk.position(offset).limit(offset + length);
+                    chunk = chunk.slice();
+
+                    fileDigest.update(chunk.duplicate());
+                    String chunkHash = HashUtils.generateSHA1(chunk.duplicate());
+                    write(chunkHash, chunk);
+
+                    manifest.append(chunkHash).append(' ').append(length).append('\n');
+                    offset += length;
+                }
+
+                position += offset;
+            }
+        }
+
+        String hash = fileDigest.finish();
+        if (!contains(hash)) {
+            byte[] body = (size + "\n" + manifest).getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer data = ByteBuffer.allocate(MANIFEST_MAGIC.length + body.length);
+            data.put(MANIFEST_MAGIC).put(body).flip();
+            write(hash, data);
+        }
+
+        return new FileVersion(hash, size, this::read);
+    }
+
+    /**
+     * Checks whether an object is stored as a chunk-list manifest.
+     * @param hash Hash of the object
+     * @return true if the object is chunked
+     * @throws IOException If the object cannot be read
+     */
+    public boolean isChunked(String hash) throws IOException {
+        Path objectPath = path(hash);
+        if (!Files.exists(objectPath)) {
+            throw new IOException("Missing object: " + hash);
+        }
+
+        try (FileChannel channel = FileChannel.open(objectPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(MANIFEST_MAGIC.length);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the header or up to EOF
+            }
+            return !header.hasRemaining() && Arrays.equals(header.array(), MANIFEST_MAGIC);
+        }
+    }
+
+    /**
+     * Gets the size of an object's content; for chunked objects this is the
+     * size of the original file, not of the manifest.
+     * @param hash Hash of the object
+     * @return Size in bytes
+     * @throws IOException If the object cannot be read
+     */
+    public long size(String hash) throws IOException {
+        if (isChunked(hash)) {
+            return manifestSize(readManifestLines(hash));
+        }
+        return Files.size(path(hash));
+    }
+
+    /**
+     * Streams an object's content to a channel, chunk by chunk for large
+     * files, without loading it into memory as a whole.
+     * @param hash Hash of the object
+     * @param out Channel to write to
+     * @throws IOException If reading or writing fails
+     */
+    public void copyTo(String hash, WritableByteChannel out) throws IOException {
+        if (!isChunked(hash)) {
+            writeFully(FileVersion.readBuffer(path(hash)), out);
+            return;
+        }
+
+        for (Chunk chunk : readManifest(hash)) {
+            writeFully(FileVersion.readBuffer(path(chunk.hash)), out);
+        }
+    }
+
+    /**
+     * Streams part of an object's content to a channel. Only the chunks the
+     * range touches are opened, and bytes go from file to channel without
+     * passing through the heap where the platform allows, so memory use
+     * does not depend on the size of the object or the range.
+     * @param hash Hash of the object
+     * @param offset First byte to copy
+     * @param length Number of bytes to copy
+     * @param out Channel to write to
+     * @throws IOException If the range lies outside the object, or reading or writing fails
+     */
+    public void copyTo(String hash, long offset, long length, WritableByteChannel out) throws IOException {
+        if (!isChunked(hash)) {
+            transferRange(path(hash), offset, length, out);
+            return;
+        }
+
+        long chunkStart = 0;
+        for (Chunk chunk : readManifest(hash)) {
+            if (length == 0) {
+                break;
+            }
+
+            long chunkEnd = chunkStart + chunk.size;
+            if (offset < chunkEnd) {
+                long count = Math.min(chunkEnd - offset, length);
+                transferRange(path(chunk.hash), offset - chunkStart, count, out);
+                offset += count;
+                length -= count;
+            }
+            chunkStart = chunkEnd;
+        }
+
+        if (length > 0) {
+            throw new EOFException("Range past the end of object " + hash);
+        }
+    }
+
+    private static void transferRange(Path file, long position, long count, WritableByteChannel out)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (position + count > channel.size()) {
+                throw new EOFException("Range past the end of " + file.getFileName());
+            }
+            while (count > 0) {
+                long written = channel.transferTo(position, count, out);
+                position += written;
+                count -= written;
+            }
+        }
+    }
+
+    /**
+     * Reads an object into a read-only buffer, mapping large objects.
+     * Chunked objects are reassembled, which only works below 2 GB;
+     * use {@link #copyTo} to stream larger ones.
+     * @param hash Hash of the object
+     * @return Buffer over the object's content
+     * @throws IOException If the object is missing or unreadable
+     */
+    public ByteBuffer read(String hash) throws IOException {
+        if (!isChunked(hash)) {
+            return FileVersion.readBuffer(path(hash));
+        }
+
+        List<Chunk> chunks = readManifest(hash);
+        long size = 0;
+        for (Chunk chunk : chunks) {
+            size += chunk.size;
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Object " + hash + " is too large to load into memory; stream it instead");
+        }
+
+        ByteBuffer assembled = ByteBuffer.allocate((int) size);
+        for (Chunk chunk : chunks) {
+            assembled.put(FileVersion.readBuffer(path(chunk.hash)));
+        }
+        assembled.flip();
+        return assembled.asReadOnlyBuffer();
+    }
+
+    private List<Chunk> readManifest(String hash) throws IOException {
+        List<String> lines = readManifestLines(hash);
+        List<Chunk> chunks = new ArrayList<>(lines.size());
+
+        // First line holds the total size
+        for (int i = 1; i < lines.size(); i++) {
+            String[] parts = lines.get(i).split(" ");
+            chunks.add(new Chunk(parts[0], Long.parseLong(parts[1])));
+        }
+        return chunks;
+    }
+
+    private List<String> readManifestLines(String hash) throws IOException {
+        byte[] data = Files.readAllBytes(path(hash));
+        String body = new String(data, MANIFEST_MAGIC.length,
+                data.length - MANIFEST_MAGIC.length, StandardCharsets.US_ASCII);
+
+        List<String> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static long manifestSize(List<String> lines) {
+        return lines.isEmpty() ? 0 : Long.parseLong(lines.get(0).trim());
+    }
+
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+
+    /**
+     * Reads a small object such as a commit fully into memory.
+     * @param hash Hash of the object
+     * @return The object's bytes, or null if the object does not exist
+     * @throws IOException If the object is unreadable
+     */
+    public byte[] readBytes(String hash) throws IOException {
+        Path objectPath = path(hash);
+        if (!Files.exists(objectPath)) {
+            return null;
+        }
+        return Files.readAllBytes(objectPath);
+    }
+}
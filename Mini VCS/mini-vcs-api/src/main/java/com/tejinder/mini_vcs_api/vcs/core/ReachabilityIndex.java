@@ -0,0 +1,332 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import vcs.util.HashUtils;
+import vcs.datastructures.LRUCache;
+import vcs.datastructures.RoaringBitmap;
+
+/**
+ * Reachability bitmaps for selected commits, stored in .mini-vcs/bitmaps.
+ * Each bitmap holds the commit-graph positions of every commit reachable
+ * from one commit, including itself. Bitmaps are kept for the branch heads
+ * and for every commit whose generation is a multiple of
+ * {@link #BITMAP_SPACING}, so any commit is only a short walk away from one.
+ *
+ * Ancestry, range and counting queries walk from the commits involved down
+ * to the nearest bitmapped commits and combine the bitmaps with AND/ANDNOT.
+ * Positions change when the graph is compacted, so the bitmaps are rebuilt
+ * whenever the graph epoch moves or the stored positions no longer match.
+ */
+public class ReachabilityIndex {
+    private static final String BITMAP_FILE = "bitmaps";
+    private static final int MAGIC = 0x4d564254; // "MVBT"
+    private static final int VERSION = 1;
+
+    static final int BITMAP_SPACING = 128;
+    private static final int REACH_CACHE_SIZE = 256;
+
+    private final CommitGraph graph;
+    private final Supplier<Collection<String>> tips;
+    private final Map<Integer, RoaringBitmap> bitmaps = new HashMap<>();
+    private final LRUCache<Integer, RoaringBitmap> reachCache = new LRUCache<>(REACH_CACHE_SIZE);
+    private int epoch = -1;
+
+    /**
+     * Creates an index over a commit graph. Nothing is read until the first query.
+     * @param graph The commit graph
+     * @param tips Supplies the branch heads, which always get a bitmap
+     */
+    public ReachabilityIndex(CommitGraph graph, Supplier<Collection<String>> tips) {
+        this.graph = graph;
+        this.tips = tips;
+    }
+
+    /**
+     * Checks whether one commit is an ancestor of (or equal to) another.
+     * @param ancestor The possible ancestor
+     * @param descendant The possible descendant
+     * @return true if ancestor is reachable from descendant
+     */
+    public synchronized boolean isAncestor(String ancestor, String descendant) {
+        int a = graph.position(ancestor);
+        int d = graph.position(descendant);
+        if (a < 0 || d < 0) {
+            return false;
+        }
+        if (a == d) {
+            return true;
+        }
+        int floor = graph.generationAt(a);
+        if (floor >= graph.generationAt(d)) {
+            return false;
+        }
+
+        ensureCurrent();
+        RoaringBitmap cached = reachCache.get(d);
+        if (cached != null) {
+            return cached.contains(a);
+        }
+
+        // Walk down, answering from the first bitmaps met and never going
+        // below the ancestor's generation
+        Deque<Integer> stack = new ArrayDeque<>();
+        RoaringBitmap seen = new RoaringBitmap();
+        stack.push(d);
+        seen.add(d);
+
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            RoaringBitmap bitmap = bitmaps.get(current);
+            if (bitmap != null) {
+                if (bitmap.contains(a)) {
+                    return true;
+                }
+                continue;
+            }
+            for (int parent : graph.parentPositions(current)) {
+                if (parent == a) {
+                    return true;
+                }
+                if (parent >= 0 && graph.generationAt(parent) > floor && seen.add(parent)) {
+                    stack.push(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the commits reachable from one commit but not from another,
+     * e.g. the commits on a branch that are not on the current branch.
+     * @param exclude Commit whose history is excluded (may be null)
+     * @param include Commit whose history is listed
+     * @return The commit ids, newest first
+     */
+    public synchronized List<String> commitsBetween(String exclude, String include) {
+        RoaringBitmap range = range(exclude, include);
+        List<Integer> positions = new ArrayList<>(range.cardinality());
+        range.forEach(positions::add);
+        positions.sort(Comparator
+                .comparingInt((Integer position) -> graph.generationAt(position))
+                .thenComparingLong(graph::timestampAt)
+                .reversed());
+
+        List<String> ids = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            ids.add(graph.idAt(position));
+        }
+        return ids;
+    }
+
+    /**
+     * Counts the commits reachable from one commit but not from another.
+     * @param exclude Commit whose history is excluded (may be null)
+     * @param include Commit whose history is counted
+     * @return The number of commits
+     */
+    public synchronized int countBetween(String exclude, String include) {
+        return range(exclude, include).cardinality();
+    }
+
+    /**
+     * Counts the commits in the history of a commit, including itself.
+     * @param commitId The commit id
+     * @return The number of reachable commits, or 0 if the commit is unknown
+     */
+    public synchronized int count(String commitId) {
+        return countBetween(null, commitId);
+    }
+
+    private RoaringBitmap range(String exclude, String include) {
+        int i = graph.position(include);
+        if (i < 0) {
+            return new RoaringBitmap();
+        }
+        int e = exclude != null ? graph.position(exclude) : -1;
+        return e < 0 ? reachable(i) : RoaringBitmap.andNot(reachable(i), reachable(e));
+    }
+
+    /**
+     * Gets the positions reachable from a commit by walking down to the
+     * nearest bitmapped commits and merging their bitmaps.
+     */
+    private RoaringBitmap reachable(int position) {
+        ensureCurrent();
+
+        RoaringBitmap cached = reachCache.get(position);
+        if (cached != null) {
+            return cached;
+        }
+
+        RoaringBitmap result = walk(position, bitmaps);
+        reachCache.put(position, result);
+        return result;
+    }
+
+    private RoaringBitmap walk(int start, Map<Integer, RoaringBitmap> known) {
+        RoaringBitmap stored = known.get(start);
+        if (stored != null) {
+            return stored;
+        }
+
+        RoaringBitmap result = new RoaringBitmap();
+        Deque<Integer> stack = new ArrayDeque<>();
+        result.add(start);
+        stack.push(start);
+
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            for (int parent : graph.parentPositions(current)) {
+                if (parent < 0 || result.contains(parent)) {
+                    continue;
+                }
+                RoaringBitmap parentBitmap = known.get(parent);
+                if (parentBitmap != null) {
+                    result.orWith(parentBitmap);
+                } else {
+                    result.add(parent);
+                    stack.push(parent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Makes sure the bitmaps match the current graph positions, loading
+     * them from disk or rebuilding them as needed.
+     */
+    private void ensureCurrent() {
+        int current = graph.getEpoch();
+        if (epoch == current) {
+            return;
+        }
+
+        bitmaps.clear();
+        reachCache.clear();
+        epoch = current;
+
+        try {
+            if (read()) {
+                return;
+            }
+        } catch (IOException e) {
+            bitmaps.clear();
+        }
+
+        rebuild();
+    }
+
+    /**
+     * Recomputes the bitmaps for the selected commits and writes them to disk.
+     * Commits are processed in generation order, so each walk stops at the
+     * bitmaps already built below it.
+     */
+    public synchronized void rebuild() {
+        bitmaps.clear();
+        reachCache.clear();
+        epoch = graph.getEpoch();
+
+        TreeSet<Integer> selected = new TreeSet<>(Comparator
+                .comparingInt((Integer position) -> graph.generationAt(position))
+                .thenComparingInt(position -> position));
+        for (String tip : tips.get()) {
+            int position = graph.position(tip);
+            if (position >= 0) {
+                selected.add(position);
+            }
+        }
+        for (int position = 0; position < graph.size(); position++) {
+            if (graph.generationAt(position) % BITMAP_SPACING == 0) {
+                selected.add(position);
+            }
+        }
+
+        for (int position : selected) {
+            bitmaps.put(position, walk(position, bitmaps));
+        }
+
+        try {
+            write();
+        } catch (IOException e) {
+            // The bitmaps are only a cache; they are rebuilt on the next start
+            System.err.println("Failed to write reachability bitmaps: " + e.getMessage());
+        }
+    }
+
+    private boolean read() throws IOException {
+        Path bitmapPath = graph.getDirectory().resolve(BITMAP_FILE);
+        if (!Files.exists(bitmapPath)) {
+            return false;
+        }
+
+        try (InputStream stream = Files.newInputStream(bitmapPath);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+
+            int count = in.readInt();
+            byte[] id = new byte[20];
+            for (int i = 0; i < count; i++) {
+                in.readFully(id);
+                int position = in.readInt();
+                RoaringBitmap bitmap = RoaringBitmap.readFrom(in);
+
+                // Positions are only valid for the graph layout they were built on
+                if (position < 0 || position >= graph.size()
+                        || !graph.idAt(position).equals(HashUtils.bytesToHex(id))) {
+                    bitmaps.clear();
+                    return false;
+                }
+                bitmaps.put(position, bitmap);
+            }
+        }
+        return true;
+    }
+
+    private void write() throws IOException {
+        Path dir = graph.getDirectory();
+        Path bitmapPath = dir.resolve(BITMAP_FILE);
+        Path temp = dir.resolve(BITMAP_FILE + ".lock");
+
+        Files.createDirectories(dir);
+        try (OutputStream stream = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(bitmaps.size());
+            for (Map.Entry<Integer, RoaringBitmap> entry : bitmaps.entrySet()) {
+                out.write(CommitGraph.fromHex(graph.idAt(entry.getKey())));
+                out.writeInt(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
+
+        try {
+            Files.move(temp, bitmapPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, bitmapPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
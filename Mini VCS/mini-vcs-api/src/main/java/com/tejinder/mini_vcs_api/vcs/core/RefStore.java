@@ -0,0 +1,342 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Stores branch refs in .mini-vcs/packed-refs (sorted "id name" lines) with
+ * loose files under .mini-vcs/refs overriding packed entries.
+ *
+ * Updates are compare-and-swap: every ref in a transaction is locked with a
+ * .lock file and checked against the value the caller expects, and nothing
+ * is written unless all of them match. The new values are then renamed into
+ * place one ref at a time, so a crash part way through can leave some refs
+ * of a transaction moved and others not; updates that must land together
+ * with other files, such as a commit's ref and HEAD, go through
+ * {@link Journal}, which replays them on recovery.
+ *
+ * Only refs that actually move are written, and loose refs are folded back
+ * into packed-refs once there are more than {@link #PACK_THRESHOLD} of them,
+ * so a commit costs one small write however many branches exist.
+ */
+public class RefStore {
+    private static final String REFS_DIR = "refs";
+    private static final String PACKED_REFS = "packed-refs";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String HEAD = "HEAD";
+    private static final int PACK_THRESHOLD = 256;
+
+    private final Path vcsDir;
+    private final Path refsDir;
+    /** Known refs; a null id is a branch without commits. */
+    private final Map<String, String> refs = new TreeMap<>();
+    private final Map<String, String> packed = new TreeMap<>();
+    private FileTime packedModified;
+    private int looseCount;
+
+    private RefStore(Path vcsDir) {
+        this.vcsDir = vcsDir;
+        this.refsDir = vcsDir.resolve(REFS_DIR);
+    }
+
+    /**
+     * Opens the refs of a repository, reading packed-refs and then the loose
+     * refs that override it.
+     * @param vcsDir The .mini-vcs directory
+     * @return The ref store
+     * @throws IOException If the refs cannot be read
+     */
+    public static RefStore open(Path vcsDir) throws IOException {
+        RefStore store = new RefStore(vcsDir);
+        store.readPacked();
+        store.refs.putAll(store.packed);
+
+        if (Files.isDirectory(store.refsDir)) {
+            try (Stream<Path> files = Files.walk(store.refsDir)) {
+                for (Path file : files.filter(Files::isRegularFile).toList()) {
+                    String name = store.refsDir.relativize(file).toString()
+                            .replace(file.getFileSystem().getSeparator(), "/");
+                    if (!name.endsWith(LOCK_SUFFIX)) {
+                        store.refs.put(name, readLoose(file));
+                        store.looseCount++;
+                    }
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Checks if a name can be used for a ref. HEAD is not a ref name, since
+     * revisions, the reflog and the API all read it as the checked-out commit.
+     * @param name The proposed name
+     * @return true if the name is valid
+     */
+    public static boolean isValidName(String name) {
+        if (name == null || name.isEmpty() || name.equals(HEAD) || name.startsWith("/") || name.endsWith("/")
+                || name.endsWith(LOCK_SUFFIX) || name.contains("..") || name.contains("//")) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c) || Character.isISOControl(c) || c == '\\' || c == ':') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets all refs, sorted by name.
+     * @return Map of ref name to commit id (null for a branch without commits)
+     */
+    public synchronized Map<String, String> getAll() {
+        return new TreeMap<>(refs);
+    }
+
+    /**
+     * Gets the commit id a ref points to, as last read or written.
+     * @param name The ref name
+     * @return The commit id, or null if the ref is unborn or unknown
+     */
+    public synchronized String get(String name) {
+        return refs.get(name);
+    }
+
+    /**
+     * Checks if a ref exists.
+     * @param name The ref name
+     * @return true if the ref exists
+     */
+    public synchronized boolean contains(String name) {
+        return refs.containsKey(name);
+    }
+
+    /**
+     * Moves a single ref if it still points where the caller expects.
+     * @param name The ref name
+     * @param expected The expected current id (null for a new or unborn ref)
+     * @param newId The new id (null for a branch without commits)
+     * @throws IOException If the ref is locked, has moved, or cannot be written
+     */
+    public void update(String name, String expected, String newId) throws IOException {
+        transaction().update(name, expected, newId).commit();
+    }
+
+    /**
+     * Starts a transaction that updates several refs at once.
+     * @return The transaction
+     */
+    public Transaction transaction() {
+        return new Transaction();
+    }
+
+    /**
+     * A batch of ref updates that are all checked before any is written.
+     * A failed check writes nothing; the writes themselves are not atomic
+     * as a group (see the class comment).
+     */
+    public class Transaction {
+        private final Map<String, String[]> updates = new TreeMap<>();
+
+        private Transaction() {
+        }
+
+        /**
+         * Adds a ref update to the transaction.
+         * @param name The ref name
+         * @param expected The expected current id (null for a new or unborn ref)
+         * @param newId The new id (null for a branch without commits)
+         * @return This transaction
+         */
+        public Transaction update(String name, String expected, String newId) {
+            if (!isValidName(name)) {
+                throw new IllegalArgumentException("Invalid ref name: " + name);
+            }
+            updates.put(name, new String[] {expected, newId});
+            return this;
+        }
+
+        /**
+         * Locks every ref in name order, checks the expected values and then
+         * renames the new values into place. Nothing is written if any ref is
+         * locked or has moved.
+         * @throws IOException If the transaction cannot be applied
+         */
+        public void commit() throws IOException {
+            synchronized (RefStore.this) {
+                List<Path> locks = new ArrayList<>(updates.size());
+                try {
+                    for (String name : updates.keySet()) {
+                        locks.add(lock(refsDir.resolve(name)));
+                    }
+
+                    for (Map.Entry<String, String[]> update : updates.entrySet()) {
+                        String current = readCurrent(update.getKey());
+                        if (!Objects.equals(current, update.getValue()[0])) {
+                            throw new IOException("Ref " + update.getKey() + " was moved to "
+                                    + current + " (expected " + update.getValue()[0] + ")");
+                        }
+                    }
+
+                    int i = 0;
+                    for (Map.Entry<String, String[]> update : updates.entrySet()) {
+                        String newId = update.getValue()[1];
+                        writeAndForce(locks.get(i++), newId != null ? newId : "");
+                    }
+
+                    i = 0;
+                    for (Map.Entry<String, String[]> update : updates.entrySet()) {
+                        Path ref = refsDir.resolve(update.getKey());
+                        boolean wasLoose = Files.exists(ref);
+                        moveIntoPlace(locks.get(i++), ref);
+                        refs.put(update.getKey(), update.getValue()[1]);
+                        if (!wasLoose) {
+                            looseCount++;
+                        }
+                    }
+                    locks.clear();
+                } finally {
+                    for (Path lock : locks) {
+                        Files.deleteIfExists(lock);
+                    }
+                }
+
+                if (looseCount > PACK_THRESHOLD) {
+                    pack();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every ref with a commit into packed-refs and removes the loose
+     * files that packed-refs now covers.
+     * @throws IOException If packed-refs cannot be written
+     */
+    public synchronized void pack() throws IOException {
+        Path packedPath = vcsDir.resolve(PACKED_REFS);
+        Path lock = lock(packedPath);
+
+        Map<String, String> snapshot = new TreeMap<>();
+        try {
+            StringBuilder content = new StringBuilder();
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                if (ref.getValue() != null) {
+                    content.append(ref.getValue()).append(' ').append(ref.getKey()).append('\n');
+                    snapshot.put(ref.getKey(), ref.getValue());
+                }
+            }
+            writeAndForce(lock, content.toString());
+            moveIntoPlace(lock, packedPath);
+        } finally {
+            Files.deleteIfExists(lock);
+        }
+
+        packed.clear();
+        packed.putAll(snapshot);
+        packedModified = Files.getLastModifiedTime(packedPath);
+
+        int remaining = 0;
+        for (Map.Entry<String, String> ref : refs.entrySet()) {
+            Path loose = refsDir.resolve(ref.getKey());
+            if (!Files.exists(loose)) {
+                continue;
+            }
+            if (ref.getValue() != null && Files.notExists(Path.of(loose + LOCK_SUFFIX))
+                    && ref.getValue().equals(readLoose(loose))) {
+                Files.delete(loose);
+            } else {
+                remaining++;
+            }
+        }
+        looseCount = remaining;
+    }
+
+    /** Reads the value a ref has on disk right now, loose first, then packed. */
+    private String readCurrent(String name) throws IOException {
+        Path loose = refsDir.resolve(name);
+        if (Files.exists(loose)) {
+            return readLoose(loose);
+        }
+
+        Path packedPath = vcsDir.resolve(PACKED_REFS);
+        FileTime modified = Files.exists(packedPath) ? Files.getLastModifiedTime(packedPath) : null;
+        if (!Objects.equals(modified, packedModified)) {
+            readPacked();
+        }
+        return packed.get(name);
+    }
+
+    private void readPacked() throws IOException {
+        packed.clear();
+        Path packedPath = vcsDir.resolve(PACKED_REFS);
+        if (!Files.exists(packedPath)) {
+            packedModified = null;
+            return;
+        }
+
+        packedModified = Files.getLastModifiedTime(packedPath);
+        for (String line : Files.readAllLines(packedPath, StandardCharsets.UTF_8)) {
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                packed.put(line.substring(space + 1), line.substring(0, space));
+            }
+        }
+    }
+
+    private static String readLoose(Path file) throws IOException {
+        String id = Files.readString(file, StandardCharsets.UTF_8).trim();
+        return id.isEmpty() ? null : id;
+    }
+
+    private static Path lock(Path target) throws IOException {
+        Path lock = Path.of(target + LOCK_SUFFIX);
+        if (lock.getParent() != null) {
+            Files.createDirectories(lock.getParent());
+        }
+        try {
+            Files.createFile(lock);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("Unable to lock " + target.getFileName()
+                    + ": " + lock + " exists. Another process may be updating it; "
+                    + "remove the lock file if it is stale.", e);
+        }
+        return lock;
+    }
+
+    private static void writeAndForce(Path file, String content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
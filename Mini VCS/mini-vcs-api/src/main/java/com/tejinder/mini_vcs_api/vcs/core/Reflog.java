@@ -0,0 +1,379 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only history of where HEAD and each branch pointed, stored under
+ * .mini-vcs/logs as one "old new timestamp message" line per move.
+ *
+ * Appends are sequential writes whose fsyncs are batched: files are forced
+ * every {@link #SYNC_BATCH} entries, and a timer forces the rest of a batch
+ * {@link #SYNC_INTERVAL_MS} milliseconds after its first entry, so no entry
+ * stays unsynced for longer than that. {@link #close()} forces whatever is
+ * left, e.g. before a command-line run exits.
+ * Next to each log a sparse .idx file records (timestamp, offset) for an
+ * entry roughly every {@link #INDEX_INTERVAL} bytes, so time-range lookups
+ * binary-search the index and read only a few kilobytes of the log.
+ */
+public class Reflog implements AutoCloseable {
+    public static final String HEAD = "HEAD";
+
+    private static final String LOGS_DIR = "logs";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_INTERVAL = 4096;
+    private static final int INDEX_RECORD_SIZE = 16;
+    private static final int SYNC_BATCH = 32;
+    private static final long SYNC_INTERVAL_MS = 1000;
+    private static final String NULL_ID = "0000000000000000000000000000000000000000";
+    // Shared by every reflog; daemon, so it never keeps the JVM alive
+    private static final ScheduledExecutorService SYNCER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "reflog-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path logsDir;
+    private final Set<Path> unsynced = new LinkedHashSet<>();
+    private int unsyncedEntries;
+    private ScheduledFuture<?> pendingSync;
+
+    /**
+     * One move of a ref.
+     */
+    public static class Entry {
+        private final String oldId;
+        private final String newId;
+        private final long timestamp;
+        private final String message;
+
+        Entry(String oldId, String newId, long timestamp, String message) {
+            this.oldId = oldId;
+            this.newId = newId;
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+
+        /**
+         * Gets the id the ref pointed to before the move
+         * @return The old id, or null if the ref did not exist
+         */
+        public String getOldId() {
+            return oldId;
+        }
+
+        /**
+         * Gets the id the ref pointed to after the move
+         * @return The new id, or null if the ref was emptied
+         */
+        public String getNewId() {
+            return newId;
+        }
+
+        /**
+         * Gets the time of the move
+         * @return Milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Gets the description of the move
+         * @return The message
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Creates a reflog for a repository.
+     * @param vcsDir The .mini-vcs directory
+     */
+    public Reflog(Path vcsDir) {
+        this.logsDir = vcsDir.resolve(LOGS_DIR);
+    }
+
+    /**
+     * Appends a move of a ref to its log.
+     * @param ref HEAD or a branch name
+     * @param oldId Previous id (null if none)
+     * @param newId New id (null if none)
+     * @param message Description of the move
+     * @throws IllegalArgumentException If the ref name is invalid
+     * @throws IOException If the log cannot be written
+     */
+    public synchronized void append(String ref, String oldId, String newId, String message)
+            throws IOException {
+
+        long timestamp = System.currentTimeMillis();
+        String line = (oldId != null ? oldId : NULL_ID) + " "
+                + (newId != null ? newId : NULL_ID) + " "
+                + timestamp + " "
+                + message.replace('\n', ' ').replace('\r', ' ') + "\n";
+
+        Path log = logPath(ref);
+        Path index = indexPath(ref);
+        Files.createDirectories(log.getParent());
+
+        long offset;
+        try (FileChannel channel = FileChannel.open(log,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            offset = channel.size();
+            writeFully(channel, ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+        }
+        unsynced.add(log);
+
+        // The index is only a hint, so it is written after the entry it points to
+        long lastIndexed = lastIndexedOffset(index);
+        if (lastIndexed < 0 || offset - lastIndexed >= INDEX_INTERVAL) {
+            try (FileChannel channel = FileChannel.open(index,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+                record.putLong(timestamp).putLong(offset).flip();
+                writeFully(channel, record);
+            }
+            unsynced.add(index);
+        }
+
+        unsyncedEntries++;
+        if (unsyncedEntries >= SYNC_BATCH) {
+            sync();
+        } else if (pendingSync == null) {
+            pendingSync = SYNCER.schedule(this::syncQuietly, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forces every log written since the last sync to disk.
+     * @throws IOException If a log cannot be synced
+     */
+    public synchronized void sync() throws IOException {
+        for (Path path : unsynced) {
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+            }
+        }
+        unsynced.clear();
+        unsyncedEntries = 0;
+        if (pendingSync != null) {
+            pendingSync.cancel(false);
+            pendingSync = null;
+        }
+    }
+
+    /**
+     * Forces any entries still waiting for their batch.
+     * @throws IOException If a log cannot be synced
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+    }
+
+    private synchronized void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            // The entries are written; only their durability is delayed
+            System.err.println("Failed to sync reflog: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the newest entries of a log within a time range.
+     * @param ref HEAD or a branch name
+     * @param since Earliest timestamp to include (milliseconds)
+     * @param until Latest timestamp to include (milliseconds)
+     * @param limit Maximum number of entries
+     * @return Matching entries, newest first
+     * @throws IllegalArgumentException If the ref name is invalid
+     * @throws IOException If the log cannot be read
+     */
+    public synchronized List<Entry> read(String ref, long since, long until, int limit)
+            throws IOException {
+
+        Path log = logPath(ref);
+        if (!Files.exists(log) || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        long[][] index = readIndex(indexPath(ref), Files.size(log));
+        int first = lastRecordBefore(index, since);
+        int last = until == Long.MAX_VALUE ? index.length - 1 : lastRecordBefore(index, until + 1);
+
+        // Scan backwards from the end of the range in growing steps until
+        // enough entries are found, so "the last N moves" stays cheap
+        int step = 1;
+        while (true) {
+            int start = Math.max(first, last - step + 1);
+            long offset = start >= 0 ? index[start][1] : 0;
+            Deque<Entry> window = scan(log, offset, since, until, limit);
+
+            if (window.size() >= limit || start <= first || start <= 0) {
+                List<Entry> newestFirst = new ArrayList<>(window.size());
+                window.descendingIterator().forEachRemaining(newestFirst::add);
+                return newestFirst;
+            }
+            step *= 2;
+        }
+    }
+
+    /**
+     * Finds where a ref pointed at a given time.
+     * @param ref HEAD or a branch name
+     * @param time The time (milliseconds)
+     * @return The last entry at or before the time, or null if there is none
+     * @throws IllegalArgumentException If the ref name is invalid
+     * @throws IOException If the log cannot be read
+     */
+    public Entry lookup(String ref, long time) throws IOException {
+        List<Entry> entries = read(ref, Long.MIN_VALUE, time, 1);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    private Deque<Entry> scan(Path log, long offset, long since, long until, int limit)
+            throws IOException {
+
+        Deque<Entry> window = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(channel.position(offset)), StandardCharsets.UTF_8))) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = parse(line);
+                if (entry == null || entry.timestamp < since) {
+                    continue;
+                }
+                if (entry.timestamp > until) {
+                    break;
+                }
+                window.addLast(entry);
+                if (window.size() > limit) {
+                    window.removeFirst();
+                }
+            }
+        }
+        return window;
+    }
+
+    private static Entry parse(String line) {
+        String[] parts = line.split(" ", 4);
+        if (parts.length < 3) {
+            return null;
+        }
+        try {
+            return new Entry(
+                    NULL_ID.equals(parts[0]) ? null : parts[0],
+                    NULL_ID.equals(parts[1]) ? null : parts[1],
+                    Long.parseLong(parts[2]),
+                    parts.length > 3 ? parts[3] : ""
+            );
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Reads the index records that point inside the log. */
+    private static long[][] readIndex(Path index, long logSize) throws IOException {
+        if (!Files.exists(index)) {
+            return new long[0][];
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(index));
+        List<long[]> records = new ArrayList<>(data.capacity() / INDEX_RECORD_SIZE);
+        while (data.remaining() >= INDEX_RECORD_SIZE) {
+            long timestamp = data.getLong();
+            long offset = data.getLong();
+            if (offset >= 0 && offset < logSize) {
+                records.add(new long[] {timestamp, offset});
+            }
+        }
+        return records.toArray(new long[0][]);
+    }
+
+    /** Finds the last index record with a timestamp before the given time, or -1. */
+    private static int lastRecordBefore(long[][] index, long time) {
+        int low = 0;
+        int high = index.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (index[mid][0] < time) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private static long lastIndexedOffset(Path index) throws IOException {
+        if (!Files.exists(index)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            long records = channel.size() / INDEX_RECORD_SIZE;
+            if (records == 0) {
+                return -1;
+            }
+            ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+            channel.read(record, (records - 1) * INDEX_RECORD_SIZE);
+            return record.getLong(8);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Finds the log of a ref. Names come from requests, so anything that is
+     * not a valid ref name, or would resolve outside the logs, is rejected.
+     */
+    private Path logPath(String ref) {
+        if (HEAD.equals(ref)) {
+            return logsDir.resolve(HEAD);
+        }
+        Path refLogs = logsDir.resolve("refs").normalize();
+        Path log = RefStore.isValidName(ref) ? refLogs.resolve(ref).normalize() : null;
+        if (log == null || !log.startsWith(refLogs)) {
+            throw new IllegalArgumentException("Invalid ref name: " + ref);
+        }
+        return log;
+    }
+
+    private Path indexPath(String ref) {
+        Path log = logPath(ref);
+        return log.resolveSibling(log.getFileName() + INDEX_SUFFIX);
+    }
+}
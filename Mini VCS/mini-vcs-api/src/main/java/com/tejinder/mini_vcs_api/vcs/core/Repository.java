@@ -1,16 +1,38 @@
 package com.tejinder.mini_vcs_api.vcs.core;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import vcs.util.TaskScope;
 import vcs.datastructures.HashTable;
-import vcs.util.HashUtils;
+import vcs.datastructures.LRUCache;
 
 public class Repository {
 
     private static Repository instance;
-    private static String currentRootPath;
+    private String currentRootPath;
 
     private static final String VCS_DIR = ".mini-vcs";
     private static final String OBJECTS_DIR = VCS_DIR + "/objects";
@@ -18,33 +40,89 @@ public class Repository {
     private static final String HEAD_FILE = VCS_DIR + "/HEAD";
     private static final String INDEX_FILE = VCS_DIR + "/index";
     private static final String CURRENT_BRANCH_FILE = VCS_DIR + "/CURRENT_BRANCH";
+    private static final String MERGE_HEAD_FILE = VCS_DIR + "/MERGE_HEAD";
+    private static final String CONFLICT_FLAG = "conflict";
+    private static final String REMOVED_FLAG = "removed";
+    // Per-file work forks at most this many files at once, which keeps the
+    // number of in-flight files (and mapped buffers) capped
+    private static final int MAX_IN_FLIGHT_FILES
+            = Math.max(2, Runtime.getRuntime().availableProcessors()) * 4;
+    // Rough heap cost of the state a loaded repository keeps, for memory caps
+    private static final long BASE_MEMORY = 64 * 1024;
+    private static final long COMMIT_MEMORY = 1024;
+    private static final long GRAPH_ENTRY_MEMORY = 96;
+    private static final long INDEX_ENTRY_MEMORY = 512;
+    // Layouts for the last few sets of ref tips, e.g. before and after a commit
+    private static final int GRAPH_LAYOUT_CACHE_SIZE = 4;
     private CommitHistory commitHistory;
     private HashTable<String, File> trackedFiles;
+    private Set<String> conflictedPaths;
+    private Set<String> removedPaths;
+    // Files the index adds to HEAD's count less those it removes; see trackedDelta
+    private int indexTrackedDelta;
+    // Index and removals of the last snapshot, reused until the index changes
+    private Map<String, String> publishedIndex;
+    private Set<String> publishedRemovedPaths;
     private Commit headCommit;
+    private ObjectStore objectStore;
+    // Read by status scans without the repository lock
+    private volatile ObjectFormat objectFormat = ObjectFormat.RAW;
+    private RefStore refStore;
+    private Reflog reflog;
+    private Journal journal;
+    private RepositoryCounters counters;
+    private volatile RepositorySnapshot snapshot;
+    private long snapshotVersion;
+
+    // Status is read without the repository lock; it has its own
+    private final Object statusLock = new Object();
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private volatile StatusScanner statusScanner;
+    private volatile WorkingTreeWatcher watcher;
+    private volatile WorkingTreeStatus lastStatus;
+    private final List<Consumer<RepositoryEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final LRUCache<String, GraphLayout> graphLayouts = new LRUCache<>(GRAPH_LAYOUT_CACHE_SIZE);
 
     private Repository() {
         this.commitHistory = new CommitHistory();
         this.trackedFiles = new HashTable<>();
+        this.conflictedPaths = new TreeSet<>();
+        this.removedPaths = new TreeSet<>();
+        publishSnapshot();
     }
 
-    public static Repository getInstance(String rootPath) throws IOException {
+    public static synchronized Repository getInstance(String rootPath) throws IOException {
         if (instance == null) {
-            instance = new Repository();
-            currentRootPath = rootPath;
-            instance.load(rootPath);
-        } else if (currentRootPath != null && !currentRootPath.equals(rootPath)) {
-            currentRootPath = rootPath;
+            instance = open(rootPath);
+        } else if (instance.currentRootPath != null && !instance.currentRootPath.equals(rootPath)) {
             instance.load(rootPath);
         }
         return instance;
     }
 
+    /**
+     * Loads a repository into a new, independent handle. Unlike
+     * {@link #getInstance(String)} this never reloads a handle someone else
+     * is using, so several repositories can be open at once.
+     * @param rootPath The repository root
+     * @return The loaded repository
+     */
+    public static Repository open(String rootPath) {
+        Repository repository = new Repository();
+        repository.load(rootPath);
+        return repository;
+    }
+
     public static Repository getCurrentInstance() {
         return instance;
     }
 
-    public void init(String path) throws IOException {
+    public synchronized void init(String path) throws IOException {
+        if (!path.equals(currentRootPath)) {
+            resetStatus(path);
+        }
         this.currentRootPath = path;
+        this.objectStore = new ObjectStore(Paths.get(path, OBJECTS_DIR));
         Path vcsPath = Paths.get(currentRootPath, VCS_DIR);
         if (Files.exists(vcsPath) && Files.isDirectory(vcsPath)) {
             System.out.println("Mini VCS repository already exists at " + vcsPath.toAbsolutePath());
@@ -56,25 +134,55 @@ public class Repository {
         Files.createDirectories(Paths.get(currentRootPath, REFS_DIR));
         Files.write(Paths.get(currentRootPath, HEAD_FILE), new byte[0]);
 
+        this.objectFormat = ObjectFormat.RAW;
+        objectFormat.write(vcsPath);
+
         System.out.println("Initialized empty Mini VCS repository at " + vcsPath.toAbsolutePath());
-        this.trackedFiles.clear();
+        this.commitHistory = new CommitHistory(CommitGraph.open(vcsPath), this::loadCommit);
+        this.refStore = RefStore.open(vcsPath);
+        this.journal = new Journal(vcsPath, refStore);
+        syncReflog();
+        this.reflog = new Reflog(vcsPath);
+        this.counters = RepositoryCounters.open(vcsPath, objectStore);
+        this.headCommit = null;
+        clearIndex();
         saveIndex();
     }
 
-    public void load(String path) {
+    public synchronized void load(String path) {
+        if (!path.equals(currentRootPath)) {
+            resetStatus(path);
+        }
         this.currentRootPath = path;
+        this.objectStore = new ObjectStore(Paths.get(path, OBJECTS_DIR));
         Path vcsPath = Paths.get(currentRootPath, VCS_DIR);
+        syncReflog();
+        this.reflog = new Reflog(vcsPath);
+        this.counters = null;
         if (!Files.exists(vcsPath) || !Files.isDirectory(vcsPath)) {
-            this.trackedFiles.clear();
+            clearIndex();
             this.commitHistory = new CommitHistory();
             this.headCommit = null;
+            publishSnapshot();
             return;
         }
 
         try {
+            // Finish or undo a commit interrupted by a crash before reading any state
+            this.refStore = RefStore.open(vcsPath);
+            this.journal = new Journal(vcsPath, refStore);
+            if (journal.recover()) {
+                System.out.println("Recovered an interrupted update.");
+            }
+            this.objectFormat = ObjectFormat.read(vcsPath);
+            this.counters = RepositoryCounters.open(vcsPath, objectStore);
+
             loadIndex();
 
-            this.commitHistory = new CommitHistory();
+            CommitGraph graph = CommitGraph.open(vcsPath);
+
+            this.commitHistory = new CommitHistory(graph, this::loadCommit);
+            this.headCommit = null;
 
             loadBranches();
 
@@ -88,57 +196,123 @@ public class Repository {
 
                 if (!headCommitId.isEmpty()) {
 
-                    rebuildHistory(headCommitId);
+                    List<String> tips = new ArrayList<>();
+                    tips.add(headCommitId);
+                    for (String branch : commitHistory.getBranches()) {
+                        tips.add(commitHistory.getBranchHead(branch));
+                    }
+                    ensureCommitGraph(graph, tips);
+
+                    commitHistory.restoreHead(headCommitId);
+                    this.headCommit = commitHistory.getCommit(headCommitId);
                 }
             }
         } catch (IOException e) {
             System.err.println("Error loading repository data: " + e.getMessage());
-            this.trackedFiles.clear();
+            clearIndex();
             this.commitHistory = new CommitHistory();
             this.headCommit = null;
         }
+        recountIndex();
+        publishSnapshot();
     }
 
-    private void rebuildHistory(String headCommitId)
+    /**
+     * Adds any commits reachable from the given tips that are missing from the
+     * commit graph, e.g. in repositories created before the graph existed.
+     * This walks objects once; afterwards loading is a single mmap.
+     */
+    private void ensureCommitGraph(CommitGraph graph, List<String> tips)
             throws IOException {
 
-        java.util.List<Commit> commits
-                = new java.util.ArrayList<>();
-
-        Commit current = loadCommit(headCommitId);
+        Deque<String> stack = new ArrayDeque<>();
+        for (String tip : tips) {
+            if (tip != null && !graph.contains(tip)) {
+                stack.push(tip);
+            }
+        }
 
-        while (current != null) {
+        if (stack.isEmpty()) {
+            return;
+        }
 
-            commits.add(current);
+        Map<String, Commit> loaded = new HashMap<>();
+        Set<String> done = new HashSet<>();
+        List<Commit> missing = new ArrayList<>();
 
-            if (current.getParent() == null) {
-                break;
+        // Iterative post-order walk so parents are appended before children
+        while (!stack.isEmpty()) {
+            String commitId = stack.peek();
+            if (done.contains(commitId)) {
+                stack.pop();
+                continue;
             }
 
-            current = loadCommit(current.getParent());
-        }
+            Commit commit = loaded.get(commitId);
+            if (commit == null) {
+                commit = loadCommit(commitId);
+                if (commit == null) {
+                    stack.pop();
+                    done.add(commitId);
+                    continue;
+                }
+                loaded.put(commitId, commit);
+            }
 
-        java.util.Collections.reverse(commits);
+            boolean ready = true;
+            for (String parent : commit.getParents()) {
+                if (!graph.contains(parent) && !done.contains(parent)) {
+                    stack.push(parent);
+                    ready = false;
+                }
+            }
 
-        for (Commit commit : commits) {
-            commitHistory.addCommit(commit);
+            if (ready) {
+                stack.pop();
+                done.add(commitId);
+                missing.add(commit);
+            }
         }
 
-        this.headCommit = loadCommit(headCommitId);
+        graph.appendAll(missing);
+        graph.compact();
     }
 
-    public void add(String filePath) {
+    public synchronized void add(String filePath) {
         try {
             if (!isRepositoryInitialized()) {
                 System.out.println("Repository not initialized. Run 'init' first.");
                 return;
             }
+            Path fullPath = Paths.get(currentRootPath, filePath);
+            if (isGlob(filePath) || Files.isDirectory(fullPath)) {
+                addAllInternal(List.of(filePath));
+                return;
+            }
             addFileInternal(filePath);
         } catch (IOException e) {
             System.err.println("Failed to add file: " + e.getMessage());
         }
     }
 
+    /**
+     * Adds several files, directories (recursively) or glob patterns at once.
+     * Files are read, hashed and written to the object store in parallel and
+     * the index is written a single time at the end.
+     * @param paths Files, directories or glob patterns relative to the repository root
+     */
+    public synchronized void add(List<String> paths) {
+        try {
+            if (!isRepositoryInitialized()) {
+                System.out.println("Repository not initialized. Run 'init' first.");
+                return;
+            }
+            addAllInternal(paths);
+        } catch (IOException e) {
+            System.err.println("Failed to add files: " + e.getMessage());
+        }
+    }
+
     public void status() {
         if (!isRepositoryInitialized()) {
             System.out.println("Repository not initialized. Run 'init' first.");
@@ -166,11 +340,21 @@ public class Repository {
     }
 
     public void log() {
+        log(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Prints one page of the history, newest first. Only the commits on the
+     * page are loaded, so the first page is fast whatever the history length.
+     * @param offset Number of commits to skip
+     * @param limit Maximum number of commits to print
+     */
+    public void log(int offset, int limit) {
         if (!isRepositoryInitialized()) {
             System.out.println("Repository not initialized. Run 'init' first.");
             return;
         }
-        System.out.println(commitHistory.getHistoryGraph());
+        System.out.println(commitHistory.getHistoryGraph(offset, limit));
     }
 
     private void deleteExtraFiles(Commit targetCommit)
@@ -220,7 +404,7 @@ public class Repository {
                 });
     }
 
-    public void commit(String message) {
+    public synchronized void commit(String message) {
         if (!isRepositoryInitialized()) {
             System.out.println("Repository not initialized. Run 'init' first.");
             return;
@@ -232,6 +416,294 @@ public class Repository {
         }
     }
 
+    /**
+     * Merges a branch into the current branch. Paths are classified by
+     * comparing the base, ours and theirs manifests by hash, so only paths
+     * changed on both sides are read and merged line by line, in parallel.
+     * Conflicting paths are written with conflict markers and recorded in the
+     * index; the merge is concluded by the next commit once they are added.
+     * @param branchName The branch to merge
+     */
+    public synchronized void merge(String branchName) {
+        if (!isRepositoryInitialized()) {
+            System.out.println("Repository not initialized. Run 'init' first.");
+            return;
+        }
+        try {
+            mergeInternal(branchName);
+        } catch (IOException e) {
+            System.err.println("Merge failed: " + e.getMessage());
+        }
+    }
+
+    private void mergeInternal(String branchName) throws IOException {
+        if (!isBranch(branchName)) {
+            System.out.println("Branch not found: " + branchName);
+            return;
+        }
+        if (readMergeHead() != null) {
+            System.out.println("A merge is already in progress. Resolve the conflicts and commit first.");
+            return;
+        }
+        if (!trackedFiles.isEmpty() || !removedPaths.isEmpty()) {
+            System.out.println("Commit or discard staged changes before merging.");
+            return;
+        }
+
+        String theirsId = commitHistory.getBranchHead(branchName);
+        if (theirsId == null) {
+            System.out.println("Branch has no commits.");
+            return;
+        }
+
+        String oursId = headCommit != null ? headCommit.getId() : null;
+        String baseId = oursId != null ? commitHistory.findMergeBase(oursId, theirsId) : null;
+        if (theirsId.equals(baseId)) {
+            System.out.println("Already up to date.");
+            return;
+        }
+
+        Commit theirsCommit = loadCommit(theirsId);
+        if (theirsCommit == null) {
+            System.out.println("Commit not found: " + theirsId);
+            return;
+        }
+
+        Map<String, String> ours = manifest(headCommit);
+        Map<String, String> theirs = manifest(theirsCommit);
+
+        if (oursId == null || oursId.equals(baseId)) {
+            if (!updateWorkingTree(ours, theirs)) {
+                return;
+            }
+            String reflogMessage = "merge " + branchName + ": Fast-forward";
+            commitHistory.mergeBranch(branchName);
+            advanceHead(oursId, theirsCommit, reflogMessage, false);
+            System.out.println("Fast-forward to " + theirsId);
+            return;
+        }
+
+        Map<String, String> base = manifest(baseId != null ? loadCommit(baseId) : null);
+        Map<String, String> merged = new HashMap<>(ours);
+        Set<String> conflicts = new TreeSet<>();
+        List<String> bothChanged = new ArrayList<>();
+
+        Set<String> paths = new HashSet<>(ours.keySet());
+        paths.addAll(theirs.keySet());
+
+        for (String path : paths) {
+            String baseHash = base.get(path);
+            String oursHash = ours.get(path);
+            String theirsHash = theirs.get(path);
+
+            if (Objects.equals(oursHash, theirsHash) || Objects.equals(baseHash, theirsHash)) {
+                continue;
+            }
+            if (Objects.equals(baseHash, oursHash)) {
+                if (theirsHash != null) {
+                    merged.put(path, theirsHash);
+                } else {
+                    merged.remove(path);
+                }
+            } else if (oursHash == null || theirsHash == null) {
+                // Modified on one side, deleted on the other: keep the surviving version
+                merged.put(path, oursHash != null ? oursHash : theirsHash);
+                conflicts.add(path);
+            } else {
+                bothChanged.add(path);
+            }
+        }
+
+        try (TaskScope<MergedFile> scope = TaskScope.open(MAX_IN_FLIGHT_FILES)) {
+            for (String path : bothChanged) {
+                String baseHash = base.get(path);
+                String oursHash = ours.get(path);
+                String theirsHash = theirs.get(path);
+                scope.fork(() -> mergeFile(baseHash, oursHash, theirsHash, branchName));
+            }
+
+            List<MergedFile> results = scope.join();
+            for (int i = 0; i < bothChanged.size(); i++) {
+                MergedFile result = results.get(i);
+                merged.put(bothChanged.get(i), result.hash);
+                if (result.conflict) {
+                    conflicts.add(bothChanged.get(i));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Merge interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to merge files: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        if (!updateWorkingTree(ours, merged)) {
+            return;
+        }
+
+        if (conflicts.isEmpty()) {
+            Commit mergeCommit = commitHistory.mergeBranch(branchName, merged);
+            recordCommit(mergeCommit, "merge " + branchName + ": Merge made by three-way merge");
+            System.out.println("Merge made commit: " + mergeCommit.getId()
+                    + " (" + bothChanged.size() + " file(s) merged)");
+            return;
+        }
+
+        // Stage everything the merge changed so the resolving commit picks it up
+        for (Map.Entry<String, String> entry : merged.entrySet()) {
+            String path = entry.getKey();
+            String hash = entry.getValue();
+            if (!hash.equals(ours.get(path))) {
+                stage(path, new FileVersion(hash, objectStore.size(hash), this::loadObjectBuffer));
+            }
+        }
+        for (String path : ours.keySet()) {
+            if (!merged.containsKey(path)) {
+                stageRemoval(path);
+            }
+        }
+        conflictedPaths.addAll(conflicts);
+        journal.begin()
+                .write(Paths.get(currentRootPath, INDEX_FILE), serializeIndex())
+                .write(Paths.get(currentRootPath, MERGE_HEAD_FILE), theirsId.getBytes())
+                .commit();
+        publishSnapshot();
+
+        System.out.println("Automatic merge failed; fix conflicts, add the files and commit.");
+        for (String path : conflicts) {
+            System.out.println("CONFLICT: " + path);
+        }
+    }
+
+    private static class MergedFile {
+        private final String hash;
+        private final boolean conflict;
+
+        MergedFile(String hash, boolean conflict) {
+            this.hash = hash;
+            this.conflict = conflict;
+        }
+    }
+
+    /**
+     * Runs a line-level three-way merge of one path and stores the result,
+     * conflict markers included. Binary content is not merged; our version
+     * is kept and the path is reported as conflicting. Files too large to
+     * align line by line come back as one whole-file conflict.
+     */
+    private MergedFile mergeFile(String baseHash, String oursHash, String theirsHash, String branchName)
+            throws IOException {
+
+        if (objectStore.isChunked(oursHash) || objectStore.isChunked(theirsHash)
+                || (baseHash != null && objectStore.isChunked(baseHash))) {
+            return new MergedFile(oursHash, true);
+        }
+
+        byte[] baseContent = baseHash != null ? objectStore.readBytes(baseHash) : new byte[0];
+        byte[] ourContent = objectStore.readBytes(oursHash);
+        byte[] theirContent = objectStore.readBytes(theirsHash);
+
+        if (isBinary(baseContent) || isBinary(ourContent) || isBinary(theirContent)) {
+            return new MergedFile(oursHash, true);
+        }
+
+        MergeTool.Result result = MergeTool.merge(
+                new String(baseContent, StandardCharsets.UTF_8),
+                new String(ourContent, StandardCharsets.UTF_8),
+                new String(theirContent, StandardCharsets.UTF_8),
+                "HEAD",
+                branchName
+        );
+
+        byte[] content = result.getContent().getBytes(StandardCharsets.UTF_8);
+        String hash = objectFormat.hash(java.nio.ByteBuffer.wrap(content));
+        objectStore.write(hash, content);
+
+        return new MergedFile(hash, result.hasConflicts());
+    }
+
+    private static boolean isBinary(byte[] content) {
+        if (content == null) {
+            return true;
+        }
+        for (byte b : content) {
+            if (b == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the working tree from one snapshot to another, touching only the
+     * paths whose versions differ. Nothing is written if any of those paths
+     * has local changes.
+     * @return false if local changes would have been overwritten
+     */
+    private boolean updateWorkingTree(Map<String, String> from, Map<String, String> to)
+            throws IOException {
+
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, String> entry : to.entrySet()) {
+            if (!entry.getValue().equals(from.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String path : from.keySet()) {
+            if (!to.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+
+        List<String> dirty = new ArrayList<>();
+        for (String path : changed) {
+            Path workingFile = Paths.get(currentRootPath, path);
+            String expected = from.get(path);
+            boolean exists = Files.isRegularFile(workingFile);
+
+            if (expected == null ? exists : !exists || !expected.equals(objectFormat.hash(workingFile))) {
+                dirty.add(path);
+            }
+        }
+
+        if (!dirty.isEmpty()) {
+            System.out.println("Local changes would be overwritten by merge:");
+            for (String path : dirty) {
+                System.out.println("  " + path);
+            }
+            return false;
+        }
+
+        for (String path : changed) {
+            String hash = to.get(path);
+            if (hash != null) {
+                restoreFile(path, hash);
+            } else {
+                Files.deleteIfExists(Paths.get(currentRootPath, path));
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> manifest(Commit commit) {
+        Map<String, String> files = new HashMap<>();
+        if (commit != null) {
+            for (String filePath : commit.getFiles()) {
+                files.put(filePath, commit.getFileVersionId(filePath));
+            }
+        }
+        return files;
+    }
+
+    private String readMergeHead() throws IOException {
+        Path mergeHeadPath = Paths.get(currentRootPath, MERGE_HEAD_FILE);
+        if (!Files.exists(mergeHeadPath)) {
+            return null;
+        }
+        String mergeHeadId = Files.readString(mergeHeadPath).trim();
+        return mergeHeadId.isEmpty() ? null : mergeHeadId;
+    }
+
     private boolean isRepositoryInitialized() {
         Path vcsDir = Paths.get(currentRootPath, VCS_DIR);
         return Files.exists(vcsDir) && Files.isDirectory(vcsDir);
@@ -243,21 +715,197 @@ public class Repository {
             throw new IllegalArgumentException("File does not exist or is a directory: " + filePath);
         }
 
-        byte[] content = Files.readAllBytes(fullPath);
-        String hash = HashUtils.generateSHA1(new String(content));
-        FileVersion fileVersion = new FileVersion(hash, content);
+        stage(filePath, stageFile(fullPath));
+
+        saveIndex();
+        System.out.println("Added file: " + filePath);
+    }
+
+    /**
+     * Hashes a working file and stores it in the object store unless an
+     * object with the same hash is already there.
+     * @param fullPath Absolute path of the working file
+     * @return A lazy version referring to the stored object, so staged
+     *         content is not kept in memory
+     */
+    private FileVersion stageFile(Path fullPath) throws IOException {
+        if (Files.size(fullPath) >= ObjectStore.LARGE_FILE_THRESHOLD) {
+            return objectStore.writeChunked(fullPath, objectFormat);
+        }
+
+        FileVersion fileVersion = FileVersion.fromFile(fullPath, objectFormat);
 
         saveFileVersion(fileVersion);
 
-        File file = new File(filePath, fileVersion);
-        trackedFiles.put(filePath, file);
+        return new FileVersion(fileVersion.getHash(), fileVersion.getSize(), this::loadObjectBuffer);
+    }
 
-        saveIndex();
-        System.out.println("Added file: " + filePath);
+    private void addAllInternal(List<String> paths) throws IOException {
+        List<String> files = expandPaths(paths);
+        if (files.isEmpty()) {
+            System.out.println("No files matched.");
+            return;
+        }
+
+        List<Future<FileVersion>> staged = new ArrayList<>(files.size());
+        try (TaskScope<FileVersion> scope = TaskScope.open(MAX_IN_FLIGHT_FILES)) {
+            for (String filePath : files) {
+                Path fullPath = Paths.get(currentRootPath, filePath);
+                staged.add(scope.fork(() -> stageFile(fullPath)));
+            }
+
+            int added = 0;
+            for (int i = 0; i < files.size(); i++) {
+                String filePath = files.get(i);
+                try {
+                    FileVersion version = staged.get(i).get();
+                    stage(filePath, version);
+                    added++;
+                } catch (ExecutionException e) {
+                    System.err.println("Failed to add file " + filePath + ": " + e.getCause().getMessage());
+                }
+            }
+
+            saveIndex();
+            System.out.println("Added " + added + " file(s).");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Add interrupted", e);
+        }
+    }
+
+    /**
+     * Stages a version of a file, which also marks a merge conflict on the
+     * path as resolved.
+     */
+    private void stage(String filePath, FileVersion version) {
+        int before = trackedDelta(filePath);
+        trackedFiles.put(filePath, new File(filePath, version));
+        conflictedPaths.remove(filePath);
+        removedPaths.remove(filePath);
+        indexChanged(filePath, before);
+    }
+
+    /**
+     * Stages the removal of a file.
+     */
+    private void stageRemoval(String filePath) {
+        int before = trackedDelta(filePath);
+        removedPaths.add(filePath);
+        indexChanged(filePath, before);
+    }
+
+    private void indexChanged(String filePath, int trackedDeltaBefore) {
+        indexTrackedDelta += trackedDelta(filePath) - trackedDeltaBefore;
+        publishedIndex = null;
+    }
+
+    private void clearIndex() {
+        trackedFiles.clear();
+        conflictedPaths.clear();
+        removedPaths.clear();
+        indexTrackedDelta = 0;
+        publishedIndex = null;
+    }
+
+    /**
+     * Gets how a path's index entry changes the number of files HEAD
+     * holds: -1 for a staged removal of a file in HEAD, 1 for a staged
+     * file HEAD does not have, 0 otherwise.
+     */
+    private int trackedDelta(String filePath) {
+        boolean inHead = headCommit != null && headCommit.getFileVersionId(filePath) != null;
+        if (removedPaths.contains(filePath)) {
+            return inHead ? -1 : 0;
+        }
+        if (trackedFiles.get(filePath) != null) {
+            return inHead ? 0 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Recomputes the index's effect on the tracked-file count, for when
+     * HEAD moves under an index that is kept or read back from disk.
+     */
+    private void recountIndex() {
+        int delta = 0;
+        for (String path : trackedFiles.keys()) {
+            if (!removedPaths.contains(path)) {
+                delta += trackedDelta(path);
+            }
+        }
+        for (String path : removedPaths) {
+            delta += trackedDelta(path);
+        }
+        this.indexTrackedDelta = delta;
+    }
+
+    /**
+     * Expands files, directories and glob patterns into repository-relative
+     * file paths, skipping the repository's own metadata directory.
+     */
+    private List<String> expandPaths(List<String> paths) throws IOException {
+        Path root = Paths.get(currentRootPath);
+        Set<String> result = new LinkedHashSet<>();
+
+        for (String path : paths) {
+            if (isGlob(path)) {
+                PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + path);
+                for (Path file : walkFiles(root)) {
+                    if (matcher.matches(root.relativize(file))) {
+                        result.add(toRelativePath(root, file));
+                    }
+                }
+                continue;
+            }
+
+            Path fullPath = root.resolve(path);
+            if (Files.isDirectory(fullPath)) {
+                for (Path file : walkFiles(fullPath)) {
+                    result.add(toRelativePath(root, file));
+                }
+            } else if (Files.exists(fullPath)) {
+                result.add(toRelativePath(root, fullPath));
+            } else {
+                System.err.println("File does not exist: " + path);
+            }
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    private List<Path> walkFiles(Path start) throws IOException {
+        // Normalized so that "add ." does not reach into .mini-vcs via "root/./.mini-vcs"
+        Path vcsDir = Paths.get(currentRootPath, VCS_DIR).normalize();
+        try (Stream<Path> stream = Files.walk(start)) {
+            return stream
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !file.normalize().startsWith(vcsDir))
+                    .toList();
+        }
+    }
+
+    private static String toRelativePath(Path root, Path file) {
+        return root.relativize(file).toString()
+                .replace(root.getFileSystem().getSeparator(), "/");
+    }
+
+    private static boolean isGlob(String path) {
+        return path.indexOf('*') >= 0
+                || path.indexOf('?') >= 0
+                || path.indexOf('[') >= 0
+                || path.indexOf('{') >= 0;
     }
 
     private void commitInternal(String message) throws IOException {
-        if (trackedFiles.isEmpty()) {
+        if (!conflictedPaths.isEmpty()) {
+            throw new IllegalStateException(
+                    "Unresolved merge conflicts in: " + String.join(", ", conflictedPaths));
+        }
+
+        String mergeHeadId = readMergeHead();
+        if (trackedFiles.isEmpty() && removedPaths.isEmpty() && mergeHeadId == null) {
             throw new IllegalStateException("Nothing to commit.");
         }
 
@@ -265,13 +913,21 @@ public class Repository {
         commit.setMessage(message);
         commit.setTimestamp(new Date());
 
-        commit.setParent(headCommit != null ? headCommit.getId() : null);
+        if (headCommit != null && mergeHeadId != null) {
+            commit.setParents(List.of(headCommit.getId(), mergeHeadId));
+        } else {
+            commit.setParent(headCommit != null ? headCommit.getId() : null);
+        }
 
         // Copy parent snapshot first
         if (headCommit != null) {
 
             for (String filePath : headCommit.getFiles()) {
 
+                if (removedPaths.contains(filePath)) {
+                    continue;
+                }
+
                 commit.addFile(
                         filePath,
                         headCommit.getFileVersionId(filePath)
@@ -290,67 +946,186 @@ public class Repository {
             );
         }
 
+        String reflogMessage
+                = mergeHeadId != null ? "commit (merge): "
+                : headCommit == null ? "commit (initial): "
+                : "commit: ";
+
         commit.generateId();
+        this.commitHistory.addCommit(commit);
+        recordCommit(commit, reflogMessage + message);
+
+        System.out.println("Created commit: " + commit.getId() + " - " + message);
+    }
+
+    /**
+     * Stores a commit that has just become the head of the current branch
+     * and moves HEAD and the branch ref to it. The commit consumes the
+     * index and any MERGE_HEAD, which are removed in the same transaction.
+     */
+    private void recordCommit(Commit commit, String reflogMessage) throws IOException {
         saveCommit(commit);
 
+        if (commitHistory.getCommitGraph() != null) {
+            commitHistory.getCommitGraph().append(commit);
+        }
+
+        advanceHead(headCommit != null ? headCommit.getId() : null, commit, reflogMessage, true);
+    }
+
+    /**
+     * Moves the current branch ref and HEAD to a commit in one journaled
+     * transaction (ref, then HEAD, then index), so a crash cannot leave
+     * them pointing at different commits. If the ref was moved by someone
+     * else the in-memory state is reloaded from disk before failing.
+     */
+    private void advanceHead(String previousId, Commit commit, String reflogMessage, boolean consumesIndex)
+            throws IOException {
+
+        String branch = commitHistory.getCurrentBranch();
+        String previousRef = refStore.get(branch);
+
+        Journal.Transaction transaction = journal.begin()
+                .updateRef(branch, previousRef, commit.getId())
+                .write(Paths.get(currentRootPath, HEAD_FILE), commit.getId().getBytes());
+        if (consumesIndex) {
+            transaction.delete(Paths.get(currentRootPath, INDEX_FILE))
+                    .delete(Paths.get(currentRootPath, MERGE_HEAD_FILE));
+        }
+
+        try {
+            transaction.commit();
+        } catch (IOException e) {
+            load(currentRootPath);
+            throw e;
+        }
+
         this.headCommit = commit;
-        this.commitHistory.addCommit(commit);
+        if (consumesIndex) {
+            clearIndex();
+        } else {
+            recountIndex();
+        }
+        publishSnapshot();
 
-        saveBranches();
+        reflog.append(branch, previousRef, commit.getId(), reflogMessage);
+        reflog.append(Reflog.HEAD, previousId, commit.getId(), reflogMessage);
+    }
 
-        Files.write(Paths.get(currentRootPath, HEAD_FILE), commit.getId().getBytes());
-        Files.deleteIfExists(Paths.get(currentRootPath, INDEX_FILE));
-        trackedFiles.clear();
+    /**
+     * Publishes the current HEAD, refs and index summary as an immutable
+     * snapshot. Called by writers, which hold the repository lock, once a
+     * change is complete.
+     */
+    private void publishSnapshot() {
+        if (publishedIndex == null) {
+            Map<String, String> index = new TreeMap<>();
+            for (String path : trackedFiles.keys()) {
+                index.put(path, trackedFiles.get(path).getCurrentVersion().getHash());
+            }
+            publishedIndex = Collections.unmodifiableMap(index);
+            publishedRemovedPaths = Collections.unmodifiableSet(new TreeSet<>(removedPaths));
+        }
 
-        System.out.println("Created commit: " + commit.getId() + " - " + message);
+        // Tracked files are those the next commit would contain
+        int trackedFileCount = (headCommit != null ? headCommit.getFileCount() : 0) + indexTrackedDelta;
+
+        if (counters != null) {
+            try {
+                counters.save();
+            } catch (IOException e) {
+                // Recounted from the object store on the next load
+                System.err.println("Failed to save counters: " + e.getMessage());
+            }
+        }
+
+        RepositorySnapshot previous = snapshot;
+        this.snapshot = new RepositorySnapshot(
+                ++snapshotVersion,
+                commitHistory,
+                headCommit,
+                commitHistory.getCurrentBranch(),
+                commitHistory.getBranchHeads(),
+                publishedIndex,
+                publishedRemovedPaths,
+                new ArrayList<>(conflictedPaths),
+                commitHistory.size(),
+                trackedFileCount,
+                counters != null ? counters.getObjects() : 0,
+                counters != null ? counters.getObjectBytes() : 0
+        );
+        fireChanges(previous, snapshot);
+    }
+
+    /**
+     * Points HEAD at a commit and records the move in the reflog.
+     */
+    private void updateHead(String previousId, String commitId, String reflogMessage)
+            throws IOException {
+
+        journal.begin()
+                .write(Paths.get(currentRootPath, HEAD_FILE), commitId.getBytes())
+                .commit();
+        reflog.append(Reflog.HEAD, previousId, commitId, reflogMessage);
     }
 
     private void saveFileVersion(FileVersion version) throws IOException {
-        Path objectPath = Paths.get(currentRootPath, OBJECTS_DIR, version.getHash());
-        Files.write(objectPath, version.getContent());
+        objectStore.write(version);
     }
 
     private void saveCommit(Commit commit) throws IOException {
-        Path commitPath
-                = Paths.get(currentRootPath, OBJECTS_DIR, commit.getId());
-
-        Files.write(
-                commitPath,
+        objectStore.write(
+                commit.getId(),
                 commit.serialize()
         );
     }
 
     private Commit loadCommit(String commitId) throws IOException {
 
-        Path commitPath
-                = Paths.get(currentRootPath,
-                        OBJECTS_DIR,
-                        commitId);
+        byte[] data
+                = objectStore.readBytes(commitId);
 
-        if (!Files.exists(commitPath)) {
+        if (data == null) {
             return null;
         }
 
-        byte[] data
-                = Files.readAllBytes(commitPath);
-
         return Commit.deserialize(data);
     }
 
+    /**
+     * Writes the index to a temporary file and renames it into place, so a
+     * crash leaves either the old or the new index, never a torn one.
+     */
     private void saveIndex() throws IOException {
-        Path indexPath = Paths.get(currentRootPath, INDEX_FILE);
+        journal.begin()
+                .write(Paths.get(currentRootPath, INDEX_FILE), serializeIndex())
+                .commit();
+        publishSnapshot();
+    }
+
+    private byte[] serializeIndex() {
         StringBuilder content = new StringBuilder();
 
         for (String path : trackedFiles.keys()) {
             File file = trackedFiles.get(path);
-            content.append(path).append("=").append(file.getCurrentVersion().getHash()).append("\n");
+            FileVersion version = file.getCurrentVersion();
+            content.append(path).append("=").append(version.getHash())
+                    .append(" ").append(version.getSize());
+            if (conflictedPaths.contains(path)) {
+                content.append(" ").append(CONFLICT_FLAG);
+            }
+            content.append("\n");
         }
 
-        Files.write(indexPath, content.toString().getBytes());
+        for (String path : removedPaths) {
+            content.append(path).append("=- 0 ").append(REMOVED_FLAG).append("\n");
+        }
+
+        return content.toString().getBytes();
     }
 
     private void loadIndex() throws IOException {
-        trackedFiles.clear();
+        clearIndex();
         Path indexPath = Paths.get(currentRootPath, INDEX_FILE);
         if (!Files.exists(indexPath)) {
             return;
@@ -364,40 +1139,47 @@ public class Repository {
 
             String[] parts = line.split("=", 2);
             String path = parts[0];
-            String hash = parts[1];
-            Path objectPath = Paths.get(currentRootPath, OBJECTS_DIR, hash);
-            if (Files.exists(objectPath)) {
-                byte[] content = Files.readAllBytes(objectPath);
-                FileVersion version = new FileVersion(hash, content);
-                File file = new File(path, version);
-                trackedFiles.put(path, file);
+            String[] entry = parts[1].trim().split(" ");
+            String hash = entry[0];
+            long size;
+
+            if (entry.length > 2 && entry[2].equals(REMOVED_FLAG)) {
+                removedPaths.add(path);
+                continue;
+            }
+
+            if (entry.length > 1) {
+                size = Long.parseLong(entry[1]);
+            } else {
+                // Older index lines carry no size; a stat is still far cheaper than a read
+                Path objectPath = Paths.get(currentRootPath, OBJECTS_DIR, hash);
+                if (!Files.exists(objectPath)) {
+                    continue;
+                }
+                size = Files.size(objectPath);
+            }
+
+            FileVersion version = new FileVersion(hash, size, this::loadObjectBuffer);
+            File file = new File(path, version);
+            trackedFiles.put(path, file);
+
+            if (entry.length > 2 && entry[2].equals(CONFLICT_FLAG)) {
+                conflictedPaths.add(path);
             }
         }
     }
 
+    private java.nio.ByteBuffer loadObjectBuffer(String hash) throws IOException {
+        return objectStore.read(hash);
+    }
+
     public void diff() {
         System.out.println("Diff feature not yet implemented.");
     }
 
-    private byte[] loadFileVersion(String hash) throws IOException {
-
-        Path objectPath
-                = Paths.get(
-                        currentRootPath,
-                        OBJECTS_DIR,
-                        hash
-                );
-
-        if (!Files.exists(objectPath)) {
-            throw new IOException(
-                    "Missing object: " + hash
-            );
-        }
-
-        return Files.readAllBytes(objectPath);
-    }
+    public synchronized void checkout(String commitId) {
 
-    public void checkout(String commitId) {
+        String target = commitId;
 
         try {
 
@@ -419,7 +1201,7 @@ public class Repository {
 
                 commitHistory.switchBranch(branchName);
 
-                saveBranches();
+                saveCurrentBranch();
 
                 System.out.println(
                         "Switching to branch: "
@@ -431,10 +1213,10 @@ public class Repository {
 
             if (commitId.length() < 40) {
 
-                String resolved
+                List<String> resolved
                         = resolveCommitId(commitId);
 
-                if (resolved == null) {
+                if (resolved.isEmpty()) {
 
                     System.out.println(
                             "Commit not found: "
@@ -444,7 +1226,20 @@ public class Repository {
                     return;
                 }
 
-                commitId = resolved;
+                if (resolved.size() > 1) {
+
+                    System.out.println(
+                            "Ambiguous commit id "
+                            + commitId
+                            + ": matches "
+                            + String.join(", ", resolved)
+                            + " and possibly more"
+                    );
+
+                    return;
+                }
+
+                commitId = resolved.get(0);
             }
 
             Commit commit = loadCommit(commitId);
@@ -467,21 +1262,9 @@ public class Repository {
             // Restore all files from the commit
             for (String filePath : commit.getFiles()) {
 
-                String hash
-                        = commit.getFileVersionId(filePath);
-
-                byte[] content
-                        = loadFileVersion(hash);
-
-                Path target
-                        = Paths.get(
-                                currentRootPath,
-                                filePath
-                        );
-
-                Files.write(
-                        target,
-                        content
+                restoreFile(
+                        filePath,
+                        commit.getFileVersionId(filePath)
                 );
 
                 System.out.println(
@@ -491,12 +1274,10 @@ public class Repository {
             }
 
             // Update HEAD
-            Files.write(
-                    Paths.get(
-                            currentRootPath,
-                            HEAD_FILE
-                    ),
-                    commit.getId().getBytes()
+            updateHead(
+                    headCommit != null ? headCommit.getId() : null,
+                    commit.getId(),
+                    "checkout: moving to " + target
             );
 
             // Reload repository state
@@ -517,6 +1298,24 @@ public class Repository {
         }
     }
 
+    /**
+     * Writes a stored object to a path in the working tree.
+     */
+    private void restoreFile(String filePath, String hash) throws IOException {
+        Path target = Paths.get(currentRootPath, filePath);
+
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            objectStore.copyTo(hash, channel);
+        }
+    }
+
     // public void checkout(String commitId) {
     //     if (isBranch(commitId)) {
     //         String branchHead
@@ -595,120 +1394,86 @@ public class Repository {
 
         if (headCommit == null) {
             System.out.println("No commits yet.");
-            return;
         }
 
-        final boolean[] clean = {true};
-
-        for (String filePath : headCommit.getFiles()) {
-
-            String storedHash
-                    = headCommit.getFileVersionId(filePath);
-
-            Path workingFile
-                    = Paths.get(currentRootPath, filePath);
-
-            if (!Files.exists(workingFile)) {
-
-                System.out.println(
-                        "Deleted: " + filePath);
-
-                clean[0] = false;
-                continue;
-            }
+        // A one-off scan; watching the tree only pays off for repeated requests
+        WorkingTreeStatus status = scanStatus(snapshot, null);
 
-            byte[] content
-                    = Files.readAllBytes(workingFile);
+        printPaths("Staged", status.getStaged());
+        printPaths("Modified", status.getModified());
+        printPaths("Deleted", status.getDeleted());
+        printPaths("Untracked", status.getUntracked());
+        printPaths("Conflicted", status.getConflicted());
 
-            String currentHash
-                    = HashUtils.generateSHA1(
-                            new String(content));
-
-            if (!currentHash.equals(storedHash)) {
-
-                System.out.println(
-                        "Modified: " + filePath);
-
-                clean[0] = false;
-            }
+        if (status.isClean()) {
+            System.out.println("Working tree clean");
         }
+    }
 
-        Files.list(Paths.get(currentRootPath))
-                .filter(Files::isRegularFile)
-                .forEach(path -> {
-
-                    String fileName
-                            = path.getFileName().toString();
+    private static void printPaths(String label, List<String> paths) {
+        for (String path : paths) {
+            System.out.println(label + ": " + path);
+        }
+    }
 
-                    boolean tracked = false;
+    /**
+     * Writes the ref of one branch, provided nobody else moved it since it
+     * was read. Other refs are left untouched.
+     */
+    private void saveBranchHead(String branch, String reflogMessage)
+            throws IOException {
 
-                    for (String trackedFile
-                            : headCommit.getFiles()) {
+        String previous
+                = refStore.get(branch);
 
-                        if (trackedFile.equals(fileName)) {
-                            tracked = true;
-                            break;
-                        }
-                    }
+        String head
+                = commitHistory.getBranchHead(branch);
 
-                    if (!tracked) {
+        refStore.update(branch, previous, head);
 
-                        System.out.println(
-                                "Untracked: " + fileName
-                        );
-                        clean[0] = false;
-                    }
-                });
+        publishSnapshot();
 
-        if (clean[0]) {
-            System.out.println("Working tree clean");
+        if (previous != null || head != null) {
+            reflog.append(branch, previous, head, reflogMessage);
         }
     }
 
-    private void saveBranches()
+    private void saveCurrentBranch()
             throws IOException {
 
-        Path refsDir
-                = Paths.get(
-                        currentRootPath,
-                        REFS_DIR
-                );
-
-        Files.createDirectories(refsDir);
-
-        for (String branch
-                : commitHistory.getBranches()) {
-
-            String head
-                    = commitHistory.getBranchHead(branch);
+        journal.begin()
+                .write(
+                        Paths.get(
+                                currentRootPath,
+                                CURRENT_BRANCH_FILE
+                        ),
+                        commitHistory.getCurrentBranch()
+                                .getBytes()
+                )
+                .commit();
+    }
 
-            if (head == null) {
-                head = "";
-            }
+    public synchronized void createBranch(String branchName) {
 
-            Files.write(
-                    refsDir.resolve(branch),
-                    head.getBytes()
-            );
-        }
+        try {
 
-        Files.write(
-                Paths.get(
-                        currentRootPath,
-                        CURRENT_BRANCH_FILE
-                ),
-                commitHistory.getCurrentBranch()
-                        .getBytes()
-        );
-    }
+            if (!RefStore.isValidName(branchName)) {
 
-    public void createBranch(String branchName) {
+                System.out.println(
+                        "Invalid branch name: "
+                        + branchName
+                );
 
-        try {
+                return;
+            }
 
             if (commitHistory.createBranch(branchName)) {
 
-                saveBranches();
+                saveBranchHead(
+                        branchName,
+                        "branch: Created from "
+                        + commitHistory.getCurrentBranch()
+                );
 
                 System.out.println(
                         "Created branch: "
@@ -771,95 +1536,461 @@ public class Repository {
 
     private void loadBranches() throws IOException {
 
-        Path refsDir
+        for (Map.Entry<String, String> ref
+                : refStore.getAll().entrySet()) {
+
+            commitHistory.createBranch(ref.getKey());
+            commitHistory.setBranchHead(
+                    ref.getKey(),
+                    ref.getValue()
+            );
+        }
+
+        Path currentBranchFile
                 = Paths.get(
                         currentRootPath,
-                        REFS_DIR
+                        CURRENT_BRANCH_FILE
                 );
 
-        if (!Files.exists(refsDir)) {
+        if (Files.exists(currentBranchFile)) {
+
+            String currentBranch
+                    = Files.readString(currentBranchFile)
+                            .trim();
+
+            commitHistory.switchBranch(currentBranch);
+        }
+    }
+
+    private boolean isBranch(String name) {
+
+        return commitHistory.getBranches()
+                .contains(name);
+    }
+
+    /**
+     * Finds the commits matching an abbreviated id with a binary search of
+     * the commit graph, returning at most two so ambiguity can be reported.
+     */
+    private List<String> resolveCommitId(String prefix) {
+
+        CommitGraph graph
+                = commitHistory.getCommitGraph();
+
+        if (graph == null) {
+            return new ArrayList<>();
+        }
+
+        return graph.findByPrefix(prefix, 2);
+    }
+
+    public void reflog(String ref) {
+        reflog(ref, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Prints the most recent moves of HEAD or a branch, newest first.
+     * @param ref HEAD or a branch name
+     * @param limit Maximum number of entries to print
+     */
+    public void reflog(String ref, int limit) {
+        if (!isRepositoryInitialized()) {
+            System.out.println("Repository not initialized. Run 'init' first.");
             return;
         }
+        try {
+            List<Reflog.Entry> entries = getReflog(ref, Long.MIN_VALUE, Long.MAX_VALUE, limit);
+            for (int i = 0; i < entries.size(); i++) {
+                Reflog.Entry entry = entries.get(i);
+                String shortId = entry.getNewId() != null ? entry.getNewId().substring(0, 7) : "0000000";
+                System.out.println(shortId + " " + ref + "@{" + i + "}: " + entry.getMessage()
+                        + " (" + new Date(entry.getTimestamp()) + ")");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read reflog: " + e.getMessage());
+        }
+    }
 
-        for (Path branchFile
-                : Files.list(refsDir).toList()) {
+    /**
+     * Reads the moves of HEAD or a branch within a time range.
+     * @param ref HEAD or a branch name
+     * @param since Earliest time to include (milliseconds)
+     * @param until Latest time to include (milliseconds)
+     * @param limit Maximum number of entries
+     * @return The entries, newest first
+     * @throws IllegalArgumentException If the ref name is invalid
+     * @throws IOException If the reflog cannot be read
+     */
+    public List<Reflog.Entry> getReflog(String ref, long since, long until, int limit)
+            throws IOException {
+        return reflog.read(ref, since, until, limit);
+    }
 
-            String branchName
-                    = branchFile.getFileName().toString();
+    /**
+     * Finds where HEAD or a branch pointed at a given time.
+     * @param ref HEAD or a branch name
+     * @param time The time (milliseconds)
+     * @return The entry in effect at that time, or null
+     * @throws IllegalArgumentException If the ref name is invalid
+     * @throws IOException If the reflog cannot be read
+     */
+    public Reflog.Entry getReflogAt(String ref, long time) throws IOException {
+        return reflog.lookup(ref, time);
+    }
 
-            String commitId
-                    = Files.readString(branchFile).trim();
+    /**
+     * Gets a cheap tag for the current status: it changes whenever the index,
+     * HEAD or any working file may have changed, so a caller holding the same
+     * tag can skip the scan entirely. Starts watching the working tree on
+     * first use.
+     * @return The tag, or null if the working tree cannot be watched
+     */
+    public String getStatusTag() {
+        return statusTag(snapshot);
+    }
 
-            commitHistory.createBranch(branchName);
-            commitHistory.setBranchHead(
-                    branchName,
-                    commitId.isEmpty()
-                    ? null
-                    : commitId
-            );
+    /**
+     * Compares HEAD, the index and the working tree. The result is cached
+     * until the status tag moves, and unchanged files are not re-hashed.
+     * Runs without the repository lock, against the latest snapshot.
+     * @return The status
+     * @throws IOException If the working tree cannot be read
+     */
+    public WorkingTreeStatus getStatus() throws IOException {
+        RepositorySnapshot current = snapshot;
+
+        // The tag is read before scanning, so the result is at least as new as it
+        String tag = statusTag(current);
+        WorkingTreeStatus cached = lastStatus;
+        if (tag != null && cached != null && tag.equals(cached.getVersion())) {
+            return cached;
+        }
 
-            Path currentBranchFile
-                    = Paths.get(
-                            currentRootPath,
-                            CURRENT_BRANCH_FILE
-                    );
+        WorkingTreeStatus status = scanStatus(current, tag);
+        this.lastStatus = status;
+        return status;
+    }
 
-            if (Files.exists(currentBranchFile)) {
+    private WorkingTreeStatus scanStatus(RepositorySnapshot current, String tag) throws IOException {
+        return statusScanner.scan(
+                tag,
+                manifest(current.getHeadCommit()),
+                current.getIndex(),
+                current.getRemovedPaths(),
+                new TreeSet<>(current.getConflictedPaths())
+        );
+    }
 
-                String currentBranch
-                        = Files.readString(currentBranchFile)
-                                .trim();
+    /**
+     * Registers a listener for changes to this repository. Listeners are
+     * called on the thread that made the change, while it holds the
+     * repository lock, or on the watcher thread for working tree changes,
+     * so they must hand events off rather than block.
+     * Registering a listener starts watching the working tree.
+     * @param listener The listener
+     */
+    public void addListener(Consumer<RepositoryEvent> listener) {
+        listeners.add(listener);
+        watchWorkingTree();
+    }
 
-                commitHistory.switchBranch(currentBranch);
+    /**
+     * Removes a listener.
+     * @param listener The listener
+     */
+    public void removeListener(Consumer<RepositoryEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    private void fire(RepositoryEvent event) {
+        for (Consumer<RepositoryEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Repository listener failed: " + e.getMessage());
             }
         }
     }
 
-    private boolean isBranch(String name) {
+    /**
+     * Reports what changed between two published snapshots. Deriving events
+     * from the snapshots means every mutation is covered, whichever path
+     * made it.
+     */
+    private void fireChanges(RepositorySnapshot previous, RepositorySnapshot current) {
+        if (previous == null || listeners.isEmpty()) {
+            return;
+        }
 
-        return commitHistory.getBranches()
-                .contains(name);
+        if (current.getCommitCount() > previous.getCommitCount() && current.getHeadId() != null
+                && !current.getHeadId().equals(previous.getHeadId())) {
+            fire(RepositoryEvent.commitCreated(current.getCurrentBranch(), current.getHeadId()));
+        }
+
+        for (Map.Entry<String, String> entry : current.getBranches().entrySet()) {
+            String oldId = previous.getBranches().get(entry.getKey());
+            if (!previous.getBranches().containsKey(entry.getKey())
+                    || !Objects.equals(oldId, entry.getValue())) {
+                fire(RepositoryEvent.refMoved(entry.getKey(), oldId, entry.getValue()));
+            }
+        }
+        if (!Objects.equals(previous.getHeadId(), current.getHeadId())
+                || !Objects.equals(previous.getCurrentBranch(), current.getCurrentBranch())) {
+            fire(RepositoryEvent.refMoved(Reflog.HEAD, previous.getHeadId(), current.getHeadId()));
+        }
+
+        if (!previous.getIndex().equals(current.getIndex())
+                || !previous.getRemovedPaths().equals(current.getRemovedPaths())
+                || !previous.getConflictedPaths().equals(current.getConflictedPaths())) {
+            fire(RepositoryEvent.indexChanged());
+        }
     }
 
-    private String resolveCommitId(String prefix)
-            throws IOException {
+    /**
+     * Stops watching the working tree and forces reflog entries still
+     * waiting for their batch. The repository stays usable; status
+     * requests just scan again.
+     */
+    public void close() {
+        synchronized (statusLock) {
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+        }
+        syncReflog();
+    }
 
-        Path objectsDir
-                = Paths.get(
-                        currentRootPath,
-                        OBJECTS_DIR
-                );
+    private void syncReflog() {
+        Reflog current = reflog;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                System.err.println("Failed to sync reflog: " + e.getMessage());
+            }
+        }
+    }
 
-        if (!Files.exists(objectsDir)) {
+    private String statusTag(RepositorySnapshot current) {
+        WorkingTreeWatcher active = watchWorkingTree();
+        if (active == null) {
             return null;
         }
+        return instanceId + "-" + current.getVersion() + "-" + active.getGeneration();
+    }
 
-        for (Path object
-                : Files.list(objectsDir).toList()) {
+    private WorkingTreeWatcher watchWorkingTree() {
+        synchronized (statusLock) {
+            if (watcher == null || !watcher.isRunning()) {
+                if (watcher != null) {
+                    watcher.close();
+                }
+                try {
+                    Path root = Paths.get(currentRootPath);
+                    watcher = WorkingTreeWatcher.start(root, root.resolve(VCS_DIR),
+                            () -> fire(RepositoryEvent.worktreeChanged()));
+                } catch (IOException | RuntimeException e) {
+                    watcher = null;
+                }
+            }
+            return watcher;
+        }
+    }
+
+    private void resetStatus(String path) {
+        synchronized (statusLock) {
+            close();
+            this.statusScanner = new StatusScanner(Paths.get(path), Paths.get(path, VCS_DIR), () -> objectFormat);
+            this.lastStatus = null;
+        }
+    }
 
-            String fileName
-                    = object.getFileName().toString();
+    /**
+     * Gets the graph layout of everything reachable from HEAD and the
+     * branches. The layout only depends on those tips, so it is cached by
+     * them and rebuilt only after a ref moves. Runs without the repository lock.
+     * @return The layout
+     */
+    public GraphLayout getGraphLayout() {
+        RepositorySnapshot current = snapshot;
+
+        TreeSet<String> tips = new TreeSet<>();
+        if (current.getHeadId() != null) {
+            tips.add(current.getHeadId());
+        }
+        for (String tip : current.getBranches().values()) {
+            if (tip != null) {
+                tips.add(tip);
+            }
+        }
 
-            if (fileName.startsWith(prefix)) {
+        String key = String.join(",", tips);
+        GraphLayout layout = graphLayouts.get(key);
+        if (layout == null) {
+            layout = GraphLayout.build(current.getHistory().getCommitGraph(), tips);
+            graphLayouts.put(key, layout);
+        }
+        return layout;
+    }
 
-                try {
+    /**
+     * Prepares a diff between two commits, or between a commit and the
+     * working tree. Runs against the latest snapshot without the repository
+     * lock.
+     * @param from Old side: HEAD, a branch or a (possibly abbreviated) commit id;
+     *             null for the first parent of {@code to}, or HEAD when diffing the working tree
+     * @param to New side, like {@code from}; null for the working tree
+     * @param path Only compare files at or below this path; null for all
+     * @return The diff, ready to run
+     * @throws IllegalArgumentException If a revision is unknown or the path is invalid
+     * @throws IOException If a commit cannot be read
+     */
+    public TreeDiff diff(String from, String to, String path) throws IOException {
+        RepositorySnapshot current = snapshot;
+
+        String prefix = null;
+        if (path != null && !path.isEmpty()) {
+            Path normalized = Paths.get(path).normalize();
+            if (normalized.isAbsolute() || normalized.startsWith("..")) {
+                throw new IllegalArgumentException("Invalid path: " + path);
+            }
+            prefix = normalized.toString().replace(normalized.getFileSystem().getSeparator(), "/");
+            if (prefix.isEmpty()) {
+                prefix = null;
+            }
+        }
 
-                    loadCommit(fileName);
+        Commit newCommit = to != null ? resolveRevision(current, to) : null;
+        Commit oldCommit;
+        if (from != null) {
+            oldCommit = resolveRevision(current, from);
+        } else if (newCommit != null) {
+            String parentId = newCommit.getParentId();
+            oldCommit = parentId != null ? current.getHistory().getCommit(parentId) : null;
+        } else {
+            oldCommit = current.getHeadCommit();
+        }
 
-                    return fileName;
+        Path root = Paths.get(currentRootPath);
+        return new TreeDiff(
+                objectStore,
+                objectFormat,
+                manifest(oldCommit),
+                newCommit != null ? manifest(newCommit) : null,
+                root,
+                root.resolve(VCS_DIR),
+                prefix
+        );
+    }
 
-                } catch (Exception ignored) {
-                }
+    /**
+     * Finds the commit a revision names: HEAD, a branch, or a full or
+     * abbreviated commit id.
+     */
+    private Commit resolveRevision(RepositorySnapshot current, String revision) throws IOException {
+        String commitId;
+        if (Reflog.HEAD.equals(revision)) {
+            commitId = current.getHeadId();
+        } else if (current.getBranches().containsKey(revision)) {
+            commitId = current.getBranches().get(revision);
+        } else {
+            List<String> matches = resolveCommitId(revision);
+            if (matches.size() > 1) {
+                throw new IllegalArgumentException("Ambiguous revision: " + revision);
             }
+            commitId = matches.isEmpty() ? null : matches.get(0);
         }
 
-        return null;
+        Commit commit = commitId != null ? current.getHistory().getCommit(commitId) : null;
+        if (commit == null) {
+            throw new IllegalArgumentException("Unknown revision: " + revision);
+        }
+        return commit;
+    }
+
+    /**
+     * Gets the size of a stored object's content.
+     * @param hash Hash of the object
+     * @return The size in bytes, or -1 if there is no such object
+     * @throws IOException If the object cannot be read
+     */
+    public long getObjectSize(String hash) throws IOException {
+        if (!isObjectId(hash) || !objectStore.contains(hash)) {
+            return -1;
+        }
+        return objectStore.size(hash);
+    }
+
+    /**
+     * Streams part of a stored object's content, reassembling chunked
+     * objects on the fly.
+     * @param hash Hash of the object
+     * @param offset First byte to copy
+     * @param length Number of bytes to copy
+     * @param out Channel to write to
+     * @throws IOException If the object is missing, or reading or writing fails
+     */
+    public void copyObject(String hash, long offset, long length, WritableByteChannel out)
+            throws IOException {
+        if (!isObjectId(hash)) {
+            throw new IOException("Invalid object id: " + hash);
+        }
+        objectStore.copyTo(hash, offset, length, out);
+    }
+
+    /**
+     * Checks if a string is a well-formed object id, which also keeps it
+     * from naming anything outside the object store.
+     * @param hash The candidate id
+     * @return true if it is 40 lowercase hex digits
+     */
+    public static boolean isObjectId(String hash) {
+        if (hash == null || hash.length() != 40) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the latest published state of the repository. Never blocks, even
+     * while a checkout or commit is running; the state it returns is the one
+     * from before that change until the change completes.
+     * @return The current snapshot
+     */
+    public RepositorySnapshot snapshot() {
+        return snapshot;
     }
 
     public CommitHistory getCommitHistory() {
         return commitHistory;
     }
 
+    public String getRootPath() {
+        return currentRootPath;
+    }
+
+    /**
+     * Estimates the heap held by this repository: cached commits, the
+     * in-memory part of the commit graph and the index.
+     * @return The estimated size in bytes
+     */
+    public long estimateMemory() {
+        long memory = BASE_MEMORY
+                + commitHistory.getCachedCommitCount() * COMMIT_MEMORY
+                + (long) (trackedFiles.size() + removedPaths.size()) * INDEX_ENTRY_MEMORY;
+        if (commitHistory.getCommitGraph() != null) {
+            memory += commitHistory.getCommitGraph().size() * GRAPH_ENTRY_MEMORY;
+        }
+        return memory;
+    }
+
     public Commit getHeadCommit() {
         return headCommit;
     }
@@ -869,4 +2000,12 @@ public class Repository {
         return trackedFiles.size();
 
     }
+
+    /**
+     * Gets the paths left with unresolved conflicts by the last merge
+     * @return Conflicted paths, sorted
+     */
+    public List<String> getConflictedPaths() {
+        return new ArrayList<>(conflictedPaths);
+    }
 }
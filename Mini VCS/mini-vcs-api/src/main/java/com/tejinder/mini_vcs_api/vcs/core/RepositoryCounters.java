@@ -0,0 +1,159 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of the object store, kept in .mini-vcs/counters so they
+ * can be read without listing the objects directory.
+ *
+ * {@link ObjectStore} bumps the totals as it writes new objects and the
+ * repository saves them after each change. The file also records the
+ * modification time of the objects directory at which the totals were last
+ * known to be exact: when they were counted, and after each of this
+ * store's own writes that found the directory as last seen. A write that
+ * finds the directory moved by someone else leaves the totals unconfirmed,
+ * so the saved time stops matching. If it no longer matches on open (a
+ * crash before saving, or another process writing objects) the totals are
+ * recounted once.
+ */
+public class RepositoryCounters {
+    private static final String COUNTERS_FILE = "counters";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path file;
+    private final ObjectStore objectStore;
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong objectBytes = new AtomicLong();
+    private volatile boolean dirty;
+    // Objects directory time at which the totals were exact; -1 once unconfirmed
+    private volatile long exactModified = -1;
+
+    private RepositoryCounters(Path vcsDir, ObjectStore objectStore) {
+        this.file = vcsDir.resolve(COUNTERS_FILE);
+        this.objectStore = objectStore;
+    }
+
+    /**
+     * Opens the counters of a repository, recounting them if they are missing or stale.
+     * @param vcsDir The .mini-vcs directory
+     * @param objectStore The object store to count; it reports new objects to the counters
+     * @return The counters
+     * @throws IOException If the object store cannot be counted
+     */
+    public static RepositoryCounters open(Path vcsDir, ObjectStore objectStore) throws IOException {
+        RepositoryCounters counters = new RepositoryCounters(vcsDir, objectStore);
+        if (!counters.read()) {
+            // Taken first, so a write during the count leaves the totals unconfirmed
+            counters.exactModified = objectStore.lastModified();
+            long[] totals = objectStore.measure();
+            counters.objects.set(totals[0]);
+            counters.objectBytes.set(totals[1]);
+            counters.dirty = true;
+            counters.save();
+        }
+        objectStore.setCounters(counters);
+        return counters;
+    }
+
+    /**
+     * Records an object renamed into the store. Called with renames
+     * serialized, so the times seen around one rename belong to it alone
+     * unless another process wrote objects at the same time.
+     * @param size Size of the new object file in bytes, or -1 if it replaced an existing one
+     * @param modifiedBefore Time of the objects directory just before the rename
+     * @param modifiedAfter Time of the objects directory just after it
+     */
+    void objectMoved(long size, long modifiedBefore, long modifiedAfter) {
+        if (size >= 0) {
+            objects.incrementAndGet();
+            objectBytes.addAndGet(size);
+        }
+        exactModified = modifiedBefore == exactModified ? modifiedAfter : -1;
+        dirty = true;
+    }
+
+    /**
+     * Gets the number of objects in the store
+     * @return The object count, chunks and manifests included
+     */
+    public long getObjects() {
+        return objects.get();
+    }
+
+    /**
+     * Gets the space taken by the objects
+     * @return The total size of the object files in bytes
+     */
+    public long getObjectBytes() {
+        return objectBytes.get();
+    }
+
+    /**
+     * Writes the totals if they changed since the last save. The write is
+     * atomic but not forced to disk: a lost update is caught on the next
+     * open and recounted.
+     * @throws IOException If writing fails
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+
+        String content = "objects " + objects.get() + "\n"
+                + "bytes " + objectBytes.get() + "\n"
+                + "objects-modified " + exactModified + "\n";
+
+        Path temp = file.resolveSibling(COUNTERS_FILE + TEMP_SUFFIX);
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Reads the saved totals; returns false if they are missing, damaged or stale. */
+    private boolean read() throws IOException {
+        long savedObjects = -1;
+        long savedBytes = -1;
+        long savedModified = -1;
+
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 2) {
+                    continue;
+                }
+                switch (parts[0]) {
+                    case "objects" -> savedObjects = Long.parseLong(parts[1]);
+                    case "bytes" -> savedBytes = Long.parseLong(parts[1]);
+                    case "objects-modified" -> savedModified = Long.parseLong(parts[1]);
+                    default -> {
+                        // Unknown keys are left for newer versions
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        if (savedObjects < 0 || savedBytes < 0 || savedModified != objectStore.lastModified()) {
+            return false;
+        }
+
+        objects.set(savedObjects);
+        objectBytes.set(savedBytes);
+        exactModified = savedModified;
+        return true;
+    }
+}
@@ -0,0 +1,121 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+/**
+ * A change to a repository, as reported to {@link Repository} listeners.
+ *
+ * Events carry just enough to tell a client what to fetch again; several
+ * events of the same kind can be folded into one with {@link #coalesce}.
+ */
+public final class RepositoryEvent {
+
+    /**
+     * Kinds of change.
+     */
+    public enum Type {
+        /** A new commit was recorded; the commit id is set. */
+        COMMIT_CREATED,
+        /** A branch or HEAD moved; the ref and its old and new ids are set. */
+        REF_MOVED,
+        /** The staging area or the set of conflicted paths changed. */
+        INDEX_CHANGED,
+        /** Something changed in the working tree. */
+        WORKTREE_CHANGED,
+        /** Events were dropped; everything should be fetched again. */
+        RESYNC
+    }
+
+    private final Type type;
+    private final String ref;
+    private final String oldId;
+    private final String newId;
+
+    private RepositoryEvent(Type type, String ref, String oldId, String newId) {
+        this.type = type;
+        this.ref = ref;
+        this.oldId = oldId;
+        this.newId = newId;
+    }
+
+    public static RepositoryEvent commitCreated(String branch, String commitId) {
+        return new RepositoryEvent(Type.COMMIT_CREATED, branch, null, commitId);
+    }
+
+    public static RepositoryEvent refMoved(String ref, String oldId, String newId) {
+        return new RepositoryEvent(Type.REF_MOVED, ref, oldId, newId);
+    }
+
+    public static RepositoryEvent indexChanged() {
+        return new RepositoryEvent(Type.INDEX_CHANGED, null, null, null);
+    }
+
+    public static RepositoryEvent worktreeChanged() {
+        return new RepositoryEvent(Type.WORKTREE_CHANGED, null, null, null);
+    }
+
+    public static RepositoryEvent resync() {
+        return new RepositoryEvent(Type.RESYNC, null, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ref the event concerns
+     * @return The branch name or "HEAD", or null for events not about a ref
+     */
+    public String getRef() {
+        return ref;
+    }
+
+    /**
+     * Gets the id a ref pointed to before it moved
+     * @return The old commit id, or null
+     */
+    public String getOldId() {
+        return oldId;
+    }
+
+    /**
+     * Gets the id a ref points to now, or the id of a new commit
+     * @return The commit id, or null
+     */
+    public String getNewId() {
+        return newId;
+    }
+
+    /**
+     * Gets the key under which events of the same kind are folded together:
+     * one per ref for ref moves, one per commit, one for each other type.
+     * @return The coalescing key
+     */
+    public String getKey() {
+        switch (type) {
+            case REF_MOVED:
+                return type + ":" + ref;
+            case COMMIT_CREATED:
+                return type + ":" + newId;
+            default:
+                return type.name();
+        }
+    }
+
+    /**
+     * Folds a later event with the same key into this one. A ref that moved
+     * twice is reported as one move from its first old id to its last new id.
+     * @param later The later event
+     * @return The combined event
+     */
+    public RepositoryEvent coalesce(RepositoryEvent later) {
+        if (type == Type.REF_MOVED) {
+            return refMoved(ref, oldId, later.newId);
+        }
+        return later;
+    }
+
+    @Override
+    public String toString() {
+        return type + (ref != null ? " " + ref : "")
+                + (oldId != null || newId != null ? " " + oldId + " -> " + newId : "");
+    }
+}
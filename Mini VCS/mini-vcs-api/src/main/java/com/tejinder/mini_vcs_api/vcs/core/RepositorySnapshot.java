@@ -0,0 +1,167 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable view of a repository at one point in time: HEAD, the refs,
+ * the index, the repository totals and the history they point into.
+ *
+ * {@link Repository} publishes a new snapshot through a volatile reference
+ * after every change, so readers take the current one without locking and
+ * never see a checkout or commit half applied. HEAD, the current branch
+ * and the branch heads are copied as values. Only the commit lookup is
+ * shared with the repository, and it answers by commit id from history
+ * that is only ever added to, so walking it from this snapshot's head and
+ * refs always gives the same answer.
+ */
+public final class RepositorySnapshot {
+    private final long version;
+    private final CommitLookup history;
+    private final Commit headCommit;
+    private final String currentBranch;
+    private final Map<String, String> branches;
+    private final Map<String, String> index;
+    private final Set<String> removedPaths;
+    private final List<String> conflictedPaths;
+    private final int commitCount;
+    private final int trackedFileCount;
+    private final long objectCount;
+    private final long diskSize;
+
+    RepositorySnapshot(
+            long version,
+            CommitLookup history,
+            Commit headCommit,
+            String currentBranch,
+            Map<String, String> branches,
+            Map<String, String> index,
+            Set<String> removedPaths,
+            List<String> conflictedPaths,
+            int commitCount,
+            int trackedFileCount,
+            long objectCount,
+            long diskSize
+    ) {
+        this.version = version;
+        this.history = history;
+        this.headCommit = headCommit;
+        this.currentBranch = currentBranch;
+        this.branches = Collections.unmodifiableMap(new TreeMap<>(branches));
+        // Sorted and unmodifiable already; unchanged indexes are shared between snapshots
+        this.index = index;
+        this.removedPaths = removedPaths;
+        this.conflictedPaths = List.copyOf(conflictedPaths);
+        this.commitCount = commitCount;
+        this.trackedFileCount = trackedFileCount;
+        this.objectCount = objectCount;
+        this.diskSize = diskSize;
+    }
+
+    /**
+     * Gets the number of this snapshot; every published snapshot gets a higher one
+     * @return The snapshot version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the commits the refs of this snapshot point into
+     * @return The commit lookup
+     */
+    public CommitLookup getHistory() {
+        return history;
+    }
+
+    /**
+     * Gets the commit HEAD pointed to
+     * @return The head commit, or null if there are no commits
+     */
+    public Commit getHeadCommit() {
+        return headCommit;
+    }
+
+    /**
+     * Gets the id of the commit HEAD pointed to
+     * @return The head commit id, or null if there are no commits
+     */
+    public String getHeadId() {
+        return headCommit != null ? headCommit.getId() : null;
+    }
+
+    /**
+     * Gets the checked-out branch
+     * @return The branch name
+     */
+    public String getCurrentBranch() {
+        return currentBranch;
+    }
+
+    /**
+     * Gets every branch and the commit it pointed to
+     * @return Unmodifiable map of branch name to commit id (null for a branch without commits), sorted by name
+     */
+    public Map<String, String> getBranches() {
+        return branches;
+    }
+
+    /**
+     * Gets the number of commits in the history
+     * @return The commit count
+     */
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * Gets the number of tracked files: those in HEAD or staged, less staged removals
+     * @return The number of files the next commit would contain
+     */
+    public int getTrackedFileCount() {
+        return trackedFileCount;
+    }
+
+    /**
+     * Gets the number of objects in the object store
+     * @return The object count
+     */
+    public long getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Gets the space the object store takes on disk
+     * @return The size in bytes
+     */
+    public long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * Gets the staged files
+     * @return Unmodifiable map of path to staged hash, sorted by path
+     */
+    public Map<String, String> getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the paths staged for removal
+     * @return Unmodifiable set of paths
+     */
+    public Set<String> getRemovedPaths() {
+        return removedPaths;
+    }
+
+    /**
+     * Gets the paths with unresolved merge conflicts
+     * @return Unmodifiable list of paths
+     */
+    public List<String> getConflictedPaths() {
+        return conflictedPaths;
+    }
+}
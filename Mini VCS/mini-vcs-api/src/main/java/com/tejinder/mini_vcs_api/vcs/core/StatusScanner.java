@@ -0,0 +1,228 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import vcs.util.HashUtils;
+import vcs.util.TaskScope;
+
+/**
+ * Computes the status of a working tree against HEAD and the index.
+ *
+ * Hashes of working files are kept in a stat cache keyed by path and only
+ * reused while the file's size and modification time are unchanged. A file
+ * modified within {@link #RACY_WINDOW_MS} of being hashed is not trusted,
+ * since a second write in the same timestamp tick would go unnoticed, so it
+ * is hashed again on the next scan. Files that do need hashing are hashed
+ * in parallel.
+ */
+public class StatusScanner {
+    private static final long RACY_WINDOW_MS = 2000;
+    private static final int MAX_IN_FLIGHT_FILES
+            = Math.max(2, Runtime.getRuntime().availableProcessors()) * 4;
+
+    private final Path root;
+    private final Path vcsDir;
+    private final Supplier<ObjectFormat> format;
+    private final Map<String, StatEntry> statCache = new HashMap<>();
+
+    private static class StatEntry {
+        private final long size;
+        private final long modified;
+        private final long hashedAt;
+        private final String hash;
+
+        StatEntry(long size, long modified, long hashedAt, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hashedAt = hashedAt;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Creates a scanner for a working tree.
+     * @param root The working tree root
+     * @param vcsDir The .mini-vcs directory, which is skipped
+     * @param format Gives how the repository names objects, which is only known once it is loaded
+     */
+    public StatusScanner(Path root, Path vcsDir, Supplier<ObjectFormat> format) {
+        this.root = root;
+        this.vcsDir = vcsDir;
+        this.format = format;
+    }
+
+    /**
+     * Scans the working tree.
+     * @param version Version tag to attach to the result, or null to derive one from the result
+     * @param head Files of HEAD (path to hash)
+     * @param index Staged files (path to hash)
+     * @param removed Paths staged for removal
+     * @param conflicted Paths with unresolved conflicts
+     * @return The status
+     * @throws IOException If the working tree cannot be read
+     */
+    public synchronized WorkingTreeStatus scan(
+            String version,
+            Map<String, String> head,
+            Map<String, String> index,
+            Set<String> removed,
+            Set<String> conflicted
+    ) throws IOException {
+
+        Map<String, String> expected = new HashMap<>(head);
+        expected.putAll(index);
+        expected.keySet().removeAll(removed);
+
+        TreeSet<String> staged = new TreeSet<>(removed);
+        for (Map.Entry<String, String> entry : index.entrySet()) {
+            if (!entry.getValue().equals(head.get(entry.getKey()))) {
+                staged.add(entry.getKey());
+            }
+        }
+
+        Map<String, BasicFileAttributes> present = listFiles();
+
+        TreeSet<String> deleted = new TreeSet<>();
+        TreeSet<String> untracked = new TreeSet<>();
+        for (String path : expected.keySet()) {
+            if (!present.containsKey(path)) {
+                deleted.add(path);
+            }
+        }
+        for (String path : present.keySet()) {
+            if (!expected.containsKey(path)) {
+                untracked.add(path);
+            }
+        }
+
+        Map<String, String> hashes = hashAll(present, expected.keySet());
+        TreeSet<String> modified = new TreeSet<>();
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            if (!entry.getValue().equals(expected.get(entry.getKey()))) {
+                modified.add(entry.getKey());
+            }
+        }
+
+        statCache.keySet().retainAll(present.keySet());
+
+        return new WorkingTreeStatus(
+                version != null ? version : contentTag(staged, modified, deleted, untracked, conflicted),
+                new ArrayList<>(staged),
+                new ArrayList<>(modified),
+                new ArrayList<>(deleted),
+                new ArrayList<>(untracked),
+                new ArrayList<>(new TreeSet<>(conflicted))
+        );
+    }
+
+    /** Derives a version tag from the status itself, for callers without a cheaper one. */
+    private static String contentTag(Set<String> staged, Set<String> modified, Set<String> deleted,
+                                     Set<String> untracked, Set<String> conflicted) {
+        return HashUtils.generateSHA1(String.join("\n", staged) + "\0" + String.join("\n", modified)
+                + "\0" + String.join("\n", deleted) + "\0" + String.join("\n", untracked)
+                + "\0" + String.join("\n", new TreeSet<>(conflicted)));
+    }
+
+    /** Lists the regular files of the working tree by repository-relative path. */
+    private Map<String, BasicFileAttributes> listFiles() throws IOException {
+        Map<String, BasicFileAttributes> files = new TreeMap<>();
+        if (!Files.isDirectory(root)) {
+            return files;
+        }
+
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.startsWith(vcsDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.put(root.relativize(file).toString()
+                            .replace(root.getFileSystem().getSeparator(), "/"), attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Deleted while walking; the next scan sees it gone
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Gets the hash of every tracked file that is present, from the stat
+     * cache where it can be trusted and by hashing the file otherwise.
+     */
+    private Map<String, String> hashAll(Map<String, BasicFileAttributes> present, Set<String> tracked)
+            throws IOException {
+
+        Map<String, String> hashes = new HashMap<>();
+        List<String> pending = new ArrayList<>();
+
+        for (String path : tracked) {
+            BasicFileAttributes attrs = present.get(path);
+            if (attrs == null) {
+                continue;
+            }
+            StatEntry entry = statCache.get(path);
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (entry != null && entry.size == attrs.size() && entry.modified == modified
+                    && modified < entry.hashedAt - RACY_WINDOW_MS) {
+                hashes.put(path, entry.hash);
+            } else {
+                pending.add(path);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return hashes;
+        }
+
+        long hashedAt = System.currentTimeMillis();
+        ObjectFormat objectFormat = format.get();
+        try (TaskScope<String> scope = TaskScope.open(MAX_IN_FLIGHT_FILES)) {
+            List<Future<String>> results = new ArrayList<>(pending.size());
+            for (String path : pending) {
+                results.add(scope.fork(() -> objectFormat.hash(root.resolve(path))));
+            }
+
+            for (int i = 0; i < pending.size(); i++) {
+                String path = pending.get(i);
+                try {
+                    String hash = results.get(i).get();
+                    BasicFileAttributes attrs = present.get(path);
+                    hashes.put(path, hash);
+                    statCache.put(path, new StatEntry(
+                            attrs.size(), attrs.lastModifiedTime().toMillis(), hashedAt, hash));
+                } catch (ExecutionException e) {
+                    // Unreadable or removed while scanning: report it as modified
+                    hashes.put(path, "");
+                    statCache.remove(path);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Status interrupted", e);
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,224 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import vcs.util.TaskScope;
+
+/**
+ * Compares two trees, a commit with another commit or with the working
+ * tree, and reports the changed files one at a time.
+ *
+ * Files are diffed in parallel, a batch at a time, and reported in path
+ * order as each batch finishes, so only one batch of results is held at
+ * once however many files changed. Files over {@link #MAX_DIFF_BYTES}, or
+ * whose line matching would need a table of more than
+ * {@link #MAX_DIFF_CELLS} cells, are summarised instead of diffed; so are
+ * binary files, recognised like git by a NUL byte near the start.
+ */
+public class TreeDiff {
+    private static final long MAX_DIFF_BYTES = 1024 * 1024;
+    private static final long MAX_DIFF_CELLS = 1L << 21;
+    private static final int BINARY_SNIFF_BYTES = 8000;
+    private static final int CONTEXT_LINES = 3;
+    private static final int BATCH_SIZE
+            = Math.max(2, Runtime.getRuntime().availableProcessors()) * 4;
+
+    /**
+     * Receives the changed files.
+     */
+    public interface Sink {
+        void accept(FileDiff diff) throws IOException;
+    }
+
+    private final ObjectStore objectStore;
+    private final ObjectFormat format;
+    private final Map<String, String> oldFiles;
+    private final Map<String, String> newFiles;
+    private final Path workingTree;
+    private final Path vcsDir;
+    private final String pathPrefix;
+
+    /**
+     * @param newFiles Files of the new tree, or null to compare with the working tree
+     * @param pathPrefix Only files at or below this path are compared; null for all
+     */
+    TreeDiff(
+            ObjectStore objectStore,
+            ObjectFormat format,
+            Map<String, String> oldFiles,
+            Map<String, String> newFiles,
+            Path workingTree,
+            Path vcsDir,
+            String pathPrefix
+    ) {
+        this.objectStore = objectStore;
+        this.format = format;
+        this.oldFiles = oldFiles;
+        this.newFiles = newFiles;
+        this.workingTree = workingTree;
+        this.vcsDir = vcsDir;
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Diffs every changed file and hands it to the sink, in path order.
+     * Stops early if the sink throws.
+     * @param sink Receives each changed file
+     * @throws IOException If reading fails or the sink throws
+     */
+    public void forEach(Sink sink) throws IOException {
+        List<String> paths = candidatePaths();
+
+        try {
+            for (int from = 0; from < paths.size(); from += BATCH_SIZE) {
+                List<String> batch = paths.subList(from, Math.min(paths.size(), from + BATCH_SIZE));
+
+                try (TaskScope<FileDiff> scope = TaskScope.open()) {
+                    List<Future<FileDiff>> results = new ArrayList<>(batch.size());
+                    for (String path : batch) {
+                        results.add(scope.fork(() -> diffFile(path)));
+                    }
+
+                    for (Future<FileDiff> result : results) {
+                        FileDiff diff = result.get();
+                        if (diff != null) {
+                            sink.accept(diff);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Diff interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Diff failed", e.getCause());
+        }
+    }
+
+    /** Lists the paths that may differ, sorted. Equal hashes are ruled out here when both are known. */
+    private List<String> candidatePaths() throws IOException {
+        TreeSet<String> paths = new TreeSet<>();
+
+        for (String path : oldFiles.keySet()) {
+            if (matchesPrefix(path)) {
+                paths.add(path);
+            }
+        }
+
+        if (newFiles != null) {
+            for (Map.Entry<String, String> entry : newFiles.entrySet()) {
+                if (matchesPrefix(entry.getKey())) {
+                    paths.add(entry.getKey());
+                }
+                if (entry.getValue().equals(oldFiles.get(entry.getKey()))) {
+                    paths.remove(entry.getKey());
+                }
+            }
+        } else {
+            paths.addAll(listWorkingFiles());
+        }
+
+        return new ArrayList<>(paths);
+    }
+
+    private boolean matchesPrefix(String path) {
+        return pathPrefix == null || path.equals(pathPrefix) || path.startsWith(pathPrefix + "/");
+    }
+
+    private List<String> listWorkingFiles() throws IOException {
+        Path start = pathPrefix != null ? workingTree.resolve(pathPrefix) : workingTree;
+        if (!Files.isDirectory(start)) {
+            return Files.isRegularFile(start) ? List.of(pathPrefix) : List.of();
+        }
+
+        Path excluded = vcsDir.normalize();
+        try (Stream<Path> stream = Files.walk(start)) {
+            return stream
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !file.normalize().startsWith(excluded))
+                    .map(file -> workingTree.relativize(file).toString()
+                            .replace(file.getFileSystem().getSeparator(), "/"))
+                    .filter(this::matchesPrefix)
+                    .toList();
+        }
+    }
+
+    /** Diffs one file; returns null if it did not change. */
+    private FileDiff diffFile(String path) throws IOException {
+        String oldHash = oldFiles.get(path);
+        String newHash;
+        Path workingFile = null;
+
+        if (newFiles != null) {
+            newHash = newFiles.get(path);
+        } else {
+            workingFile = workingTree.resolve(path);
+            newHash = Files.isRegularFile(workingFile) ? format.hash(workingFile) : null;
+        }
+
+        if (newHash != null && newHash.equals(oldHash)) {
+            return null;
+        }
+
+        FileDiff.Status status = oldHash == null ? FileDiff.Status.ADDED
+                : newHash == null ? FileDiff.Status.DELETED
+                : FileDiff.Status.MODIFIED;
+
+        long oldSize = oldHash != null ? objectStore.size(oldHash) : 0;
+        long newSize = newHash == null ? 0
+                : workingFile != null ? Files.size(workingFile)
+                : objectStore.size(newHash);
+
+        if (oldSize > MAX_DIFF_BYTES || newSize > MAX_DIFF_BYTES) {
+            return new FileDiff(path, status, oldHash, newHash, false, true, List.of());
+        }
+
+        byte[] oldContent = oldHash != null ? toBytes(objectStore.read(oldHash)) : new byte[0];
+        byte[] newContent = newHash == null ? new byte[0]
+                : workingFile != null ? Files.readAllBytes(workingFile)
+                : toBytes(objectStore.read(newHash));
+
+        if (isBinary(oldContent) || isBinary(newContent)) {
+            return new FileDiff(path, status, oldHash, newHash, true, false, List.of());
+        }
+
+        String[] oldLines = DiffTool.lines(new String(oldContent, StandardCharsets.UTF_8));
+        String[] newLines = DiffTool.lines(new String(newContent, StandardCharsets.UTF_8));
+
+        if (DiffTool.matchCost(oldLines, newLines) > MAX_DIFF_CELLS) {
+            return new FileDiff(path, status, oldHash, newHash, false, true, List.of());
+        }
+
+        return new FileDiff(path, status, oldHash, newHash, false, false,
+                DiffTool.unifiedDiff(oldLines, newLines, CONTEXT_LINES));
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static boolean isBinary(byte[] content) {
+        int end = Math.min(content.length, BINARY_SNIFF_BYTES);
+        for (int i = 0; i < end; i++) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
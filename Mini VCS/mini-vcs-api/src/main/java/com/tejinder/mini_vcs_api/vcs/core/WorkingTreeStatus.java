@@ -0,0 +1,90 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.util.List;
+
+/**
+ * Result of comparing HEAD, the index and the working tree. Every list is
+ * sorted and unmodifiable.
+ */
+public final class WorkingTreeStatus {
+    private final String version;
+    private final List<String> staged;
+    private final List<String> modified;
+    private final List<String> deleted;
+    private final List<String> untracked;
+    private final List<String> conflicted;
+
+    WorkingTreeStatus(
+            String version,
+            List<String> staged,
+            List<String> modified,
+            List<String> deleted,
+            List<String> untracked,
+            List<String> conflicted
+    ) {
+        this.version = version;
+        this.staged = List.copyOf(staged);
+        this.modified = List.copyOf(modified);
+        this.deleted = List.copyOf(deleted);
+        this.untracked = List.copyOf(untracked);
+        this.conflicted = List.copyOf(conflicted);
+    }
+
+    /**
+     * Gets a tag that changes whenever the status may have changed, suitable
+     * as an HTTP entity tag
+     * @return The version tag
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the paths whose staged version differs from HEAD, including staged removals
+     * @return The staged paths
+     */
+    public List<String> getStaged() {
+        return staged;
+    }
+
+    /**
+     * Gets the tracked paths whose working copy differs from the index (or HEAD if unstaged)
+     * @return The modified paths
+     */
+    public List<String> getModified() {
+        return modified;
+    }
+
+    /**
+     * Gets the tracked paths missing from the working tree
+     * @return The deleted paths
+     */
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Gets the working files that are neither in HEAD nor staged
+     * @return The untracked paths
+     */
+    public List<String> getUntracked() {
+        return untracked;
+    }
+
+    /**
+     * Gets the paths with unresolved merge conflicts
+     * @return The conflicted paths
+     */
+    public List<String> getConflicted() {
+        return conflicted;
+    }
+
+    /**
+     * Checks if nothing differs between HEAD, the index and the working tree
+     * @return true if the working tree is clean
+     */
+    public boolean isClean() {
+        return staged.isEmpty() && modified.isEmpty() && deleted.isEmpty()
+                && untracked.isEmpty() && conflicted.isEmpty();
+    }
+}
@@ -0,0 +1,163 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches a working tree (without its .mini-vcs directory) and counts the
+ * changes seen, so callers can tell that nothing changed without scanning.
+ *
+ * Directories are registered recursively, including ones created later.
+ * If the watch queue overflows or a directory cannot be registered the
+ * generation still moves, so a change is never silently missed; events do
+ * arrive asynchronously, so a change shows up a few milliseconds late.
+ */
+public class WorkingTreeWatcher implements AutoCloseable {
+    private final Path root;
+    private final Path excluded;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Runnable onChange;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private WorkingTreeWatcher(Path root, Path excluded, Runnable onChange) throws IOException {
+        this.root = root;
+        this.excluded = excluded;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerAll(root);
+
+        this.thread = new Thread(this::run, "mini-vcs-watch-" + root.getFileName());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching a working tree.
+     * @param root The working tree root
+     * @param excluded A directory inside the root to ignore (the .mini-vcs directory)
+     * @param onChange Called on the watcher thread after each batch of changes; must not block
+     * @return The running watcher
+     * @throws IOException If the platform cannot watch the tree
+     */
+    public static WorkingTreeWatcher start(Path root, Path excluded, Runnable onChange) throws IOException {
+        WorkingTreeWatcher watcher = new WorkingTreeWatcher(root, excluded, onChange);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * Gets the number of changes seen so far
+     * @return The generation, which only grows
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Checks whether the watcher is still delivering changes
+     * @return true until the watcher is closed or fails
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops watching.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                WatchKey key = watchService.take();
+                Path directory = directories.get(key);
+                long before = generation.get();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        generation.incrementAndGet();
+                        continue;
+                    }
+                    if (directory == null) {
+                        continue;
+                    }
+
+                    Path path = directory.resolve((Path) event.context());
+                    if (path.startsWith(excluded)) {
+                        continue;
+                    }
+                    generation.incrementAndGet();
+
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                        registerAll(path);
+                        // Files written into it before it was registered raised no
+                        // events, and a scan may have run in between; count once more
+                        generation.incrementAndGet();
+                    }
+                }
+
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+
+                if (generation.get() != before) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Stopped watching " + root + ": " + e.getMessage());
+        } finally {
+            running = false;
+            generation.incrementAndGet();
+        }
+    }
+
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.startsWith(excluded)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // A directory that vanished while registering is itself a change
+                generation.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
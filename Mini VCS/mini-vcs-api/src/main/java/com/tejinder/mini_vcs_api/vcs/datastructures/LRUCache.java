@@ -0,0 +1,110 @@
+package vcs.datastructures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache for the version control system.
+ * Used to keep recently loaded commits in memory without holding the whole history.
+ * All operations are synchronized, so a cache may be shared between threads.
+ * @param <K> Type of keys stored in the cache
+ * @param <V> Type of values stored in the cache
+ */
+public class LRUCache<K, V> {
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+
+    /**
+     * Creates a cache holding at most the given number of entries
+     * @param capacity Maximum number of entries
+     */
+    public LRUCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LRUCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets a value and marks it as most recently used
+     * @param key The key to look up
+     * @return The cached value, or null if absent
+     */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds or replaces a value, evicting the least recently used entry when full
+     * @param key The key
+     * @param value The value
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Removes a value from the cache
+     * @param key The key to remove
+     * @return The removed value, or null if absent
+     */
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+
+    /**
+     * Checks if the cache currently holds a key
+     * @param key The key to check
+     * @return true if the key is cached
+     */
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the number of cached entries
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of entries
+     * @return The capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Checks if the cache is empty
+     * @return true if nothing is cached
+     */
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns a snapshot of the cached values, least recently used first
+     * @return List of cached values
+     */
+    public synchronized List<V> values() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,470 @@
+package vcs.datastructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative integers in the style of Roaring bitmaps.
+ * Used to store the set of commits reachable from a commit by commit-graph position.
+ * Values are grouped by their high 16 bits; each group is kept as a sorted
+ * array while sparse and as a 65536-bit bitmap once it holds more than
+ * {@link #ARRAY_LIMIT} values, so both sparse and dense sets stay small and
+ * set operations work a whole container at a time.
+ */
+public class RoaringBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final byte ARRAY_CONTAINER = 0;
+    private static final byte BITMAP_CONTAINER = 1;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    /**
+     * A group of values sharing the same high 16 bits; exactly one of
+     * values and words is in use.
+     */
+    private static class Container {
+        char[] values;
+        long[] words;
+        int cardinality;
+
+        static Container ofArray(char[] values, int cardinality) {
+            Container container = new Container();
+            container.values = values;
+            container.cardinality = cardinality;
+            return container;
+        }
+
+        static Container ofWords(long[] words) {
+            Container container = new Container();
+            container.words = words;
+            for (long word : words) {
+                container.cardinality += Long.bitCount(word);
+            }
+            return container.cardinality <= ARRAY_LIMIT ? container.toArrayContainer() : container;
+        }
+
+        boolean contains(char low) {
+            if (words != null) {
+                return (words[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        /** Adds a value; returns false if it was already present. */
+        boolean add(char low) {
+            if (words != null) {
+                long mask = 1L << low;
+                if ((words[low >>> 6] & mask) != 0) {
+                    return false;
+                }
+                words[low >>> 6] |= mask;
+                cardinality++;
+                return true;
+            }
+
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                toBitmapInPlace();
+                return add(low);
+            }
+
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return true;
+        }
+
+        long[] toWords() {
+            if (words != null) {
+                return words;
+            }
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                result[values[i] >>> 6] |= 1L << values[i];
+            }
+            return result;
+        }
+
+        private void toBitmapInPlace() {
+            words = toWords();
+            values = null;
+        }
+
+        private Container toArrayContainer() {
+            char[] result = new char[cardinality];
+            int index = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    result[index++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return ofArray(result, cardinality);
+        }
+
+        Container copy() {
+            return words != null
+                    ? ofWords(words.clone())
+                    : ofArray(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        void forEach(int high, IntConsumer action) {
+            if (words != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        action.accept(high | (w * 64 + Long.numberOfTrailingZeros(word)));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(high | values[i]);
+                }
+            }
+        }
+
+        static Container and(Container a, Container b) {
+            if (a.words == null && b.words == null) {
+                char[] result = new char[Math.min(a.cardinality, b.cardinality)];
+                int count = 0;
+                int i = 0;
+                int j = 0;
+                while (i < a.cardinality && j < b.cardinality) {
+                    if (a.values[i] < b.values[j]) {
+                        i++;
+                    } else if (a.values[i] > b.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = a.values[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return ofArray(result, count);
+            }
+            if (a.words == null || b.words == null) {
+                Container array = a.words == null ? a : b;
+                Container bitmap = a.words == null ? b : a;
+                char[] result = new char[array.cardinality];
+                int count = 0;
+                for (int i = 0; i < array.cardinality; i++) {
+                    if (bitmap.contains(array.values[i])) {
+                        result[count++] = array.values[i];
+                    }
+                }
+                return ofArray(result, count);
+            }
+            long[] result = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = a.words[w] & b.words[w];
+            }
+            return ofWords(result);
+        }
+
+        static Container or(Container a, Container b) {
+            if (a.words == null && b.words == null && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+                char[] result = new char[a.cardinality + b.cardinality];
+                int count = 0;
+                int i = 0;
+                int j = 0;
+                while (i < a.cardinality || j < b.cardinality) {
+                    if (j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+                        result[count++] = a.values[i++];
+                    } else if (i == a.cardinality || b.values[j] < a.values[i]) {
+                        result[count++] = b.values[j++];
+                    } else {
+                        result[count++] = a.values[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return ofArray(result, count);
+            }
+            long[] result = a.toWords().clone();
+            if (b.words != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] |= b.words[w];
+                }
+            } else {
+                for (int i = 0; i < b.cardinality; i++) {
+                    result[b.values[i] >>> 6] |= 1L << b.values[i];
+                }
+            }
+            return ofWords(result);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a.words == null) {
+                char[] result = new char[a.cardinality];
+                int count = 0;
+                for (int i = 0; i < a.cardinality; i++) {
+                    if (!b.contains(a.values[i])) {
+                        result[count++] = a.values[i];
+                    }
+                }
+                return ofArray(result, count);
+            }
+            long[] result = a.words.clone();
+            if (b.words != null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] &= ~b.words[w];
+                }
+            } else {
+                for (int i = 0; i < b.cardinality; i++) {
+                    result[b.values[i] >>> 6] &= ~(1L << b.values[i]);
+                }
+            }
+            return ofWords(result);
+        }
+    }
+
+    /**
+     * Creates an empty bitmap
+     */
+    public RoaringBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a value to the bitmap
+     * @param value A non-negative value
+     * @return true if the value was not already present
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+
+        char high = (char) (value >>> 16);
+        int index = indexOf(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, Container.ofArray(new char[4], 0));
+        }
+        return containers[index].add((char) value);
+    }
+
+    /**
+     * Checks if a value is in the bitmap
+     * @param value The value to check
+     * @return true if the value is present
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * Returns the number of values in the bitmap
+     * @return The cardinality
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Checks if the bitmap is empty
+     * @return true if no value is present
+     */
+    public boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    /**
+     * Adds every value of another bitmap to this one
+     * @param other The bitmap to merge in
+     */
+    public void orWith(RoaringBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            int index = indexOf(other.keys[j]);
+            if (index >= 0) {
+                containers[index] = Container.or(containers[index], other.containers[j]);
+            } else {
+                insertContainer(-index - 1, other.keys[j], other.containers[j].copy());
+            }
+        }
+    }
+
+    /**
+     * Computes the intersection of two bitmaps
+     * @param a The first bitmap
+     * @param b The second bitmap
+     * @return A new bitmap with the values present in both
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.appendContainer(a.keys[i], Container.and(a.containers[i], b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the union of two bitmaps
+     * @param a The first bitmap
+     * @param b The second bitmap
+     * @return A new bitmap with the values present in either
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = a.copy();
+        result.orWith(b);
+        return result;
+    }
+
+    /**
+     * Computes the difference of two bitmaps
+     * @param a The bitmap to subtract from
+     * @param b The bitmap whose values are removed
+     * @return A new bitmap with the values of a that are not in b
+     */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (int i = 0; i < a.size; i++) {
+            int index = b.indexOf(a.keys[i]);
+            result.appendContainer(a.keys[i], index >= 0
+                    ? Container.andNot(a.containers[i], b.containers[index])
+                    : a.containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Creates an independent copy of this bitmap
+     * @return The copy
+     */
+    public RoaringBitmap copy() {
+        RoaringBitmap result = new RoaringBitmap();
+        for (int i = 0; i < size; i++) {
+            result.appendContainer(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Calls an action for every value, in ascending order
+     * @param action The action to call
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Writes the bitmap in a compact binary form
+     * @param out The output to write to
+     * @throws IOException If writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            Container container = containers[i];
+            out.writeChar(keys[i]);
+            out.writeInt(container.cardinality);
+            if (container.words != null) {
+                out.writeByte(BITMAP_CONTAINER);
+                for (long word : container.words) {
+                    out.writeLong(word);
+                }
+            } else {
+                out.writeByte(ARRAY_CONTAINER);
+                for (int j = 0; j < container.cardinality; j++) {
+                    out.writeChar(container.values[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a bitmap written by {@link #writeTo(DataOutput)}
+     * @param in The input to read from
+     * @return The bitmap
+     * @throws IOException If reading fails or the data is malformed
+     */
+    public static RoaringBitmap readFrom(DataInput in) throws IOException {
+        RoaringBitmap result = new RoaringBitmap();
+        int count = in.readInt();
+        if (count < 0 || count > 65536) {
+            throw new IOException("Malformed bitmap");
+        }
+
+        for (int i = 0; i < count; i++) {
+            char key = in.readChar();
+            int cardinality = in.readInt();
+            byte type = in.readByte();
+            if (type == BITMAP_CONTAINER) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = in.readLong();
+                }
+                result.appendContainer(key, Container.ofWords(words));
+            } else if (type == ARRAY_CONTAINER && cardinality >= 0 && cardinality <= ARRAY_LIMIT) {
+                char[] values = new char[cardinality];
+                for (int j = 0; j < cardinality; j++) {
+                    values[j] = in.readChar();
+                }
+                result.appendContainer(key, Container.ofArray(values, cardinality));
+            } else {
+                throw new IOException("Malformed bitmap");
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private void insertContainer(int index, char high, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = container;
+        size++;
+    }
+
+    /** Appends a container with a key larger than all present, dropping empty ones. */
+    private void appendContainer(char high, Container container) {
+        if (container.cardinality > 0) {
+            insertContainer(size, high, container);
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package vcs.util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.zip.CRC32;
@@ -66,6 +76,175 @@ public class HashUtils {
         }
     }
     
+    /**
+     * Generates a SHA-1 hash of the remaining bytes of a buffer.
+     * Heap, direct and memory-mapped buffers are digested in place.
+     *
+     * @param content Buffer to hash; its position is advanced to its limit
+     * @return Hexadecimal string representation of the hash
+     */
+    public static String generateSHA1(ByteBuffer content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(content);
+
+            return bytesToHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 algorithm not available", e);
+        }
+    }
+
+    /** Upper bound on the buffer a file is streamed through while hashing. */
+    private static final int FILE_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Generates a SHA-1 hash of a file, streaming it through a heap buffer
+     * no larger than the file, so small files cost a small allocation and
+     * files of any size can be hashed.
+     *
+     * @param path Path to the file
+     * @return Hexadecimal string representation of the hash
+     * @throws IOException If file cannot be read
+     */
+    public static String generateSHA1(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(channel.size(), FILE_BUFFER_SIZE)));
+
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+
+            return bytesToHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 algorithm not available", e);
+        }
+    }
+
+    /**
+     * Generates the SHA-1 hash older repositories gave file content: the
+     * bytes decoded with the platform charset, as {@code new String(bytes)}
+     * does, and encoded again as UTF-8. Malformed input decodes to U+FFFD,
+     * so this differs from the hash of the raw bytes for anything that is
+     * not valid text in the platform charset.
+     *
+     * @param content Buffer to hash; its position is advanced to its limit
+     * @return Hexadecimal string representation of the hash
+     */
+    public static String generateTextSHA1(ByteBuffer content) {
+        TextDigest digest = new TextDigest();
+        digest.update(content);
+        return digest.finish();
+    }
+
+    /**
+     * Generates the text hash of {@link #generateTextSHA1(ByteBuffer)} for
+     * a file, streaming it so files of any size can be hashed.
+     *
+     * @param path Path to the file
+     * @return Hexadecimal string representation of the hash
+     * @throws IOException If file cannot be read
+     */
+    public static String generateTextSHA1(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            TextDigest digest = new TextDigest();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(channel.size(), FILE_BUFFER_SIZE)));
+
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+
+            return digest.finish();
+        }
+    }
+
+    /**
+     * Incremental form of {@link #generateTextSHA1(ByteBuffer)}. Content may
+     * be fed in pieces split anywhere, including inside a character.
+     */
+    public static final class TextDigest {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final MessageDigest digest = newSHA1();
+        private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE * 4);
+
+        /**
+         * Adds the remaining bytes of a buffer.
+         *
+         * @param content Buffer to add; its position is advanced to its limit
+         */
+        public void update(ByteBuffer content) {
+            while (content.hasRemaining()) {
+                int count = Math.min(in.remaining(), content.remaining());
+                ByteBuffer piece = content.slice();
+                piece.limit(count);
+                in.put(piece);
+                content.position(content.position() + count);
+
+                // A character cut off at the end stays in the buffer for the next piece
+                in.flip();
+                decode(false);
+                in.compact();
+            }
+        }
+
+        /**
+         * Completes the hash; the digest cannot be used afterwards.
+         *
+         * @return Hexadecimal string representation of the hash
+         */
+        public String finish() {
+            in.flip();
+            decode(true);
+            decoder.flush(chars);
+            encode(true);
+            encoder.flush(out);
+            out.flip();
+            digest.update(out);
+            return bytesToHex(digest.digest());
+        }
+
+        private void decode(boolean endOfInput) {
+            CoderResult result;
+            do {
+                result = decoder.decode(in, chars, endOfInput);
+                encode(false);
+            } while (result.isOverflow());
+        }
+
+        private void encode(boolean endOfInput) {
+            chars.flip();
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, out, endOfInput);
+                out.flip();
+                digest.update(out);
+                out.clear();
+            } while (result.isOverflow());
+            chars.compact();
+        }
+    }
+
+    private static MessageDigest newSHA1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 algorithm not available", e);
+        }
+    }
+
     /**
      * Generates a CRC32 checksum of the file content.
      * Faster but less collision-resistant than cryptographic hashes.
@@ -104,7 +283,7 @@ public class HashUtils {
      * @param bytes Byte array to convert
      * @return Hexadecimal string
      */
-    private static String bytesToHex(byte[] bytes) {
+    public static String bytesToHex(byte[] bytes) {
         StringBuilder hexString = new StringBuilder();
         for (byte b : bytes) {
             String hex = Integer.toHexString(0xff & b);
@@ -0,0 +1,167 @@
+package vcs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Structured fan-out for blocking work inside one operation, such as hashing
+ * or merging many files. Subtasks are forked inside a try-with-resources
+ * block and never outlive it: {@link #join()} waits for all of them and
+ * cancels the rest as soon as one fails, and {@link #close()} cancels
+ * anything still running.
+ *
+ * Subtasks run on virtual threads when the JVM has them (Java 21+), so
+ * blocking file I/O does not tie up platform threads; on older JVMs they
+ * run on a shared pool of daemon threads. A scope can cap how many of its
+ * subtasks run at once, which bounds memory when each one reads a file.
+ * @param <T> Result type of the subtasks
+ */
+public final class TaskScope<T> implements AutoCloseable {
+    private static final ExecutorService VIRTUAL = virtualExecutor();
+    private static final ExecutorService EXECUTOR = VIRTUAL != null ? VIRTUAL : platformExecutor();
+
+    private final Semaphore permits;
+    private final List<Future<T>> forks = new ArrayList<>();
+    /** Subtasks in the order they finished, so join sees a failure at once. */
+    private final BlockingQueue<Future<T>> finished = new LinkedBlockingQueue<>();
+
+    private TaskScope(int maxConcurrency) {
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Opens a scope whose subtasks all run at once.
+     * @param <T> Result type of the subtasks
+     * @return The scope
+     */
+    public static <T> TaskScope<T> open() {
+        return new TaskScope<>(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Opens a scope that runs at most the given number of subtasks at once;
+     * {@link #fork(Callable)} waits for a free slot.
+     * @param maxConcurrency Maximum number of running subtasks
+     * @param <T> Result type of the subtasks
+     * @return The scope
+     */
+    public static <T> TaskScope<T> open(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        return new TaskScope<>(maxConcurrency);
+    }
+
+    /**
+     * Checks whether subtasks run on virtual threads
+     * @return true on JVMs with virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * Runs a task outside any scope, on the same threads subtasks use. For
+     * long-lived background work whose result nobody joins.
+     * @param task The task
+     */
+    public static void execute(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    /**
+     * Starts a subtask.
+     * @param task The work to run
+     * @return The future result of the subtask
+     * @throws InterruptedException If interrupted while waiting for a free slot
+     */
+    public Future<T> fork(Callable<T> task) throws InterruptedException {
+        permits.acquire();
+        FutureTask<T> future = new FutureTask<>(task) {
+            // Runs once however the subtask ends, including a cancel before it started
+            @Override
+            protected void done() {
+                permits.release();
+                finished.add(this);
+            }
+        };
+        try {
+            EXECUTOR.execute(future);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        forks.add(future);
+        return future;
+    }
+
+    /**
+     * Waits for every subtask and returns their results in fork order. If a
+     * subtask fails, the others are cancelled and its failure is thrown.
+     * @return The results
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If a subtask failed
+     */
+    public List<T> join() throws InterruptedException, ExecutionException {
+        List<T> results = new ArrayList<>(forks.size());
+        try {
+            // Checks each subtask as it finishes, so a failure is not stuck
+            // behind an earlier fork that is still running
+            for (int i = 0; i < forks.size(); i++) {
+                finished.take().get();
+            }
+            for (Future<T> fork : forks) {
+                results.add(fork.get());
+            }
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            cancelAll();
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Cancels any subtask that is still running.
+     */
+    @Override
+    public void close() {
+        cancelAll();
+    }
+
+    private void cancelAll() {
+        for (Future<T> fork : forks) {
+            fork.cancel(true);
+        }
+    }
+
+    /** Looks up Executors.newVirtualThreadPerTaskExecutor, which exists from Java 21. */
+    private static ExecutorService virtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService platformExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mini-vcs-task-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,172 @@
+package com.tejinder.mini_vcs_api;
+
+import com.tejinder.mini_vcs_api.vcs.core.Repository;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load-test harness comparing request handling on platform threads with
+ * virtual threads. Not a unit test; run it by hand, e.g.
+ *
+ *   java -cp target/classes:target/test-classes:$(deps) \
+ *       com.tejinder.mini_vcs_api.ApiLoadHarness 64 20000 /api/branches
+ *
+ * Arguments are the number of concurrent clients, the total number of
+ * requests and the endpoint. For each mode the harness creates a scratch
+ * repository, starts the API on a random port and reports throughput and
+ * latency percentiles. Virtual threads need Java 21+; on older JVMs both
+ * runs use platform threads.
+ */
+public class ApiLoadHarness {
+
+    private static final int COMMITS = 200;
+    private static final int BRANCHES = 20;
+    private static final int WARMUP_REQUESTS = 500;
+
+    public static void main(String[] args) throws Exception {
+
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        String endpoint = args.length > 2 ? args[2] : "/api/branches";
+
+        // Devtools would restart the application by re-running this main method
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        Path repository = createRepository();
+
+        System.out.println("Java " + Runtime.version() + ", " + clients + " clients, "
+                + requests + " requests to " + endpoint);
+
+        for (boolean virtual : new boolean[] {false, true}) {
+            System.out.println(run(repository, virtual, clients, requests, endpoint));
+        }
+    }
+
+    private static String run(Path repository, boolean virtual, int clients, int requests, String endpoint)
+            throws Exception {
+
+        ConfigurableApplicationContext context = SpringApplication.run(
+                MiniVcsApiApplication.class,
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--mini-vcs.repos.default=" + repository
+        );
+
+        try {
+            URI uri = URI.create("http://localhost:"
+                    + context.getEnvironment().getProperty("local.server.port") + endpoint);
+
+            fire(uri, clients, WARMUP_REQUESTS);
+
+            long start = System.nanoTime();
+            long[] latencies = fire(uri, clients, requests);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            return String.format(
+                    "%-8s %8.0f req/s   p50 %6.2f ms   p99 %6.2f ms   max %7.2f ms",
+                    virtual ? "virtual" : "platform",
+                    requests / seconds,
+                    percentile(latencies, 0.50) / 1e6,
+                    percentile(latencies, 0.99) / 1e6,
+                    latencies[latencies.length - 1] / 1e6
+            );
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Sends requests from a fixed number of clients, each issuing its next
+     * request as soon as the previous one completes.
+     * @return The latency of every request in nanoseconds
+     */
+    private static long[] fire(URI uri, int clients, int requests) throws Exception {
+
+        HttpClient http = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> workers = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                workers.add(pool.submit(() -> {
+                    int n;
+                    while ((n = next.getAndIncrement()) < requests) {
+                        long start = System.nanoTime();
+                        HttpResponse<Void> response
+                                = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[n] = System.nanoTime() - start;
+                        if (response.statusCode() != 200) {
+                            throw new IOException("HTTP " + response.statusCode() + " from " + uri);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Builds a scratch repository with a linear history and branches spread
+     * along it, so branch and history endpoints have real work to do.
+     */
+    private static Path createRepository() throws IOException {
+
+        Path root = Files.createTempDirectory("mini-vcs-load");
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Repository repo = Repository.open(root.toString());
+            repo.init(root.toString());
+
+            for (int i = 0; i < COMMITS; i++) {
+                Files.writeString(root.resolve("file" + (i % 10) + ".txt"), "revision " + i + "\n");
+                repo.add("file" + (i % 10) + ".txt");
+                repo.commit("Commit " + i);
+
+                if (i % (COMMITS / BRANCHES) == 0) {
+                    repo.createBranch("branch-" + i);
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+        return root;
+    }
+}
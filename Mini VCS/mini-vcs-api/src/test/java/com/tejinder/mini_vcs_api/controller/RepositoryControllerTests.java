@@ -0,0 +1,233 @@
+package com.tejinder.mini_vcs_api.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.tejinder.mini_vcs_api.service.RepositoryEventBus;
+import com.tejinder.mini_vcs_api.service.RepositoryRegistry;
+import com.tejinder.mini_vcs_api.service.RepositoryService;
+import com.tejinder.mini_vcs_api.vcs.core.Repository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+class RepositoryControllerTests {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    Path root;
+
+    private RepositoryRegistry registry;
+    private RepositoryEventBus eventBus;
+    private Repository repository;
+    private MockMvc mvc;
+
+    private String blob;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        registry = new RepositoryRegistry(new MockEnvironment()
+                .withProperty("mini-vcs.repos.main", root.toString())
+                .withProperty("mini-vcs.default-repo", "main"));
+        eventBus = new RepositoryEventBus(registry);
+        mvc = MockMvcBuilders.standaloneSetup(new RepositoryController(
+                new RepositoryService(registry, JsonMapper.builder().build()), registry, eventBus)).build();
+
+        repository = registry.get("main");
+        repository.init(root.toString());
+        Files.writeString(root.resolve("data.txt"), CONTENT);
+        repository.add("data.txt");
+        repository.commit("add data");
+        blob = repository.getHeadCommit().getFileVersionId("data.txt");
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventBus.close();
+        registry.close();
+    }
+
+    @Test
+    void servesTheWholeBlobWithItsHashAsTheTag() throws Exception {
+        MvcResult result = stream(get("/api/blobs/" + blob));
+
+        assertEquals(200, result.getResponse().getStatus());
+        assertEquals(CONTENT, result.getResponse().getContentAsString());
+        assertEquals("\"" + blob + "\"", result.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", result.getResponse().getHeader(HttpHeaders.ACCEPT_RANGES));
+
+        mvc.perform(get("/api/blobs/" + blob).header(HttpHeaders.IF_NONE_MATCH, "\"" + blob + "\""))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/api/blobs/" + "0".repeat(40))).andExpect(status().isNotFound());
+        mvc.perform(get("/api/blobs/not-a-hash")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void servesASingleRange() throws Exception {
+        MvcResult middle = stream(get("/api/blobs/" + blob).header(HttpHeaders.RANGE, "bytes=5-9"));
+        assertEquals(206, middle.getResponse().getStatus());
+        assertEquals("56789", middle.getResponse().getContentAsString());
+        assertEquals("bytes 5-9/20", middle.getResponse().getHeader(HttpHeaders.CONTENT_RANGE));
+
+        MvcResult suffix = stream(get("/api/blobs/" + blob).header(HttpHeaders.RANGE, "bytes=-3"));
+        assertEquals("hij", suffix.getResponse().getContentAsString());
+        assertEquals("bytes 17-19/20", suffix.getResponse().getHeader(HttpHeaders.CONTENT_RANGE));
+
+        // An end past the object is cut to its size
+        MvcResult open = stream(get("/api/blobs/" + blob).header(HttpHeaders.RANGE, "bytes=15-100"));
+        assertEquals("fghij", open.getResponse().getContentAsString());
+
+        // Several ranges get the whole object
+        MvcResult multiple = stream(get("/api/blobs/" + blob).header(HttpHeaders.RANGE, "bytes=0-1,5-6"));
+        assertEquals(200, multiple.getResponse().getStatus());
+        assertEquals(CONTENT, multiple.getResponse().getContentAsString());
+    }
+
+    @Test
+    void rangeStartingPastTheEndIsNotSatisfiable() throws Exception {
+        mvc.perform(get("/api/blobs/" + blob).header(HttpHeaders.RANGE, "bytes=20-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */20"));
+    }
+
+    @Test
+    void ifRangeAppliesTheRangeOnlyForTheSameObject() throws Exception {
+        MvcResult same = stream(get("/api/blobs/" + blob)
+                .header(HttpHeaders.RANGE, "bytes=0-3")
+                .header(HttpHeaders.IF_RANGE, "\"" + blob + "\""));
+        assertEquals(206, same.getResponse().getStatus());
+        assertEquals("0123", same.getResponse().getContentAsString());
+
+        MvcResult stale = stream(get("/api/blobs/" + blob)
+                .header(HttpHeaders.RANGE, "bytes=0-3")
+                .header(HttpHeaders.IF_RANGE, "\"" + "f".repeat(40) + "\""));
+        assertEquals(200, stale.getResponse().getStatus());
+        assertEquals(CONTENT, stale.getResponse().getContentAsString());
+    }
+
+    @Test
+    void statusPollIsNotModifiedUntilTheRepositoryChanges() throws Exception {
+        MvcResult first = mvc.perform(get("/api/status")).andExpect(status().isOk()).andReturn();
+        String tag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(tag);
+
+        mvc.perform(get("/api/status").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isNotModified());
+
+        Files.writeString(root.resolve("more.txt"), "more");
+        repository.add("more.txt");
+
+        MvcResult changed = mvc.perform(get("/api/status").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNotEquals(tag, changed.getResponse().getHeader(HttpHeaders.ETAG));
+        assertTrue(changed.getResponse().getContentAsString().contains("more.txt"));
+    }
+
+    @Test
+    void diffStreamsAFileLineFollowedByItsHunks() throws Exception {
+        commitChange();
+
+        MvcResult result = stream(get("/api/diff").param("to", "HEAD"));
+
+        assertEquals("application/x-ndjson", result.getResponse().getContentType());
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+
+        JsonNode file = JSON.readTree(lines[0]);
+        assertEquals("file", file.get("type").asString());
+        assertEquals("data.txt", file.get("path").asString());
+        assertEquals("modified", file.get("status").asString());
+        assertEquals(blob, file.get("oldHash").asString());
+
+        JsonNode hunk = JSON.readTree(lines[1]);
+        assertEquals("hunk", hunk.get("type").asString());
+        assertEquals("data.txt", hunk.get("path").asString());
+        assertTrue(hunk.get("lines").toString().contains("+" + CONTENT.toUpperCase()));
+    }
+
+    @Test
+    void diffAsTextIsAUnifiedDiff() throws Exception {
+        commitChange();
+
+        MvcResult result = stream(get("/api/diff").param("to", "HEAD").param("format", "text"));
+
+        assertTrue(result.getResponse().getContentType().startsWith("text/plain"));
+        String diff = result.getResponse().getContentAsString();
+        assertTrue(diff.startsWith("diff --mini-vcs a/data.txt b/data.txt\n--- a/data.txt\n+++ b/data.txt\n@@ "),
+                diff);
+        assertTrue(diff.contains("\n-" + CONTENT + "\n"), diff);
+        assertTrue(diff.contains("\n+" + CONTENT.toUpperCase() + "\n"), diff);
+
+        mvc.perform(get("/api/diff").param("format", "xml")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/diff").param("to", "no-such-branch")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void diffAcceptsAbbreviatedCommitIds() throws Exception {
+        String first = repository.getHeadCommit().getId();
+        commitChange();
+
+        MvcResult result = stream(get("/api/diff")
+                .param("from", first.substring(0, 7))
+                .param("to", repository.getHeadCommit().getId().substring(0, 10)));
+
+        assertEquals(200, result.getResponse().getStatus());
+        assertTrue(result.getResponse().getContentAsString().contains("\"path\":\"data.txt\""));
+        mvc.perform(get("/api/diff").param("to", "0000000")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void eventsAreStreamedToSubscribers() throws Exception {
+        MvcResult events = mvc.perform(get("/api/events")).andExpect(request().asyncStarted()).andReturn();
+
+        commitChange();
+        String head = repository.getHeadCommit().getId();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        String content = events.getResponse().getContentAsString();
+        while (!content.contains("event:ref-moved") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            content = events.getResponse().getContentAsString();
+        }
+        assertTrue(content.contains("event:commit-created"), content);
+        assertTrue(content.contains("event:ref-moved"), content);
+        assertTrue(content.contains("\"newId\":\"" + head + "\""), content);
+    }
+
+    private void commitChange() throws Exception {
+        Files.writeString(root.resolve("data.txt"), CONTENT.toUpperCase());
+        repository.add("data.txt");
+        repository.commit("shout");
+    }
+
+    /** Performs a request whose body is streamed and waits for the whole body. */
+    private MvcResult stream(RequestBuilder builder) throws Exception {
+        MvcResult started = mvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(started)).andReturn();
+    }
+}
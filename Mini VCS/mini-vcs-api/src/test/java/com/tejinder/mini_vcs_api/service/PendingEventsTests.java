@@ -0,0 +1,79 @@
+package com.tejinder.mini_vcs_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.tejinder.mini_vcs_api.vcs.core.RepositoryEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PendingEventsTests {
+
+    private static final String FIRST = "1111111111111111111111111111111111111111";
+    private static final String SECOND = "2222222222222222222222222222222222222222";
+    private static final String THIRD = "3333333333333333333333333333333333333333";
+
+    @Test
+    void coalescesEventsWithTheSameKeyInArrivalOrder() {
+        PendingEvents pending = new PendingEvents(8);
+        pending.add(RepositoryEvent.refMoved("main", FIRST, SECOND));
+        pending.add(RepositoryEvent.commitCreated("main", SECOND));
+        pending.add(RepositoryEvent.worktreeChanged());
+        pending.add(RepositoryEvent.refMoved("main", SECOND, THIRD));
+        pending.add(RepositoryEvent.commitCreated("main", THIRD));
+        pending.add(RepositoryEvent.worktreeChanged());
+        pending.add(RepositoryEvent.refMoved("feature", null, FIRST));
+
+        assertEquals(List.of(
+                "REF_MOVED main " + FIRST + " -> " + THIRD,
+                "COMMIT_CREATED main null -> " + SECOND,
+                "WORKTREE_CHANGED",
+                "COMMIT_CREATED main null -> " + THIRD,
+                "REF_MOVED feature null -> " + FIRST
+        ), describe(pending.take()));
+        assertTrue(pending.isEmpty());
+        assertTrue(pending.take().isEmpty());
+    }
+
+    @Test
+    void foldingIntoAWaitingEventTakesNoRoom() {
+        PendingEvents pending = new PendingEvents(2);
+        pending.add(RepositoryEvent.refMoved("main", FIRST, SECOND));
+        pending.add(RepositoryEvent.indexChanged());
+        pending.add(RepositoryEvent.refMoved("main", SECOND, THIRD));
+        pending.add(RepositoryEvent.indexChanged());
+
+        assertEquals(List.of("REF_MOVED main " + FIRST + " -> " + THIRD, "INDEX_CHANGED"),
+                describe(pending.take()));
+    }
+
+    @Test
+    void overflowIsReplacedByOneResync() {
+        PendingEvents pending = new PendingEvents(4);
+        for (int i = 0; i < 5; i++) {
+            pending.add(RepositoryEvent.refMoved("branch-" + i, null, FIRST));
+        }
+        // Ignored until the resync has been taken
+        pending.add(RepositoryEvent.indexChanged());
+
+        assertFalse(pending.isEmpty());
+        assertEquals(List.of("RESYNC"), describe(pending.take()));
+
+        // Afterwards events are buffered again
+        assertTrue(pending.isEmpty());
+        pending.add(RepositoryEvent.indexChanged());
+        assertEquals(List.of("INDEX_CHANGED"), describe(pending.take()));
+    }
+
+    private static List<String> describe(List<RepositoryEvent> events) {
+        List<String> result = new ArrayList<>();
+        for (RepositoryEvent event : events) {
+            result.add(event.toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package com.tejinder.mini_vcs_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.tejinder.mini_vcs_api.vcs.core.Repository;
+
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+class RepositoryRegistryTests {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void evictsTheLeastRecentlyUsedRepository() {
+        RepositoryRegistry registry = registry(2);
+
+        registry.get("a");
+        registry.get("b");
+        registry.get("a");
+        registry.get("c");
+
+        assertTrue(registry.isOpen("a"));
+        assertFalse(registry.isOpen("b"));
+        assertTrue(registry.isOpen("c"));
+        registry.close();
+    }
+
+    @Test
+    void handsBackAnEvictedRepositoryThatIsStillInUse() {
+        RepositoryRegistry registry = registry(1);
+
+        // A request is still working with "a" when loading "b" evicts it
+        Repository inUse = registry.get("a");
+        registry.get("b");
+        assertFalse(registry.isOpen("a"));
+
+        assertSame(inUse, registry.get("a"));
+        assertTrue(registry.isOpen("a"));
+        assertFalse(registry.isOpen("b"));
+        registry.close();
+    }
+
+    @Test
+    void resolvesTheDefaultAndRejectsUnknownIds() {
+        RepositoryRegistry registry = registry(2);
+
+        assertEquals("a", registry.resolveId(null));
+        assertEquals(temp.resolve("a").toString(), registry.get(null).getRootPath());
+        assertThrows(NoSuchElementException.class, () -> registry.get("missing"));
+        registry.close();
+    }
+
+    private RepositoryRegistry registry(int maxOpen) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("mini-vcs.repos.a", temp.resolve("a").toString())
+                .withProperty("mini-vcs.repos.b", temp.resolve("b").toString())
+                .withProperty("mini-vcs.repos.c", temp.resolve("c").toString())
+                .withProperty("mini-vcs.default-repo", "a")
+                .withProperty("mini-vcs.registry.max-open", String.valueOf(maxOpen));
+        return new RepositoryRegistry(environment);
+    }
+}
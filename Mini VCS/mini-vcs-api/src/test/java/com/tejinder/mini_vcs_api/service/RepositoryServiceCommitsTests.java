@@ -0,0 +1,144 @@
+package com.tejinder.mini_vcs_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.tejinder.mini_vcs_api.dto.CommitDTO;
+import com.tejinder.mini_vcs_api.dto.CommitPageDTO;
+import com.tejinder.mini_vcs_api.vcs.core.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import tools.jackson.databind.json.JsonMapper;
+
+class RepositoryServiceCommitsTests {
+
+    @TempDir
+    Path root;
+
+    private RepositoryRegistry registry;
+    private RepositoryService service;
+    private Repository repository;
+
+    // Ids and times of the commits below, oldest first
+    private final List<String> ids = new ArrayList<>();
+    private final List<Long> times = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException, InterruptedException {
+        registry = new RepositoryRegistry(new MockEnvironment()
+                .withProperty("mini-vcs.repos.main", root.toString())
+                .withProperty("mini-vcs.default-repo", "main"));
+        service = new RepositoryService(registry, JsonMapper.builder().build());
+        repository = registry.get("main");
+        repository.init(root.toString());
+
+        commit("add readme", "README.md", "readme");
+        commit("add parser", "src/parser/Parser.java", "class Parser {}");
+        commit("fix readme typo", "README.md", "read me");
+        commit("add lexer", "src/lexer/Lexer.java", "class Lexer {}");
+        commit("tweak parser", "src/parser/Parser.java", "class Parser { }");
+        commit("add notes", "srcnotes.txt", "not under src/");
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    void cursorPagesCoverTheHistoryOnce() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CommitPageDTO page = page(cursor, 0, 4, null, null, null, null);
+            page.getCommits().forEach(commit -> seen.add(commit.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(2, pages);
+        assertEquals(reversed(ids), seen);
+        assertTrue(page(null, 0, 1, null, null, null, null).getCommits().get(0).isHead());
+        assertEquals(ids(2, 1, 0), idsOf(page(null, 3, 10, null, null, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> page("0".repeat(40), 0, 4, null, null, null, null));
+    }
+
+    @Test
+    void filtersByMessage() {
+        assertEquals(ids(2, 0), idsOf(page(null, 0, 10, "README", null, null, null)));
+        assertEquals(List.of(), idsOf(page(null, 0, 10, "nothing like this", null, null, null)));
+    }
+
+    @Test
+    void filtersByTime() {
+        assertEquals(ids(4, 3, 2), idsOf(page(null, 0, 10, null, times.get(2), times.get(4), null)));
+
+        // Stops at the first commit older than since, without a cursor
+        CommitPageDTO recent = page(null, 0, 10, null, times.get(5), null, null);
+        assertEquals(ids(5), idsOf(recent));
+        assertNull(recent.getNextCursor());
+    }
+
+    @Test
+    void filtersByFileOrDirectory() {
+        assertEquals(ids(2, 0), idsOf(page(null, 0, 10, null, null, null, "README.md")));
+        assertEquals(ids(4, 1), idsOf(page(null, 0, 10, null, null, null, "src/parser/Parser.java")));
+        // A directory matches everything below it, but not a sibling sharing its prefix
+        assertEquals(ids(4, 3, 1), idsOf(page(null, 0, 10, null, null, null, "src")));
+        assertEquals(ids(4, 3, 1), idsOf(page(null, 0, 10, null, null, null, "src/")));
+        assertEquals(ids(3), idsOf(page(null, 0, 10, null, null, null, "src/lexer")));
+    }
+
+    private CommitPageDTO page(String after, int offset, int limit, String query, Long since, Long until,
+            String path) {
+        return service.getCommits("main", after, offset, limit, query, since, until, path);
+    }
+
+    private void commit(String message, String path, String content) throws IOException, InterruptedException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        repository.add(path);
+        repository.commit(message);
+        ids.add(repository.getHeadCommit().getId());
+        times.add(repository.getHeadCommit().getTimestamp().getTime());
+        // Distinct times, so the time filters have edges to land on
+        Thread.sleep(5);
+    }
+
+    private List<String> ids(int... indexes) {
+        List<String> result = new ArrayList<>();
+        for (int index : indexes) {
+            result.add(ids.get(index));
+        }
+        return result;
+    }
+
+    private static List<String> idsOf(CommitPageDTO page) {
+        List<String> result = new ArrayList<>();
+        for (CommitDTO commit : page.getCommits()) {
+            result.add(commit.getId());
+        }
+        return result;
+    }
+
+    private static List<String> reversed(List<String> list) {
+        List<String> copy = new ArrayList<>(list);
+        Collections.reverse(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,206 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommitGraphTests {
+
+    // More than one compaction threshold, so the graph folds its tail at least once
+    private static final int HISTORY_LENGTH = 1200;
+
+    @TempDir
+    Path vcsDir;
+
+    @Test
+    void recordsParentsGenerationsAndTimestamps() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        Commit root = commit("root", 1000);
+        Commit left = commit("left", 2000, root);
+        Commit right = commit("right", 3000, root);
+        Commit merge = commit("merge", 4000, left, right);
+        graph.appendAll(List.of(root, left, right, merge));
+
+        assertEquals(4, graph.size());
+        assertEquals(List.of(), graph.getParents(root.getId()));
+        assertEquals(List.of(left.getId(), right.getId()), graph.getParents(merge.getId()));
+        assertEquals(1, graph.getGeneration(root.getId()));
+        assertEquals(2, graph.getGeneration(right.getId()));
+        assertEquals(3, graph.getGeneration(merge.getId()));
+        assertEquals(4000, graph.getTimestamp(merge.getId()));
+        assertFalse(graph.contains(commit("unknown", 5000).getId()));
+    }
+
+    @Test
+    void tailSurvivesReopenAndIgnoresATornRecord() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        List<Commit> history = linearHistory(10);
+        graph.appendAll(history);
+
+        // A crash in the middle of an append leaves part of a record behind
+        Files.write(vcsDir.resolve("commit-graph.tail"), new byte[CommitGraph.RECORD_SIZE / 2],
+                StandardOpenOption.APPEND);
+
+        CommitGraph reopened = CommitGraph.open(vcsDir);
+        assertEquals(10, reopened.size());
+        for (Commit commit : history) {
+            assertTrue(reopened.contains(commit.getId()));
+            assertEquals(graph.getGeneration(commit.getId()), reopened.getGeneration(commit.getId()));
+        }
+    }
+
+    @Test
+    void compactionSortsTheBaseAndKeepsEveryCommitReachableThroughTheFanout() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        List<Commit> history = linearHistory(HISTORY_LENGTH);
+        for (Commit commit : history) {
+            graph.append(commit);
+        }
+        graph.compact();
+
+        assertTrue(graph.getEpoch() > 0);
+        assertFalse(Files.exists(vcsDir.resolve("commit-graph.tail")));
+
+        CommitGraph reopened = CommitGraph.open(vcsDir);
+        assertEquals(HISTORY_LENGTH, reopened.size());
+
+        for (int position = 1; position < reopened.size(); position++) {
+            assertTrue(reopened.idAt(position - 1).compareTo(reopened.idAt(position)) < 0,
+                    "base not sorted at " + position);
+        }
+
+        for (int i = 0; i < history.size(); i++) {
+            String id = history.get(i).getId();
+            int position = reopened.position(id);
+            assertEquals(id, reopened.idAt(position));
+            assertEquals(i + 1, reopened.getGeneration(id));
+            assertEquals(List.of(id), reopened.findByPrefix(id.substring(0, 12), 2));
+            if (i > 0) {
+                assertEquals(List.of(history.get(i - 1).getId()), reopened.getParents(id));
+            }
+        }
+    }
+
+    @Test
+    void findByPrefixReportsEveryMatchUpToTheLimit() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        List<Commit> history = linearHistory(HISTORY_LENGTH);
+        graph.appendAll(history);
+        graph.compact();
+
+        String prefix = history.get(0).getId().substring(0, 1);
+        long expected = history.stream().filter(commit -> commit.getId().startsWith(prefix)).count();
+
+        assertEquals(expected, graph.findByPrefix(prefix, Integer.MAX_VALUE).size());
+        assertEquals(2, graph.findByPrefix(prefix, 2).size());
+        assertEquals(List.of(), graph.findByPrefix("not-hex", 2));
+    }
+
+    @Test
+    void findByPrefixSearchesTheBaseAndTheTail() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        List<Commit> history = linearHistory(HISTORY_LENGTH + 100);
+        graph.appendAll(history.subList(0, HISTORY_LENGTH));
+        graph.compact();
+        // Too few to compact again, so these stay in the tail
+        graph.appendAll(history.subList(HISTORY_LENGTH, history.size()));
+
+        Random random = new Random(3);
+        for (int trial = 0; trial < 200; trial++) {
+            String id = history.get(random.nextInt(history.size())).getId();
+            String prefix = id.substring(0, 1 + random.nextInt(8));
+            Set<String> expected = new HashSet<>();
+            for (Commit commit : history) {
+                if (commit.getId().startsWith(prefix)) {
+                    expected.add(commit.getId());
+                }
+            }
+
+            List<String> found = graph.findByPrefix(prefix, Integer.MAX_VALUE);
+            assertEquals(expected, new HashSet<>(found), prefix);
+            assertEquals(found.size(), expected.size(), "duplicates for " + prefix);
+            assertEquals(Math.min(2, expected.size()), graph.findByPrefix(prefix, 2).size());
+        }
+        String last = history.get(history.size() - 1).getId();
+        assertEquals(List.of(last), graph.findByPrefix(last, 2));
+    }
+
+    @Test
+    void unreplaceableBaseKeepsTheGraphWholeAndRetriesLater() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        List<Commit> history = linearHistory(HISTORY_LENGTH);
+        // Stands in for a base file that cannot be replaced, as when Windows has it mapped
+        Path graphFile = vcsDir.resolve("commit-graph");
+        Files.createDirectories(graphFile.resolve("blocked"));
+
+        graph.appendAll(history.subList(0, 600));
+
+        assertEquals(1, graph.getEpoch());
+        assertEquals(600, graph.size());
+        assertTrue(Files.exists(vcsDir.resolve("commit-graph.tail")));
+        for (Commit commit : history.subList(0, 600)) {
+            assertTrue(graph.contains(commit.getId()));
+        }
+
+        // No retry on every append once it failed
+        graph.append(history.get(600));
+        assertEquals(1, graph.getEpoch());
+
+        Files.delete(graphFile.resolve("blocked"));
+        Files.delete(graphFile);
+        CommitGraph reopened = CommitGraph.open(vcsDir);
+        assertEquals(601, reopened.size());
+
+        for (Commit commit : history.subList(601, HISTORY_LENGTH)) {
+            graph.append(commit);
+        }
+        assertEquals(2, graph.getEpoch());
+        assertEquals(HISTORY_LENGTH, CommitGraph.open(vcsDir).size());
+    }
+
+    @Test
+    void commitsTakeAtMostTwoParents() {
+        Commit root = commit("root", 1000);
+        Commit left = commit("left", 2000, root);
+        Commit right = commit("right", 3000, root);
+
+        assertThrows(IllegalArgumentException.class, () -> commit("octopus", 4000, root, left, right));
+    }
+
+    static List<Commit> linearHistory(int length) {
+        List<Commit> history = new ArrayList<>(length);
+        Commit parent = null;
+        for (int i = 0; i < length; i++) {
+            parent = parent == null ? commit("c" + i, 1000L * i) : commit("c" + i, 1000L * i, parent);
+            history.add(parent);
+        }
+        return history;
+    }
+
+    static Commit commit(String message, long time, Commit... parents) {
+        Commit commit = new Commit(message, null);
+        List<String> ids = new ArrayList<>();
+        for (Commit parent : parents) {
+            ids.add(parent.getId());
+        }
+        commit.setParents(ids);
+        commit.setTimestamp(new Date(time));
+        commit.generateId();
+        return commit;
+    }
+}
@@ -0,0 +1,191 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static com.tejinder.mini_vcs_api.vcs.core.CommitGraphTests.commit;
+import static com.tejinder.mini_vcs_api.vcs.core.CommitGraphTests.linearHistory;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommitHistoryTests {
+
+    // More commits than the history keeps in memory
+    private static final int HISTORY_LENGTH = 3000;
+
+    @TempDir
+    Path vcsDir;
+
+    private final Map<String, Commit> store = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private CommitGraph graph;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        graph = CommitGraph.open(vcsDir);
+    }
+
+    @Test
+    void walkLoadsEachCommitOnlyWhenItIsReached() throws IOException {
+        List<Commit> history = write(linearHistory(HISTORY_LENGTH));
+        CommitHistory commits = open();
+        String tip = history.get(HISTORY_LENGTH - 1).getId();
+
+        Iterator<Commit> walk = commits.iterate(tip);
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(history.get(HISTORY_LENGTH - i).getId(), walk.next().getId());
+        }
+        assertEquals(3, loads.get());
+
+        int walked = 3;
+        while (walk.hasNext()) {
+            walk.next();
+            walked++;
+        }
+        assertEquals(HISTORY_LENGTH, walked);
+        assertTrue(commits.getCachedCommitCount() < HISTORY_LENGTH,
+                "every commit stayed in memory: " + commits.getCachedCommitCount());
+        assertFalse(commits.iterate(null).hasNext());
+    }
+
+    @Test
+    void pageLoadsOnlyTheCommitsOnIt() throws IOException {
+        List<Commit> history = write(linearHistory(HISTORY_LENGTH));
+        CommitHistory commits = open();
+        commits.restoreHead(history.get(HISTORY_LENGTH - 1).getId());
+        loads.set(0);
+
+        List<Commit> page = commits.getCommitHistory(null, 2000, 10);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = HISTORY_LENGTH - 2001; i > HISTORY_LENGTH - 2011; i--) {
+            expected.add(history.get(i).getId());
+        }
+        assertEquals(expected, ids(page));
+        assertEquals(10, loads.get());
+
+        // The last page stops at the root
+        assertEquals(List.of(history.get(1).getId(), history.get(0).getId()),
+                ids(commits.getCommitHistory(null, HISTORY_LENGTH - 2, 10)));
+        assertTrue(commits.getCommitHistory(null, HISTORY_LENGTH, 10).isEmpty());
+        assertEquals(HISTORY_LENGTH, commits.size());
+    }
+
+    @Test
+    void aheadBehindCountsTheCommitsOnlyOnEachSide() throws IOException {
+        Commit root = commit("root", 1000);
+        Commit m1 = commit("m1", 2000, root);
+        Commit f1 = commit("f1", 3000, m1);
+        Commit m2 = commit("m2", 4000, m1);
+        Commit f2 = commit("f2", 5000, f1);
+        Commit merge = commit("merge", 6000, m2, f1);
+        write(List.of(root, m1, f1, m2, f2, merge));
+        CommitHistory commits = open();
+        commits.setBranchHead("master", merge.getId());
+        commits.setBranchHead("feature", f2.getId());
+
+        assertArrayEquals(new int[] {1, 2}, commits.getAheadBehind(f2.getId(), merge.getId()));
+        assertArrayEquals(new int[] {2, 1}, commits.getAheadBehind(merge.getId(), f2.getId()));
+        assertArrayEquals(new int[] {0, 3}, commits.getAheadBehind(m1.getId(), merge.getId()));
+        assertArrayEquals(new int[] {0, 0}, commits.getAheadBehind(f2.getId(), f2.getId()));
+        assertArrayEquals(new int[] {0, 0}, commits.getAheadBehind(null, f2.getId()));
+        assertEquals(5, commits.countCommits(merge.getId()));
+    }
+
+    @Test
+    void aheadBehindMatchesABruteForceCountOnARandomHistory() throws IOException {
+        Random random = new Random(11);
+        List<Commit> history = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            if (i == 0) {
+                history.add(commit("c0", 0));
+            } else if (i > 2 && random.nextInt(4) == 0) {
+                Commit first = history.get(random.nextInt(i));
+                Commit second = history.get(random.nextInt(i));
+                history.add(first == second
+                        ? commit("c" + i, 1000L * i, first)
+                        : commit("c" + i, 1000L * i, first, second));
+            } else {
+                Commit parent = history.get(i - 1 - random.nextInt(Math.min(i, 20)));
+                history.add(commit("c" + i, 1000L * i, parent));
+            }
+        }
+        write(history);
+        CommitHistory commits = open();
+        for (int i = 0; i < 5; i++) {
+            commits.setBranchHead("branch-" + i, history.get(399 - 13 * i).getId());
+        }
+
+        for (int trial = 0; trial < 60; trial++) {
+            String head = history.get(random.nextInt(history.size())).getId();
+            String upstream = history.get(random.nextInt(history.size())).getId();
+            Set<String> headSide = ancestors(head);
+            Set<String> upstreamSide = ancestors(upstream);
+            int ahead = 0;
+            for (String id : headSide) {
+                ahead += upstreamSide.contains(id) ? 0 : 1;
+            }
+            int behind = 0;
+            for (String id : upstreamSide) {
+                behind += headSide.contains(id) ? 0 : 1;
+            }
+
+            // Asked twice, so the second answer comes from the cache
+            assertArrayEquals(new int[] {ahead, behind}, commits.getAheadBehind(head, upstream));
+            assertArrayEquals(new int[] {ahead, behind}, commits.getAheadBehind(head, upstream));
+        }
+    }
+
+    private Set<String> ancestors(String commitId) {
+        Set<String> seen = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(List.of(commitId));
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            if (seen.add(id)) {
+                pending.addAll(store.get(id).getParents());
+            }
+        }
+        return seen;
+    }
+
+    /** Stores commits where the loader finds them and adds them to the graph. */
+    private List<Commit> write(List<Commit> commits) throws IOException {
+        for (Commit commit : commits) {
+            store.put(commit.getId(), commit);
+        }
+        graph.appendAll(commits);
+        return commits;
+    }
+
+    private CommitHistory open() {
+        return new CommitHistory(graph, id -> {
+            loads.incrementAndGet();
+            return store.get(id);
+        });
+    }
+
+    private static List<String> ids(List<Commit> commits) {
+        List<String> ids = new ArrayList<>();
+        for (Commit commit : commits) {
+            ids.add(commit.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,135 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContentChunkerTests {
+
+    private static final int CONTENT_SIZE = 24 * 1024 * 1024;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void smallContentIsOneChunk() {
+        ByteBuffer buffer = ByteBuffer.wrap(randomBytes(ContentChunker.MIN_CHUNK, 1));
+
+        assertEquals(ContentChunker.MIN_CHUNK, ContentChunker.nextChunk(buffer, 0, buffer.capacity()));
+    }
+
+    @Test
+    void chunksStayWithinBounds() {
+        byte[] content = randomBytes(CONTENT_SIZE, 2);
+        List<Integer> ends = boundaries(content);
+
+        int start = 0;
+        for (int i = 0; i < ends.size(); i++) {
+            int length = ends.get(i) - start;
+            assertTrue(length <= ContentChunker.MAX_CHUNK, "chunk " + i + " too long: " + length);
+            if (i < ends.size() - 1) {
+                assertTrue(length > ContentChunker.MIN_CHUNK, "chunk " + i + " too short: " + length);
+            }
+            start = ends.get(i);
+        }
+        assertEquals(content.length, start);
+    }
+
+    @Test
+    void oneByteEditOnlyMovesNearbyBoundaries() {
+        byte[] content = randomBytes(CONTENT_SIZE, 3);
+        List<Integer> before = boundaries(content);
+
+        int edit = content.length / 2;
+        content[edit] ^= 0x5a;
+        List<Integer> after = boundaries(content);
+
+        // Boundaries before the edited chunk are untouched, and the chunker
+        // falls back into step within a chunk or two after it
+        List<Integer> unchanged = new ArrayList<>(before);
+        unchanged.retainAll(after);
+        assertTrue(before.size() - unchanged.size() <= 2,
+                "boundaries lost: " + (before.size() - unchanged.size()) + " of " + before.size());
+        for (int end : before) {
+            if (end <= edit) {
+                assertTrue(after.contains(end), "boundary before the edit moved: " + end);
+            }
+        }
+    }
+
+    @Test
+    void chunkedFileRoundTripsAndDeduplicatesAfterOneByteEdit() throws IOException {
+        ObjectStore store = new ObjectStore(temp.resolve("objects"));
+        byte[] content = randomBytes(CONTENT_SIZE, 4);
+        Path file = temp.resolve("large.bin");
+        Files.write(file, content);
+
+        FileVersion first = store.writeChunked(file);
+
+        assertTrue(store.isChunked(first.getHash()));
+        assertEquals(content.length, store.size(first.getHash()));
+        assertArrayEquals(content, toArray(store.read(first.getHash())));
+        assertArrayEquals(content, streamed(store, first.getHash()));
+
+        long objectsBefore = countObjects();
+        content[content.length / 3] ^= 0x01;
+        Files.write(file, content);
+
+        FileVersion second = store.writeChunked(file);
+
+        assertTrue(!first.getHash().equals(second.getHash()));
+        assertArrayEquals(content, toArray(store.read(second.getHash())));
+        // The new manifest plus the one or two chunks around the edit
+        long added = countObjects() - objectsBefore;
+        assertTrue(added >= 2 && added <= 3, "objects added: " + added);
+    }
+
+    private static List<Integer> boundaries(byte[] content) {
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        List<Integer> ends = new ArrayList<>();
+        int start = 0;
+        while (start < content.length) {
+            start += ContentChunker.nextChunk(buffer, start, content.length - start);
+            ends.add(start);
+        }
+        return ends;
+    }
+
+    private long countObjects() throws IOException {
+        try (Stream<Path> objects = Files.list(temp.resolve("objects"))) {
+            return objects.count();
+        }
+    }
+
+    private static byte[] streamed(ObjectStore store, String hash) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.copyTo(hash, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,159 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static com.tejinder.mini_vcs_api.vcs.core.CommitGraphTests.commit;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GraphLayoutTests {
+
+    // Long enough for edges to cross several checkpoints
+    private static final int MAIN_LENGTH = 1000;
+    private static final int SIDE_LENGTH = 600;
+
+    @TempDir
+    Path vcsDir;
+
+    @Test
+    void mergeTakesASecondLaneUntilTheLinesMeet() throws IOException {
+        Commit root = commit("root", 1000);
+        Commit left = commit("left", 2000, root);
+        Commit right = commit("right", 3000, root);
+        Commit merge = commit("merge", 4000, left, right);
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        graph.appendAll(List.of(root, left, right, merge));
+
+        GraphLayout layout = GraphLayout.build(graph, List.of(merge.getId(), left.getId()));
+
+        assertEquals(4, layout.size());
+        assertEquals(List.of(merge.getId(), right.getId(), left.getId(), root.getId()), ids(layout));
+        assertArrayEquals(new int[] {0, 1, 0, 0}, lanes(layout));
+        assertArrayEquals(new int[] {2, 1}, layout.getParentRows(0));
+        assertEquals(2, layout.getWidth());
+
+        // The right line leaves the merge in lane 1 and joins lane 0 at the root
+        List<String> edges = describe(layout.getEdges(0, 4));
+        assertEquals(List.of("0->2 0/0/0", "0->1 0/1/1", "1->3 1/1/0", "2->3 0/0/0"), edges);
+    }
+
+    @Test
+    void windowsSeeTheSameEdgesAsTheWholeLayout() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        String tip = longHistory(graph);
+        GraphLayout layout = GraphLayout.build(graph, List.of(tip));
+        int size = layout.size();
+        assertEquals(MAIN_LENGTH + SIDE_LENGTH, size);
+
+        List<GraphLayout.Edge> all = layout.getEdges(0, size);
+        for (int length : new int[] {1, 40, 256, 700}) {
+            for (int start = 0; start < size; start += 37) {
+                int end = Math.min(size, start + length);
+                List<String> expected = new ArrayList<>();
+                for (GraphLayout.Edge edge : all) {
+                    if (edge.getFromRow() < end && edge.getToRow() >= start) {
+                        expected.add(describe(edge));
+                    }
+                }
+                assertEquals(expected, describe(layout.getEdges(start, end)), "rows " + start + "-" + end);
+            }
+        }
+    }
+
+    @Test
+    void linesNeverShareALane() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        GraphLayout layout = GraphLayout.build(graph, List.of(longHistory(graph)));
+        List<GraphLayout.Edge> all = layout.getEdges(0, layout.size());
+
+        assertEquals(2, layout.getWidth());
+        for (int row = 0; row < layout.size(); row++) {
+            // Lines passing a row each have a lane of their own, apart from the commit's
+            Map<Integer, Integer> targets = new HashMap<>();
+            for (GraphLayout.Edge edge : all) {
+                if (edge.getFromRow() < row && edge.getToRow() > row) {
+                    assertNotEquals(layout.getLane(row), edge.getLane(), "row " + row);
+                    Integer other = targets.put(edge.getLane(), edge.getToRow());
+                    assertTrue(other == null || other == edge.getToRow(), "row " + row);
+                }
+            }
+        }
+        for (GraphLayout.Edge edge : all) {
+            // A first parent carries on in the commit's lane
+            if (edge.getToRow() == layout.getParentRows(edge.getFromRow())[0]) {
+                assertEquals(edge.getFromLane(), edge.getLane(), "row " + edge.getFromRow());
+            }
+        }
+    }
+
+    /**
+     * Writes a main line with a long side branch forked near its start and
+     * merged back near its end, their commits interleaved in time.
+     * @return The tip of the main line
+     */
+    private static String longHistory(CommitGraph graph) throws IOException {
+        List<Commit> commits = new ArrayList<>();
+        List<Commit> main = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            main.add(i == 0 ? commit("m0", 0) : commit("m" + i, 1000L * i, main.get(i - 1)));
+        }
+        commits.addAll(main);
+
+        Commit side = main.get(10);
+        for (int i = 0; i < SIDE_LENGTH; i++) {
+            side = commit("s" + i, 1000L * (11 + i) + 500, side);
+            commits.add(side);
+        }
+
+        for (int i = 11; i < MAIN_LENGTH; i++) {
+            Commit next = i == 900
+                    ? commit("merge", 1000L * i, main.get(i - 1), side)
+                    : commit("m" + i, 1000L * i, main.get(i - 1));
+            main.add(next);
+            commits.add(next);
+        }
+
+        graph.appendAll(commits);
+        return main.get(MAIN_LENGTH - 1).getId();
+    }
+
+    private static List<String> ids(GraphLayout layout) {
+        List<String> ids = new ArrayList<>();
+        for (int row = 0; row < layout.size(); row++) {
+            ids.add(layout.getId(row));
+        }
+        return ids;
+    }
+
+    private static int[] lanes(GraphLayout layout) {
+        int[] lanes = new int[layout.size()];
+        for (int row = 0; row < lanes.length; row++) {
+            lanes[row] = layout.getLane(row);
+        }
+        return lanes;
+    }
+
+    private static List<String> describe(List<GraphLayout.Edge> edges) {
+        List<String> result = new ArrayList<>();
+        for (GraphLayout.Edge edge : edges) {
+            result.add(describe(edge));
+        }
+        return result;
+    }
+
+    /** Child and parent rows, then the child, running and parent lanes. */
+    private static String describe(GraphLayout.Edge edge) {
+        return edge.getFromRow() + "->" + edge.getToRow() + " "
+                + edge.getFromLane() + "/" + edge.getLane() + "/" + edge.getToLane();
+    }
+}
@@ -0,0 +1,221 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTests {
+
+    private static final String FIRST = "1111111111111111111111111111111111111111";
+    private static final String SECOND = "2222222222222222222222222222222222222222";
+    private static final String THIRD = "3333333333333333333333333333333333333333";
+
+    // The state a commit of SECOND replaces
+    private static final String OLD_INDEX = "old index";
+    private static final String NEW_INDEX = "new index";
+
+    @TempDir
+    Path vcsDir;
+
+    private Path index;
+    private Path head;
+    private Path mergeHead;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = vcsDir.resolve("index");
+        head = vcsDir.resolve("HEAD");
+        mergeHead = vcsDir.resolve("MERGE_HEAD");
+        Files.writeString(index, OLD_INDEX);
+        Files.writeString(head, "ref: main");
+        Files.writeString(mergeHead, THIRD);
+        RefStore.open(vcsDir).update("main", null, FIRST);
+    }
+
+    @Test
+    void commitAppliesEveryUpdateAndRemovesTheJournal() throws IOException {
+        RefStore refs = RefStore.open(vcsDir);
+        new Journal(vcsDir, refs).begin()
+                .updateRef("main", FIRST, SECOND)
+                .write(index, NEW_INDEX.getBytes(StandardCharsets.UTF_8))
+                .delete(mergeHead)
+                .commit();
+
+        assertCommitted();
+        assertEquals(SECOND, refs.get("main"));
+    }
+
+    @Test
+    void movedRefFailsTheCommitAndLeavesNothingBehind() throws IOException {
+        RefStore refs = RefStore.open(vcsDir);
+        Journal.Transaction transaction = new Journal(vcsDir, refs).begin()
+                .updateRef("main", THIRD, SECOND)
+                .write(index, NEW_INDEX.getBytes(StandardCharsets.UTF_8))
+                .delete(mergeHead);
+
+        assertThrows(IOException.class, transaction::commit);
+
+        assertRolledBack();
+    }
+
+    @Test
+    void recoverReplaysAJournalWithItsCommitMarker() throws IOException {
+        // Crashed after writing the journal, before moving anything
+        Files.writeString(vcsDir.resolve("index.new"), NEW_INDEX);
+        writeJournal(true);
+
+        assertTrue(new Journal(vcsDir, RefStore.open(vcsDir)).recover());
+
+        assertCommitted();
+    }
+
+    @Test
+    void recoverFinishesAJournalWhoseRefsAlreadyMoved() throws IOException {
+        // Crashed after the ref moved, before the index was renamed
+        Files.writeString(vcsDir.resolve("index.new"), NEW_INDEX);
+        writeJournal(true);
+        RefStore.open(vcsDir).update("main", FIRST, SECOND);
+
+        assertTrue(new Journal(vcsDir, RefStore.open(vcsDir)).recover());
+
+        assertCommitted();
+    }
+
+    @Test
+    void recoverRollsBackAJournalWithoutItsCommitMarker() throws IOException {
+        // Crashed part way through writing the journal
+        Files.writeString(vcsDir.resolve("index.new"), NEW_INDEX);
+        writeJournal(false);
+
+        assertFalse(new Journal(vcsDir, RefStore.open(vcsDir)).recover());
+
+        assertRolledBack();
+    }
+
+    @Test
+    void recoverDiscardsFilesWrittenBeforeTheJournal() throws IOException {
+        Files.writeString(vcsDir.resolve("index.new"), NEW_INDEX);
+
+        assertFalse(new Journal(vcsDir, RefStore.open(vcsDir)).recover());
+
+        assertRolledBack();
+    }
+
+    @Test
+    void recoverRollsBackWhenARefWasMovedElsewhere() throws IOException {
+        Files.writeString(vcsDir.resolve("index.new"), NEW_INDEX);
+        writeJournal(true);
+        RefStore.open(vcsDir).update("main", FIRST, THIRD);
+
+        assertFalse(new Journal(vcsDir, RefStore.open(vcsDir)).recover());
+
+        assertEquals(THIRD, RefStore.open(vcsDir).get("main"));
+        assertEquals(OLD_INDEX, Files.readString(index));
+        assertTrue(Files.exists(mergeHead));
+        assertNoLeftovers();
+    }
+
+    @Test
+    void recoverLeavesATransactionThatIsStillRunningAlone() throws Exception {
+        Journal journal = new Journal(vcsDir, RefStore.open(vcsDir));
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            // Another handle is between writing its journal and renaming its files
+            Journal.Lock held = writer.submit(journal::lock).get();
+            Files.writeString(vcsDir.resolve("index.new"), NEW_INDEX);
+            writeJournal(true);
+
+            assertFalse(new Journal(vcsDir, RefStore.open(vcsDir)).recover());
+            assertTrue(Files.exists(vcsDir.resolve("index.new")));
+            assertTrue(Files.exists(vcsDir.resolve("journal")));
+
+            writer.submit(() -> {
+                held.close();
+                return null;
+            }).get();
+        } finally {
+            writer.shutdown();
+        }
+
+        assertTrue(new Journal(vcsDir, RefStore.open(vcsDir)).recover());
+        assertCommitted();
+    }
+
+    @Test
+    void secondHandleLoadingDuringATransactionKeepsItsFiles(@TempDir Path root) throws Exception {
+        Repository first = Repository.open(root.toString());
+        first.init(root.toString());
+        Files.writeString(root.resolve("a.txt"), "a");
+        first.add("a.txt");
+        first.commit("first");
+
+        Path repoDir = root.resolve(".mini-vcs");
+        Journal journal = new Journal(repoDir, RefStore.open(repoDir));
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Journal.Lock held = writer.submit(journal::lock).get();
+            Files.writeString(repoDir.resolve("index.new"), "a.txt=- 0 removed\n");
+            Files.writeString(repoDir.resolve("journal"), "write index\ndelete MERGE_HEAD\ncommit\n");
+
+            Repository second = Repository.open(root.toString());
+            second.close();
+
+            assertTrue(Files.exists(repoDir.resolve("index.new")), "a live transaction was rolled back");
+            assertTrue(Files.exists(repoDir.resolve("journal")));
+
+            writer.submit(() -> {
+                held.close();
+                return null;
+            }).get();
+        } finally {
+            writer.shutdown();
+            first.close();
+        }
+    }
+
+    /** Writes the journal a commit of SECOND on main would record. */
+    private void writeJournal(boolean complete) throws IOException {
+        String content = "ref main " + FIRST + " " + SECOND + "\n"
+                + "write index\n"
+                + "delete MERGE_HEAD\n"
+                + (complete ? "commit\n" : "");
+        Files.writeString(vcsDir.resolve("journal"), content);
+    }
+
+    private void assertCommitted() throws IOException {
+        assertEquals(SECOND, RefStore.open(vcsDir).get("main"));
+        assertEquals(NEW_INDEX, Files.readString(index));
+        assertFalse(Files.exists(mergeHead));
+        assertEquals("ref: main", Files.readString(head));
+        assertNoLeftovers();
+    }
+
+    private void assertRolledBack() throws IOException {
+        assertEquals(FIRST, RefStore.open(vcsDir).get("main"));
+        assertEquals(OLD_INDEX, Files.readString(index));
+        assertTrue(Files.exists(mergeHead));
+        assertNoLeftovers();
+    }
+
+    private void assertNoLeftovers() throws IOException {
+        assertFalse(Files.exists(vcsDir.resolve("journal")));
+        try (Stream<Path> files = Files.walk(vcsDir)) {
+            assertEquals(0, files.map(Path::toString)
+                    .filter(name -> name.endsWith(".new") || name.endsWith(".lock"))
+                    .count());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static com.tejinder.mini_vcs_api.vcs.core.CommitGraphTests.commit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MergeBaseTests {
+
+    @TempDir
+    Path vcsDir;
+
+    @Test
+    void findsTheForkPointOfTwoBranches() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        Commit root = commit("root", 1000);
+        Commit fork = commit("fork", 2000, root);
+        Commit ours = commit("ours", 3000, fork);
+        Commit theirs = commit("theirs", 4000, fork);
+        Commit theirsNext = commit("theirs next", 5000, theirs);
+        graph.appendAll(List.of(root, fork, ours, theirs, theirsNext));
+
+        assertEquals(fork.getId(), MergeBase.find(graph, ours.getId(), theirsNext.getId()));
+        assertEquals(fork.getId(), MergeBase.find(graph, theirsNext.getId(), ours.getId()));
+        assertEquals(ours.getId(), MergeBase.find(graph, ours.getId(), ours.getId()));
+        assertEquals(root.getId(), MergeBase.find(graph, root.getId(), theirsNext.getId()));
+    }
+
+    @Test
+    void walksByGenerationEvenWhenClocksRunBackwards() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        Commit root = commit("root", 9000);
+        Commit fork = commit("fork", 8000, root);
+        // One side was committed on a machine whose clock is far behind
+        Commit skewed = commit("skewed", 10, fork);
+        Commit skewedNext = commit("skewed next", 20, skewed);
+        Commit other = commit("other", 9500, fork);
+        graph.appendAll(List.of(root, fork, skewed, skewedNext, other));
+
+        assertEquals(fork.getId(), MergeBase.find(graph, skewedNext.getId(), other.getId()));
+        assertTrue(MergeBase.isAncestor(graph, fork.getId(), skewedNext.getId()));
+        assertFalse(MergeBase.isAncestor(graph, other.getId(), skewedNext.getId()));
+    }
+
+    @Test
+    void reportsBothBasesOfACrissCrossMerge() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        Commit root = commit("root", 1000);
+        Commit a = commit("a", 2000, root);
+        Commit b = commit("b", 3000, root);
+        Commit mergeAb = commit("merge a b", 4000, a, b);
+        Commit mergeBa = commit("merge b a", 5000, b, a);
+        graph.appendAll(List.of(root, a, b, mergeAb, mergeBa));
+
+        Set<String> bases = new HashSet<>(MergeBase.findAll(graph, mergeAb.getId(), mergeBa.getId()));
+
+        assertEquals(Set.of(a.getId(), b.getId()), bases);
+    }
+
+    @Test
+    void unrelatedHistoriesHaveNoBase() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        Commit first = commit("first", 1000);
+        Commit second = commit("second", 2000);
+        graph.appendAll(List.of(first, second));
+
+        assertNull(MergeBase.find(graph, first.getId(), second.getId()));
+        assertFalse(MergeBase.isAncestor(graph, first.getId(), second.getId()));
+    }
+
+    @Test
+    void matchesABruteForceSearchOnARandomHistory() throws IOException {
+        CommitGraph graph = CommitGraph.open(vcsDir);
+        Random random = new Random(7);
+        List<Commit> commits = new ArrayList<>();
+        Map<String, List<String>> parents = new HashMap<>();
+
+        for (int i = 0; i < 300; i++) {
+            Commit commit;
+            if (commits.isEmpty()) {
+                commit = commit("c" + i, random.nextInt(100_000));
+            } else if (commits.size() > 2 && random.nextInt(5) == 0) {
+                commit = commit("c" + i, random.nextInt(100_000),
+                        commits.get(random.nextInt(commits.size())),
+                        commits.get(random.nextInt(commits.size())));
+            } else {
+                // Mostly build on recent commits so the history has long branches
+                int from = Math.max(0, commits.size() - 8);
+                commit = commit("c" + i, random.nextInt(100_000),
+                        commits.get(from + random.nextInt(commits.size() - from)));
+            }
+            if (new HashSet<>(commit.getParents()).size() != commit.getParents().size()) {
+                commit = commit("c" + i, random.nextInt(100_000), commits.get(commits.size() - 1));
+            }
+            commits.add(commit);
+            parents.put(commit.getId(), commit.getParents());
+        }
+        graph.appendAll(commits);
+
+        for (int trial = 0; trial < 200; trial++) {
+            String first = commits.get(random.nextInt(commits.size())).getId();
+            String second = commits.get(random.nextInt(commits.size())).getId();
+
+            Set<String> expected = bestCommonAncestors(parents, first, second);
+            Set<String> actual = new HashSet<>(MergeBase.findAll(graph, first, second));
+
+            assertEquals(expected, actual, "merge bases of " + first + " and " + second);
+            assertEquals(ancestors(parents, second).contains(first),
+                    MergeBase.isAncestor(graph, first, second));
+        }
+    }
+
+    private static Set<String> bestCommonAncestors(Map<String, List<String>> parents, String first, String second) {
+        Set<String> common = ancestors(parents, first);
+        common.retainAll(ancestors(parents, second));
+
+        Set<String> best = new HashSet<>(common);
+        for (String candidate : common) {
+            Set<String> below = ancestors(parents, candidate);
+            below.remove(candidate);
+            best.removeAll(below);
+        }
+        return best;
+    }
+
+    private static Set<String> ancestors(Map<String, List<String>> parents, String start) {
+        Set<String> seen = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(start);
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            if (seen.add(id)) {
+                pending.addAll(parents.get(id));
+            }
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,66 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class MergeToolTests {
+
+    private static final String BASE = "one\ntwo\nthree\nfour\nfive\n";
+
+    @Test
+    void takesChangesToSeparateRegionsFromBothSides() {
+        MergeTool.Result result = MergeTool.merge(BASE,
+                "ONE\ntwo\nthree\nfour\nfive\n",
+                "one\ntwo\nthree\nfour\nFIVE\nsix\n",
+                "HEAD", "feature");
+
+        assertFalse(result.hasConflicts());
+        assertEquals("ONE\ntwo\nthree\nfour\nFIVE\nsix\n", result.getContent());
+    }
+
+    @Test
+    void marksRegionsChangedDifferentlyOnBothSides() {
+        MergeTool.Result result = MergeTool.merge(BASE,
+                "one\ntwo\nours\nfour\nfive\n",
+                "one\ntwo\ntheirs\nfour\nfive\n",
+                "HEAD", "feature");
+
+        assertEquals(1, result.getConflicts());
+        assertEquals("one\ntwo\n"
+                + "<<<<<<< HEAD\nours\n=======\ntheirs\n>>>>>>> feature\n"
+                + "four\nfive\n", result.getContent());
+    }
+
+    @Test
+    void identicalChangesDoNotConflict() {
+        String changed = "one\ntwo\nsame\nfour\nfive\n";
+
+        MergeTool.Result result = MergeTool.merge(BASE, changed, changed, "HEAD", "feature");
+
+        assertFalse(result.hasConflicts());
+        assertEquals(changed, result.getContent());
+    }
+
+    @Test
+    void filesTooFarApartToAlignBecomeOneConflict() {
+        StringBuilder base = new StringBuilder();
+        StringBuilder ours = new StringBuilder();
+        StringBuilder theirs = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            base.append("base ").append(i).append('\n');
+            ours.append("ours ").append(i).append('\n');
+            theirs.append("theirs ").append(i).append('\n');
+        }
+
+        MergeTool.Result result = MergeTool.merge(base.toString(), ours.toString(), theirs.toString(),
+                "HEAD", "feature");
+
+        assertEquals(1, result.getConflicts());
+        assertEquals("<<<<<<< HEAD\n" + ours + "=======\n" + theirs + ">>>>>>> feature\n",
+                result.getContent());
+        assertTrue(result.hasConflicts());
+    }
+}
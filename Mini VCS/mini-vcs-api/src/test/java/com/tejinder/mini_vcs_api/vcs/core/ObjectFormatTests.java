@@ -0,0 +1,109 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vcs.util.HashUtils;
+
+class ObjectFormatTests {
+
+    // Not valid UTF-8, nor the same text in any single-byte charset
+    private static final byte[] BINARY = {'a', (byte) 0xff, (byte) 0xc3, 0, (byte) 0xe2, (byte) 0x82, 'z'};
+
+    @TempDir
+    Path root;
+
+    @Test
+    void textHashMatchesHowOlderRepositoriesHashedContent() throws IOException {
+        Random random = new Random(26);
+        for (int trial = 0; trial < 200; trial++) {
+            byte[] content = new byte[random.nextInt(trial < 100 ? 64 : 200_000)];
+            random.nextBytes(content);
+            if (trial % 3 == 0) {
+                // Valid multi-byte text; the other trials are mostly malformed
+                content = (new String(content, StandardCharsets.ISO_8859_1) + "é€😀")
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+            String legacy = HashUtils.generateSHA1(new String(content));
+
+            assertEquals(legacy, ObjectFormat.TEXT.hash(ByteBuffer.wrap(content)));
+
+            // Fed in pieces that cut through characters
+            ObjectFormat.Digest digest = ObjectFormat.TEXT.newDigest();
+            for (int offset = 0; offset < content.length; ) {
+                int length = Math.min(1 + random.nextInt(7), content.length - offset);
+                digest.update(ByteBuffer.wrap(content, offset, length));
+                offset += length;
+            }
+            assertEquals(legacy, digest.finish());
+
+            Path file = root.resolve("file-" + trial);
+            Files.write(file, content);
+            assertEquals(legacy, ObjectFormat.TEXT.hash(file));
+            assertEquals(HashUtils.generateSHA1(ByteBuffer.wrap(content)), ObjectFormat.RAW.hash(file));
+        }
+    }
+
+    @Test
+    void repositoryWithoutAFormatFileKeepsTheTextHash() throws IOException {
+        Repository created = Repository.open(root.toString());
+        created.init(root.toString());
+        created.close();
+        assertEquals(ObjectFormat.RAW, ObjectFormat.read(root.resolve(".mini-vcs")));
+
+        // As left by a version that predates the format file
+        Files.delete(root.resolve(".mini-vcs/format"));
+        Files.write(root.resolve("data.bin"), BINARY);
+
+        Repository legacy = Repository.open(root.toString());
+        try {
+            legacy.add("data.bin");
+            legacy.commit("binary");
+
+            String id = legacy.getHeadCommit().getFileVersionId("data.bin");
+            assertEquals(HashUtils.generateSHA1(new String(BINARY)), id);
+            assertTrue(legacy.getStatus().isClean(), "unchanged file reported as modified");
+            assertEquals(ObjectFormat.TEXT, ObjectFormat.read(root.resolve(".mini-vcs")));
+        } finally {
+            legacy.close();
+        }
+    }
+
+    @Test
+    void newRepositoryHashesRawBytes() throws IOException {
+        Repository repository = Repository.open(root.toString());
+        try {
+            repository.init(root.toString());
+            Files.write(root.resolve("data.bin"), BINARY);
+            repository.add("data.bin");
+            repository.commit("binary");
+
+            String id = repository.getHeadCommit().getFileVersionId("data.bin");
+            assertEquals(HashUtils.generateSHA1(ByteBuffer.wrap(BINARY)), id);
+            assertNotEquals(HashUtils.generateSHA1(new String(BINARY)), id);
+            assertTrue(repository.getStatus().isClean());
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    void unknownFormatIsRefused() throws IOException {
+        Files.createDirectories(root);
+        Files.writeString(root.resolve("format"), "objects 9\n");
+
+        assertThrows(IOException.class, () -> ObjectFormat.read(root));
+    }
+}
@@ -0,0 +1,151 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RefStoreTests {
+
+    private static final String FIRST = "1111111111111111111111111111111111111111";
+    private static final String SECOND = "2222222222222222222222222222222222222222";
+    private static final String THIRD = "3333333333333333333333333333333333333333";
+
+    @TempDir
+    Path vcsDir;
+
+    @Test
+    void updateMovesARefOnlyFromTheExpectedValue() throws IOException {
+        RefStore store = RefStore.open(vcsDir);
+        store.update("main", null, FIRST);
+        store.update("main", FIRST, SECOND);
+
+        IOException stale = assertThrows(IOException.class, () -> store.update("main", FIRST, THIRD));
+
+        assertTrue(stale.getMessage().contains("was moved"));
+        assertEquals(SECOND, store.get("main"));
+        assertEquals(SECOND, RefStore.open(vcsDir).get("main"));
+    }
+
+    @Test
+    void seesMovesMadeByAnotherStore() throws IOException {
+        RefStore ours = RefStore.open(vcsDir);
+        ours.update("main", null, FIRST);
+        RefStore theirs = RefStore.open(vcsDir);
+
+        theirs.update("main", FIRST, SECOND);
+
+        // Our cached value is stale, but the check reads the ref on disk
+        assertThrows(IOException.class, () -> ours.update("main", FIRST, THIRD));
+        ours.update("main", SECOND, THIRD);
+        assertEquals(THIRD, RefStore.open(vcsDir).get("main"));
+    }
+
+    @Test
+    void transactionWritesNothingWhenOneRefHasMoved() throws IOException {
+        RefStore store = RefStore.open(vcsDir);
+        store.transaction()
+                .update("main", null, FIRST)
+                .update("feature", null, FIRST)
+                .commit();
+
+        assertThrows(IOException.class, () -> store.transaction()
+                .update("feature", FIRST, SECOND)
+                .update("main", THIRD, SECOND)
+                .commit());
+
+        RefStore reopened = RefStore.open(vcsDir);
+        assertEquals(FIRST, reopened.get("feature"));
+        assertEquals(FIRST, reopened.get("main"));
+        assertNoLocks();
+    }
+
+    @Test
+    void heldLockRejectsTheUpdate() throws IOException {
+        RefStore store = RefStore.open(vcsDir);
+        store.update("main", null, FIRST);
+        Path lock = vcsDir.resolve("refs/main.lock");
+        Files.createFile(lock);
+
+        IOException locked = assertThrows(IOException.class, () -> store.update("main", FIRST, SECOND));
+
+        assertTrue(locked.getMessage().contains("Unable to lock"));
+        assertTrue(Files.exists(lock), "someone else's lock was removed");
+        assertEquals(FIRST, RefStore.open(vcsDir).get("main"));
+    }
+
+    @Test
+    void packFoldsLooseRefsAndKeepsUnbornOnes() throws IOException {
+        RefStore store = RefStore.open(vcsDir);
+        store.update("main", null, FIRST);
+        store.update("topic/one", null, SECOND);
+        store.update("unborn", null, null);
+
+        store.pack();
+
+        assertTrue(Files.exists(vcsDir.resolve("packed-refs")));
+        assertFalse(Files.exists(vcsDir.resolve("refs/main")));
+        assertFalse(Files.exists(vcsDir.resolve("refs/topic/one")));
+        assertTrue(Files.exists(vcsDir.resolve("refs/unborn")));
+
+        RefStore reopened = RefStore.open(vcsDir);
+        Map<String, String> expected = new TreeMap<>();
+        expected.put("main", FIRST);
+        expected.put("topic/one", SECOND);
+        expected.put("unborn", null);
+        assertEquals(expected, reopened.getAll());
+
+        // A loose ref written after packing overrides the packed entry
+        reopened.update("main", FIRST, THIRD);
+        assertEquals(THIRD, RefStore.open(vcsDir).get("main"));
+        assertThrows(IOException.class, () -> RefStore.open(vcsDir).update("main", FIRST, SECOND));
+    }
+
+    @Test
+    void packsOnItsOwnOnceThereAreManyLooseRefs() throws IOException {
+        RefStore store = RefStore.open(vcsDir);
+        for (int i = 0; i < 300; i++) {
+            store.update("branch-" + i, null, FIRST);
+        }
+
+        assertTrue(looseRefs() < 300, "loose refs were never packed: " + looseRefs());
+        RefStore reopened = RefStore.open(vcsDir);
+        assertEquals(300, reopened.getAll().size());
+        assertEquals(FIRST, reopened.get("branch-0"));
+        assertEquals(FIRST, reopened.get("branch-299"));
+    }
+
+    @Test
+    void rejectsInvalidNames() {
+        assertFalse(RefStore.isValidName("a..b"));
+        assertFalse(RefStore.isValidName("/main"));
+        assertFalse(RefStore.isValidName("main.lock"));
+        assertFalse(RefStore.isValidName("has space"));
+        assertFalse(RefStore.isValidName("HEAD"));
+        assertTrue(RefStore.isValidName("feature/login"));
+        assertThrows(IllegalArgumentException.class,
+                () -> RefStore.open(vcsDir).update("bad name", null, FIRST));
+    }
+
+    private long looseRefs() throws IOException {
+        try (Stream<Path> files = Files.walk(vcsDir.resolve("refs"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private void assertNoLocks() throws IOException {
+        try (Stream<Path> files = Files.walk(vcsDir)) {
+            assertEquals(0, files.filter(file -> file.toString().endsWith(".lock")).count());
+        }
+    }
+}
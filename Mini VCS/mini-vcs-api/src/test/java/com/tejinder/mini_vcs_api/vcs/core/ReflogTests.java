@@ -0,0 +1,165 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReflogTests {
+
+    // Enough entries for the log to span many index records
+    private static final int ENTRIES = 5000;
+
+    @TempDir
+    Path vcsDir;
+
+    @Test
+    void readsTheNewestMovesOfEachRefSeparately() throws IOException {
+        Reflog reflog = new Reflog(vcsDir);
+        reflog.append(Reflog.HEAD, null, id(1), "commit (initial): first");
+        reflog.append("main", null, id(1), "commit (initial): first");
+        reflog.append(Reflog.HEAD, id(1), id(2), "commit: second\nwith a newline");
+        reflog.append("feature", null, id(2), "branch: created");
+        reflog.sync();
+
+        List<Reflog.Entry> head = new Reflog(vcsDir).read(Reflog.HEAD, Long.MIN_VALUE, Long.MAX_VALUE, 10);
+
+        assertEquals(2, head.size());
+        assertEquals(id(2), head.get(0).getNewId());
+        assertEquals(id(1), head.get(0).getOldId());
+        assertEquals("commit: second with a newline", head.get(0).getMessage());
+        assertNull(head.get(1).getOldId());
+        assertEquals(1, reflog.read("main", Long.MIN_VALUE, Long.MAX_VALUE, 10).size());
+        assertEquals(id(2), reflog.lookup("feature", Long.MAX_VALUE).getNewId());
+        assertTrue(reflog.read("missing", Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    void indexedRangeReadsMatchAFullScan() throws IOException {
+        List<long[]> moves = writeLog(Reflog.HEAD);
+        Reflog reflog = new Reflog(vcsDir);
+        Random random = new Random(5);
+
+        for (int trial = 0; trial < 300; trial++) {
+            long since = random.nextInt(ENTRIES * 1000);
+            long until = since + random.nextInt(ENTRIES * 200);
+            int limit = 1 + random.nextInt(trial % 2 == 0 ? 5 : 2000);
+
+            assertEquals(expected(moves, since, until, limit),
+                    newIds(reflog.read(Reflog.HEAD, since, until, limit)),
+                    "read(" + since + ", " + until + ", " + limit + ")");
+        }
+        assertEquals(expected(moves, Long.MIN_VALUE, Long.MAX_VALUE, 3),
+                newIds(reflog.read(Reflog.HEAD, Long.MIN_VALUE, Long.MAX_VALUE, 3)));
+    }
+
+    @Test
+    void lookupFindsTheLastMoveAtOrBeforeATime() throws IOException {
+        List<long[]> moves = writeLog("main");
+        Reflog reflog = new Reflog(vcsDir);
+
+        assertNull(reflog.lookup("main", moves.get(0)[0] - 1));
+        for (int i = 0; i < ENTRIES; i += 97) {
+            long time = moves.get(i)[0];
+            assertEquals(id(i), reflog.lookup("main", time).getNewId());
+            // Between two moves the ref still points at the earlier one
+            assertEquals(id(i), reflog.lookup("main", time + 500).getNewId());
+        }
+    }
+
+    @Test
+    void missingOrDamagedIndexOnlyCostsSpeed() throws IOException {
+        List<long[]> moves = writeLog(Reflog.HEAD);
+        Path index = vcsDir.resolve("logs/HEAD.idx");
+        long since = moves.get(ENTRIES / 2)[0];
+        long until = moves.get(ENTRIES / 2 + 50)[0];
+        List<String> expected = expected(moves, since, until, 20);
+
+        // A record pointing past the end of the log and half a record
+        ByteBuffer junk = ByteBuffer.allocate(24).putLong(Long.MAX_VALUE).putLong(Long.MAX_VALUE);
+        Files.write(index, junk.array(), StandardOpenOption.APPEND);
+        assertEquals(expected, newIds(new Reflog(vcsDir).read(Reflog.HEAD, since, until, 20)));
+
+        Files.delete(index);
+        assertEquals(expected, newIds(new Reflog(vcsDir).read(Reflog.HEAD, since, until, 20)));
+    }
+
+    @Test
+    void rejectsRefsThatLeaveTheLogs() throws IOException {
+        Reflog reflog = new Reflog(vcsDir.resolve("repo"));
+        Files.createDirectories(vcsDir.resolve("repo/logs/refs"));
+        Files.writeString(vcsDir.resolve("secret"), id(0) + " " + id(1) + " 1000 secret\n");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> reflog.read("../../../secret", Long.MIN_VALUE, Long.MAX_VALUE, 10));
+        assertThrows(IllegalArgumentException.class, () -> reflog.lookup("/etc/passwd", Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> reflog.append("a/../../../x", null, id(1), "move"));
+        assertTrue(reflog.read("main", Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    /**
+     * Writes a log whose moves are a second apart, with an index in the
+     * format {@link Reflog#append} writes, since appends take the clock time.
+     */
+    private List<long[]> writeLog(String ref) throws IOException {
+        Path log = Reflog.HEAD.equals(ref) ? vcsDir.resolve("logs/HEAD") : vcsDir.resolve("logs/refs/" + ref);
+        Files.createDirectories(log.getParent());
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        List<long[]> moves = new ArrayList<>(ENTRIES);
+        long lastIndexed = -1;
+        for (int i = 0; i < ENTRIES; i++) {
+            long timestamp = 1_000_000L + 1000L * i;
+            long offset = content.size();
+            if (lastIndexed < 0 || offset - lastIndexed >= 4096) {
+                index.write(ByteBuffer.allocate(16).putLong(timestamp).putLong(offset).array());
+                lastIndexed = offset;
+            }
+            String line = (i == 0 ? id(-1) : id(i - 1)) + " " + id(i) + " " + timestamp + " commit: c" + i + "\n";
+            content.write(line.getBytes(StandardCharsets.UTF_8));
+            moves.add(new long[] {timestamp, i});
+        }
+
+        Files.write(log, content.toByteArray());
+        Files.write(log.resolveSibling(log.getFileName() + ".idx"), index.toByteArray());
+        return moves;
+    }
+
+    private static List<String> expected(List<long[]> moves, long since, long until, int limit) {
+        List<String> ids = new ArrayList<>();
+        for (int i = moves.size() - 1; i >= 0 && ids.size() < limit; i--) {
+            long timestamp = moves.get(i)[0];
+            if (timestamp >= since && timestamp <= until) {
+                ids.add(id((int) moves.get(i)[1]));
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> newIds(List<Reflog.Entry> entries) {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (Reflog.Entry entry : entries) {
+            ids.add(entry.getNewId());
+        }
+        return ids;
+    }
+
+    private static String id(int n) {
+        return String.format("%040x", n + 1);
+    }
+}
@@ -0,0 +1,91 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryAddTests {
+
+    // More files than are staged at once
+    private static final int FILES = 300;
+
+    @TempDir
+    Path root;
+
+    private Repository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = Repository.open(root.toString());
+        repository.init(root.toString());
+        write("README.md", "readme");
+        write("docs/guide.md", "guide");
+        write("docs/notes.txt", "notes");
+        write("src/Main.java", "class Main {}");
+        write("src/util/Strings.java", "class Strings {}");
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void directoryAddsEverythingBelowItButTheRepositoryItself() throws IOException {
+        repository.add("docs");
+        assertEquals(List.of("docs/guide.md", "docs/notes.txt"), staged());
+
+        repository.add(".");
+        assertEquals(List.of("README.md", "docs/guide.md", "docs/notes.txt", "src/Main.java",
+                "src/util/Strings.java"), staged());
+    }
+
+    @Test
+    void globsMatchFromTheRepositoryRoot() throws IOException {
+        repository.add("*.md");
+        assertEquals(List.of("README.md"), staged());
+
+        repository.add(List.of("**.java", "docs/*.txt", "missing.txt"));
+        assertEquals(List.of("README.md", "docs/notes.txt", "src/Main.java", "src/util/Strings.java"),
+                staged());
+    }
+
+    @Test
+    void largeBatchStagesEveryFileWithItsOwnContent() throws IOException {
+        Map<String, String> expected = new TreeMap<>();
+        for (int i = 0; i < FILES; i++) {
+            String path = "batch/" + (i % 7) + "/file" + i + ".txt";
+            write(path, "content of file " + i + "\n".repeat(i));
+            expected.put(path, ObjectFormat.RAW.hash(root.resolve(path)));
+        }
+
+        repository.add(List.of("batch"));
+
+        assertEquals(expected, new TreeMap<>(repository.snapshot().getIndex()));
+        repository.commit("batch");
+        assertEquals(FILES, repository.snapshot().getTrackedFileCount());
+        assertEquals(expected.get("batch/3/file10.txt"),
+                repository.getHeadCommit().getFileVersionId("batch/3/file10.txt"));
+    }
+
+    private List<String> staged() {
+        return List.copyOf(new TreeSet<>(repository.snapshot().getIndex().keySet()));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
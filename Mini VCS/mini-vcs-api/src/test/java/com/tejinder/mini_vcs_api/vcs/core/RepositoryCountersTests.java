@@ -0,0 +1,63 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vcs.util.HashUtils;
+
+class RepositoryCountersTests {
+
+    @TempDir
+    Path vcsDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // As after init, which creates the objects directory before opening the counters
+        Files.createDirectories(vcsDir.resolve("objects"));
+    }
+
+    @Test
+    void ownWritesKeepTheSavedTotalsTrusted() throws IOException {
+        ObjectStore store = new ObjectStore(vcsDir.resolve("objects"));
+        RepositoryCounters counters = RepositoryCounters.open(vcsDir, store);
+        write(store, "one");
+        write(store, "three");
+        counters.save();
+
+        assertEquals(2, counters.getObjects());
+        assertEquals(8, counters.getObjectBytes());
+
+        // A trusted file is read back as is, without listing the store
+        Path file = vcsDir.resolve("counters");
+        Files.writeString(file, Files.readString(file).replace("objects 2", "objects 7"));
+        assertEquals(7, RepositoryCounters.open(vcsDir, new ObjectStore(vcsDir.resolve("objects"))).getObjects());
+    }
+
+    @Test
+    void writesByAnotherStoreAreRecountedOnOpen() throws IOException {
+        ObjectStore store = new ObjectStore(vcsDir.resolve("objects"));
+        RepositoryCounters counters = RepositoryCounters.open(vcsDir, store);
+        write(store, "one");
+
+        // Another process adds an object, then ours writes again and saves
+        write(new ObjectStore(vcsDir.resolve("objects")), "someone else");
+        write(store, "three");
+        counters.save();
+
+        RepositoryCounters reopened = RepositoryCounters.open(vcsDir, new ObjectStore(vcsDir.resolve("objects")));
+        assertEquals(3, reopened.getObjects());
+        assertEquals(20, reopened.getObjectBytes());
+    }
+
+    private static void write(ObjectStore store, String content) throws IOException {
+        store.write(HashUtils.generateSHA1(content), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,106 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryIndexTests {
+
+    @TempDir
+    Path root;
+
+    private Repository repository;
+    private Path index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = Repository.open(root.toString());
+        repository.init(root.toString());
+        index = root.resolve(".mini-vcs/index");
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void indexRecordsTheSizeNextToTheHash() throws IOException {
+        Files.writeString(root.resolve("a.txt"), "hello");
+        Files.writeString(root.resolve("b.txt"), "");
+        repository.add(List.of("a.txt", "b.txt"));
+
+        Map<String, String> staged = repository.snapshot().getIndex();
+        assertTrue(Files.readAllLines(index).containsAll(List.of(
+                "a.txt=" + staged.get("a.txt") + " 5",
+                "b.txt=" + staged.get("b.txt") + " 0")), Files.readString(index));
+    }
+
+    @Test
+    void indexWithoutSizesFromAnOlderVersionStillLoads() throws IOException {
+        Files.writeString(root.resolve("a.txt"), "hello");
+        Files.writeString(root.resolve("b.txt"), "world!");
+        repository.add(List.of("a.txt", "b.txt"));
+        Map<String, String> staged = repository.snapshot().getIndex();
+        repository.close();
+
+        List<String> legacy = new ArrayList<>();
+        for (String line : Files.readAllLines(index)) {
+            legacy.add(line.substring(0, line.indexOf(' ')));
+        }
+        Files.write(index, legacy);
+
+        repository = Repository.open(root.toString());
+        assertEquals(staged, repository.snapshot().getIndex());
+        WorkingTreeStatus status = repository.getStatus();
+        assertEquals(List.of("a.txt", "b.txt"), sorted(status.getStaged()));
+        assertTrue(status.getModified().isEmpty());
+
+        repository.commit("from an old index");
+
+        Commit head = repository.getHeadCommit();
+        assertEquals(staged.get("a.txt"), head.getFileVersionId("a.txt"));
+        assertEquals(staged.get("b.txt"), head.getFileVersionId("b.txt"));
+        assertTrue(repository.getStatus().isClean());
+    }
+
+    @Test
+    void versionFromTheIndexLoadsItsContentOnceWhenFirstUsed() {
+        AtomicInteger loads = new AtomicInteger();
+        FileVersion version = new FileVersion("abc", 5, hash -> {
+            loads.incrementAndGet();
+            return ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertEquals(5, version.getSize());
+        assertEquals("abc", version.getHash());
+        assertFalse(version.isLoaded());
+        assertEquals(0, loads.get());
+
+        assertEquals("hello", version.getContentAsString());
+        assertEquals("hello", version.getContentAsString());
+        assertTrue(version.isLoaded());
+        assertEquals(1, loads.get());
+    }
+
+    private static List<String> sorted(List<String> paths) {
+        List<String> copy = new ArrayList<>(paths);
+        copy.sort(null);
+        return copy;
+    }
+}
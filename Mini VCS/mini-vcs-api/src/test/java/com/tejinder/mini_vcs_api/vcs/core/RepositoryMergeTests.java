@@ -0,0 +1,169 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryMergeTests {
+
+    @TempDir
+    Path root;
+
+    private Repository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = Repository.open(root.toString());
+        repository.init(root.toString());
+        write("shared.txt", "one\ntwo\nthree\nfour\nfive\n");
+        write("ours-deletes.txt", "ours deletes this\n");
+        write("theirs-deletes.txt", "theirs deletes this\n");
+        repository.add(List.of("shared.txt", "ours-deletes.txt", "theirs-deletes.txt"));
+        repository.commit("base");
+        repository.createBranch("feature");
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void cleanMergeTakesAddsDeletesAndEditsFromBothSides() throws IOException {
+        String baseId = repository.getHeadCommit().getId();
+
+        repository.checkout("feature");
+        write("shared.txt", "ONE\ntwo\nthree\nfour\nfive\n");
+        write("theirs-added.txt", "added on feature\n");
+        repository.add(List.of("shared.txt", "theirs-added.txt"));
+        remove("theirs-deletes.txt");
+        repository.commit("feature work");
+        String theirsId = repository.getHeadCommit().getId();
+
+        repository.checkout("master");
+        write("shared.txt", "one\ntwo\nthree\nfour\nFIVE\n");
+        write("ours-added.txt", "added on master\n");
+        repository.add(List.of("shared.txt", "ours-added.txt"));
+        remove("ours-deletes.txt");
+        repository.commit("master work");
+        String oursId = repository.getHeadCommit().getId();
+
+        repository.merge("feature");
+
+        Commit merge = repository.getHeadCommit();
+        assertEquals(List.of(oursId, theirsId), merge.getParents());
+        assertEquals(Set.of("shared.txt", "ours-added.txt", "theirs-added.txt"), files(merge));
+        assertEquals("ONE\ntwo\nthree\nfour\nFIVE\n", read("shared.txt"));
+        assertEquals("added on feature\n", read("theirs-added.txt"));
+        assertFalse(Files.exists(root.resolve("theirs-deletes.txt")));
+        assertFalse(Files.exists(root.resolve("ours-deletes.txt")));
+        assertTrue(repository.getConflictedPaths().isEmpty());
+        assertFalse(merge.getId().equals(baseId));
+    }
+
+    @Test
+    void conflictingEditsWaitForAResolvingCommit() throws IOException {
+        repository.checkout("feature");
+        write("shared.txt", "one\ntwo\ntheirs\nfour\nfive\n");
+        repository.add("shared.txt");
+        repository.commit("feature edit");
+        String theirsId = repository.getHeadCommit().getId();
+
+        repository.checkout("master");
+        write("shared.txt", "one\ntwo\nours\nfour\nfive\n");
+        repository.add("shared.txt");
+        repository.commit("master edit");
+        String oursId = repository.getHeadCommit().getId();
+
+        repository.merge("feature");
+
+        assertEquals(oursId, repository.getHeadCommit().getId());
+        assertEquals(List.of("shared.txt"), repository.getConflictedPaths());
+        assertEquals("one\ntwo\n<<<<<<< HEAD\nours\n=======\ntheirs\n>>>>>>> feature\nfour\nfive\n",
+                read("shared.txt"));
+        assertThrows(IllegalStateException.class, () -> repository.commit("too early"));
+
+        write("shared.txt", "one\ntwo\nboth\nfour\nfive\n");
+        repository.add("shared.txt");
+        repository.commit("resolve");
+
+        assertEquals(List.of(oursId, theirsId), repository.getHeadCommit().getParents());
+        assertTrue(repository.getConflictedPaths().isEmpty());
+    }
+
+    @Test
+    void editOnOneSideAndDeleteOnTheOtherConflicts() throws IOException {
+        repository.checkout("feature");
+        remove("ours-deletes.txt");
+        write("theirs-deletes.txt", "edited on feature\n");
+        repository.add("theirs-deletes.txt");
+        repository.commit("feature edits what master deletes");
+
+        repository.checkout("master");
+        write("ours-deletes.txt", "edited on master\n");
+        repository.add("ours-deletes.txt");
+        remove("theirs-deletes.txt");
+        repository.commit("master edits what feature deletes");
+
+        repository.merge("feature");
+
+        // The surviving version of each file is kept for the user to decide
+        assertEquals(List.of("ours-deletes.txt", "theirs-deletes.txt"), repository.getConflictedPaths());
+        assertEquals("edited on master\n", read("ours-deletes.txt"));
+        assertEquals("edited on feature\n", read("theirs-deletes.txt"));
+    }
+
+    @Test
+    void branchAheadOfHeadFastForwards() throws IOException {
+        repository.checkout("feature");
+        write("new.txt", "new\n");
+        repository.add("new.txt");
+        repository.commit("feature only");
+        String theirsId = repository.getHeadCommit().getId();
+
+        repository.checkout("master");
+        repository.merge("feature");
+
+        assertEquals(theirsId, repository.getHeadCommit().getId());
+        assertEquals("new\n", read("new.txt"));
+    }
+
+    private static Set<String> files(Commit commit) {
+        Set<String> files = new HashSet<>();
+        commit.getFiles().forEach(files::add);
+        return files;
+    }
+
+    private void write(String path, String content) throws IOException {
+        Files.writeString(root.resolve(path), content);
+    }
+
+    private String read(String path) throws IOException {
+        return Files.readString(root.resolve(path));
+    }
+
+    /**
+     * Deletes a working file and stages the removal the way the index
+     * records it, since there is no remove command.
+     */
+    private void remove(String path) throws IOException {
+        Files.delete(root.resolve(path));
+        Path index = root.resolve(".mini-vcs/index");
+        String staged = Files.exists(index) ? Files.readString(index) : "";
+        Files.writeString(index, staged + path + "=- 0 removed\n");
+        repository.load(root.toString());
+    }
+}
@@ -0,0 +1,106 @@
+package com.tejinder.mini_vcs_api.vcs.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositorySnapshotTests {
+
+    @TempDir
+    Path root;
+
+    private Repository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = Repository.open(root.toString());
+        repository.init(root.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void trackedFileCountFollowsTheIndex() throws IOException {
+        write("a.txt", "a");
+        write("b.txt", "b");
+        repository.add(List.of("a.txt", "b.txt"));
+        assertEquals(2, repository.snapshot().getTrackedFileCount());
+
+        repository.commit("first");
+        assertEquals(2, repository.snapshot().getTrackedFileCount());
+
+        // Restaging a committed file adds nothing; a new one does
+        write("a.txt", "changed");
+        write("c.txt", "c");
+        repository.add(List.of("a.txt", "c.txt"));
+        assertEquals(3, repository.snapshot().getTrackedFileCount());
+
+        // Read back from the index file against the same HEAD
+        Repository reopened = Repository.open(root.toString());
+        try {
+            assertEquals(3, reopened.snapshot().getTrackedFileCount());
+        } finally {
+            reopened.close();
+        }
+
+        repository.commit("second");
+        assertEquals(3, repository.snapshot().getTrackedFileCount());
+    }
+
+    @Test
+    void unchangedIndexIsSharedBetweenSnapshots() throws IOException {
+        write("a.txt", "a");
+        repository.add("a.txt");
+        Map<String, String> index = repository.snapshot().getIndex();
+
+        repository.createBranch("feature");
+
+        assertSame(index, repository.snapshot().getIndex());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void olderSnapshotKeepsItsRefsAcrossCheckoutsAndCommits() throws IOException {
+        write("a.txt", "a");
+        repository.add("a.txt");
+        repository.commit("first");
+        String first = repository.getHeadCommit().getId();
+        repository.createBranch("feature");
+        RepositorySnapshot before = repository.snapshot();
+
+        repository.checkout("feature");
+        write("a.txt", "changed");
+        repository.add("a.txt");
+        repository.commit("second");
+        String second = repository.getHeadCommit().getId();
+
+        assertEquals("master", before.getCurrentBranch());
+        assertEquals(first, before.getHeadId());
+        assertEquals(Map.of("master", first, "feature", first), before.getBranches());
+        assertEquals(1, before.getHistory().countCommits(before.getHeadId()));
+
+        RepositorySnapshot after = repository.snapshot();
+        assertEquals("feature", after.getCurrentBranch());
+        assertEquals(second, after.getBranches().get("feature"));
+        // Both read commits through the same append-only lookup
+        assertEquals(first, before.getHistory().getParentId(second));
+        assertEquals(2, after.getHistory().countCommits(second));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Files.writeString(root.resolve(path), content);
+    }
+}
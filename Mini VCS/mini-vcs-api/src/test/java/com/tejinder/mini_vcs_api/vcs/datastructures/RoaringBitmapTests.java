@@ -0,0 +1,121 @@
+package vcs.datastructures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RoaringBitmapTests {
+
+    // Spans several 65536-value containers
+    private static final int UNIVERSE = 5 * 65536;
+
+    @Test
+    void addAndContainsAcrossTheArrayToBitmapSwitch() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+
+        // One container grows past the array limit and becomes a bitmap
+        for (int value = 0; value < 10_000; value += 2) {
+            assertTrue(bitmap.add(value));
+        }
+        assertFalse(bitmap.add(4));
+
+        assertEquals(5000, bitmap.cardinality());
+        assertTrue(bitmap.contains(9998));
+        assertFalse(bitmap.contains(9999));
+        assertFalse(bitmap.contains(70_000));
+        assertFalse(new RoaringBitmap().contains(0));
+        assertTrue(new RoaringBitmap().isEmpty());
+    }
+
+    @Test
+    void setOperationsMatchBitSet() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 20; trial++) {
+            BitSet left = randomSet(random);
+            BitSet right = randomSet(random);
+            RoaringBitmap a = toBitmap(left);
+            RoaringBitmap b = toBitmap(right);
+
+            BitSet and = (BitSet) left.clone();
+            and.and(right);
+            BitSet or = (BitSet) left.clone();
+            or.or(right);
+            BitSet andNot = (BitSet) left.clone();
+            andNot.andNot(right);
+
+            assertEquals(and, toBitSet(RoaringBitmap.and(a, b)));
+            assertEquals(or, toBitSet(RoaringBitmap.or(a, b)));
+            assertEquals(andNot, toBitSet(RoaringBitmap.andNot(a, b)));
+
+            RoaringBitmap merged = a.copy();
+            merged.orWith(b);
+            assertEquals(or, toBitSet(merged));
+            assertEquals(left, toBitSet(a), "copy shares state with the original");
+            assertEquals(or.cardinality(), merged.cardinality());
+        }
+    }
+
+    @Test
+    void serializationRoundTrips() throws IOException {
+        Random random = new Random(12);
+        BitSet values = randomSet(random);
+        RoaringBitmap bitmap = toBitmap(values);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.writeTo(new DataOutputStream(bytes));
+        RoaringBitmap read = RoaringBitmap.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(values, toBitSet(read));
+        assertEquals(bitmap.cardinality(), read.cardinality());
+    }
+
+    @Test
+    void forEachVisitsValuesInAscendingOrder() {
+        RoaringBitmap bitmap = toBitmap(randomSet(new Random(13)));
+        int[] previous = {-1};
+
+        bitmap.forEach(value -> {
+            assertTrue(value > previous[0]);
+            previous[0] = value;
+        });
+    }
+
+    /** Mixes dense containers, sparse ones and empty gaps. */
+    private static BitSet randomSet(Random random) {
+        BitSet set = new BitSet(UNIVERSE);
+        for (int container = 0; container < UNIVERSE / 65536; container++) {
+            int density = random.nextInt(4);
+            if (density == 0) {
+                continue;
+            }
+            int count = density == 1 ? random.nextInt(100) : density == 2 ? 3000 + random.nextInt(2000) : 30_000;
+            for (int i = 0; i < count; i++) {
+                set.set(container * 65536 + random.nextInt(65536));
+            }
+        }
+        return set;
+    }
+
+    private static RoaringBitmap toBitmap(BitSet set) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        set.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static BitSet toBitSet(RoaringBitmap bitmap) {
+        BitSet set = new BitSet(UNIVERSE);
+        bitmap.forEach(set::set);
+        return set;
+    }
+}
@@ -0,0 +1,120 @@
+package vcs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class TaskScopeTests {
+
+    // Long enough that a subtask still waiting this out was never cancelled
+    private static final long BLOCK_SECONDS = 30;
+
+    @Test
+    void joinReturnsResultsInForkOrder() throws Exception {
+        CountDownLatch second = new CountDownLatch(1);
+        try (TaskScope<String> scope = TaskScope.open()) {
+            scope.fork(() -> {
+                second.await();
+                return "first";
+            });
+            scope.fork(() -> {
+                second.countDown();
+                return "second";
+            });
+
+            assertEquals(List.of("first", "second"), scope.join());
+        }
+    }
+
+    @Test
+    void failureCancelsTheOtherSubtasksAtOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long begin = System.nanoTime();
+
+        try (TaskScope<String> scope = TaskScope.open()) {
+            // Forked first, so join would wait on it before seeing the failure
+            Future<String> slow = scope.fork(() -> {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await(BLOCK_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "slow";
+            });
+            scope.fork(() -> {
+                started.await();
+                throw new IOException("boom");
+            });
+
+            ExecutionException failure = assertThrows(ExecutionException.class, scope::join);
+
+            assertEquals("boom", failure.getCause().getMessage());
+            assertTrue(slow.isCancelled());
+        }
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "the slow subtask was not interrupted");
+        assertTrue(System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(BLOCK_SECONDS / 2));
+    }
+
+    @Test
+    void closeCancelsSubtasksThatWereNotJoined() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<String> slow;
+
+        try (TaskScope<String> scope = TaskScope.open()) {
+            slow = scope.fork(() -> {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await(BLOCK_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "slow";
+            });
+            started.await();
+        }
+
+        assertTrue(slow.isCancelled());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "the subtask outlived its scope");
+    }
+
+    @Test
+    void boundedScopeRunsAtMostItsLimitAtOnce() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        try (TaskScope<Integer> scope = TaskScope.open(3)) {
+            for (int i = 0; i < 30; i++) {
+                int n = i;
+                scope.fork(() -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(2);
+                    running.decrementAndGet();
+                    return n;
+                });
+            }
+
+            List<Integer> results = scope.join();
+            assertEquals(30, results.size());
+            assertEquals(29, results.get(29));
+        }
+
+        assertTrue(peak.get() <= 3, "peak " + peak.get());
+        assertThrows(IllegalArgumentException.class, () -> TaskScope.open(0));
+    }
+}
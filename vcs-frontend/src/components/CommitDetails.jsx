@@ -5,9 +5,48 @@ import {
   FolderTree,
   FileText,
 } from "lucide-react";
+import { useEffect, useState } from "react";
+import { streamDiff } from "../services/vcsApi";
+
+const lineColor = (line) => {
+  if (line.startsWith("+")) return "bg-green-50 text-green-800";
+  if (line.startsWith("-")) return "bg-red-50 text-red-800";
+  return "text-gray-600";
+};
 
 export default function CommitDetails({ commit }) {
 
+  const [diffs, setDiffs] = useState([]);
+  const [diffError, setDiffError] = useState(null);
+
+  useEffect(() => {
+
+    if (!commit?.id) return;
+
+    setDiffs([]);
+    setDiffError(null);
+
+    // Files are appended as the server finishes them
+    const controller = new AbortController();
+
+    streamDiff({ to: commit.id }, (record) => {
+      setDiffs((current) => {
+        if (record.type === "file") {
+          return [...current, { ...record, hunks: [] }];
+        }
+        const last = current[current.length - 1];
+        return [
+          ...current.slice(0, -1),
+          { ...last, hunks: [...last.hunks, record] },
+        ];
+      });
+    }, controller.signal).catch((error) => {
+      if (error.name !== "AbortError") setDiffError(error.message);
+    });
+
+    return () => controller.abort();
+  }, [commit?.id]);
+
   if (!commit) {
     return (
       <div className="bg-white rounded-3xl p-6">
@@ -144,26 +183,59 @@ export default function CommitDetails({ commit }) {
 
           <div className="space-y-2">
 
-            {commit.files?.map((file) => (
+            {diffError && (
+              <p className="text-sm text-red-600">{diffError}</p>
+            )}
+
+            {diffs.map((file) => (
 
               <div
-                key={file}
+                key={file.path}
                 className="
-        flex
-        items-center
-        gap-3
         bg-gray-50
         rounded-xl
         p-3
         "
               >
 
-                <FileText
-                  size={16}
-                  className="text-gray-400"
-                />
+                <div className="flex items-center gap-3">
+
+                  <FileText
+                    size={16}
+                    className="text-gray-400"
+                  />
+
+                  <span>{file.path}</span>
+
+                  <span className="text-xs text-gray-400 uppercase">
+                    {file.status}
+                  </span>
+
+                </div>
+
+                {(file.binary || file.tooLarge) && (
+                  <p className="text-xs text-gray-500 mt-2">
+                    {file.binary ? "Binary file" : "Too large to diff"}
+                  </p>
+                )}
+
+                {file.hunks.map((hunk) => (
+
+                  <pre
+                    key={`${hunk.oldStart}-${hunk.newStart}`}
+                    className="text-xs font-mono mt-2 overflow-x-auto"
+                  >
+                    <div className="text-blue-600">
+                      {`@@ -${hunk.oldStart},${hunk.oldLines} +${hunk.newStart},${hunk.newLines} @@`}
+                    </div>
+                    {hunk.lines.map((line, i) => (
+                      <div key={i} className={lineColor(line)}>
+                        {line}
+                      </div>
+                    ))}
+                  </pre>
 
-                <span>{file}</span>
+                ))}
 
               </div>
 
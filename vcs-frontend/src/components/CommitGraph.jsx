@@ -11,86 +11,91 @@ const nodeTypes = {
   gitCommit: GitCommitNode,
 };
 
+// Rows fetched per request; the server lays out the whole graph once
+const GRAPH_WINDOW = 100;
+const LANE_WIDTH = 60;
+const ROW_HEIGHT = 100;
+
 export default function CommitGraph() {
-  const [nodes, setNodes] = useState([]);
-  const [edges, setEdges] = useState([]);
-  const nodeTypes = {
-    gitCommit: GitCommitNode,
-  };
+  const [rows, setRows] = useState([]);
+  const [total, setTotal] = useState(0);
+  const [loading, setLoading] = useState(false);
 
-  useEffect(() => {
+  const loadMore = () => {
+
+    setLoading(true);
 
     vcsApi
-      .get("/commits")
+      .get("/graph", {
+        params: { start: rows.length, limit: GRAPH_WINDOW },
+      })
       .then((response) => {
 
-        console.log(response.data);
-
-        generateGraph(response.data);
+        setRows((current) => [...current, ...response.data.rows]);
+        setTotal(response.data.total);
 
       })
       .catch((err) => {
 
         console.error(err);
 
-      });
-
-  }, []);
-
-  const generateGraph = (commits) => {
-
-    const graphNodes = [];
-    const graphEdges = [];
+      })
+      .finally(() => setLoading(false));
 
-    commits.forEach((commit, index) => {
+  };
 
-      graphNodes.push({
+  useEffect(() => {
 
-        id: commit.id,
+    loadMore();
 
-        type: "gitCommit",
+  }, []);
 
-        position: {
-          x: 300,
-          y: 80 + index * 160,
-        },
+  const loaded = new Set(rows.map((commit) => commit.id));
 
-        data: {
-          message: commit.message,
-          hash: commit.id.substring(0, 7),
-          head: commit.head,
-        },
+  const nodes = rows.map((commit) => ({
 
-      });
+    id: commit.id,
 
-      if (commit.parent) {
+    type: "gitCommit",
 
-        graphEdges.push({
+    position: {
+      x: 80 + commit.lane * LANE_WIDTH,
+      y: 80 + commit.row * ROW_HEIGHT,
+    },
 
-          id: `${commit.parent}-${commit.id}`,
+    data: {
+      message: commit.message,
+      hash: commit.id.substring(0, 7),
+      head: commit.head,
+      branch: commit.branches.join(", "),
+      timestamp: commit.timestamp,
+    },
 
-          source: commit.parent,
+  }));
 
-          target: commit.id,
+  // Edges to parents further down appear once their window is loaded
+  const edges = rows.flatMap((commit) =>
+    commit.parents
+      .filter((parent) => loaded.has(parent))
+      .map((parent) => ({
 
-          type: "step",
+        id: `${parent}-${commit.id}`,
 
-          animated: true,
+        source: parent,
 
-          style: {
-            stroke: "#f59e0b",
-            strokeWidth: 3,
-          },
+        target: commit.id,
 
-        });
-      }
+        type: "step",
 
-    });
+        animated: true,
 
-    setNodes(graphNodes);
-    setEdges(graphEdges);
+        style: {
+          stroke: "#f59e0b",
+          strokeWidth: 3,
+        },
 
-  };
+      }))
+  );
 
   return (
     <div
@@ -101,6 +106,7 @@ export default function CommitGraph() {
       border
       border-gray-100
       overflow-hidden
+      relative
       "
     >
       <ReactFlow
@@ -114,6 +120,27 @@ export default function CommitGraph() {
         elementsSelectable={false}
         zoomOnScroll={false}
       />
+
+      {rows.length < total && (
+        <button
+          onClick={loadMore}
+          disabled={loading}
+          className="
+          absolute
+          bottom-4
+          left-1/2
+          -translate-x-1/2
+          px-4
+          py-2
+          rounded-full
+          bg-amber-500
+          text-white
+          text-sm
+          "
+        >
+          {loading ? "Loading..." : "Load older commits"}
+        </button>
+      )}
     </div>
   );
 }
\ No newline at end of file
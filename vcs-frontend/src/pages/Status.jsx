@@ -3,7 +3,7 @@ import MainLayout from "../layout/MainLayout";
 import FileStatusCard from "../components/FileStatusCard";
 
 import { useEffect, useState } from "react";
-import vcsApi from "../services/vcsApi";
+import vcsApi, { subscribeToEvents } from "../services/vcsApi";
 
 export default function Status() {
   const [statusData, setStatusData] =
@@ -14,13 +14,23 @@ export default function Status() {
     });
   useEffect(() => {
 
-    vcsApi
-      .get("/status")
-      .then((response) => {
+    const loadStatus = () =>
+      vcsApi
+        .get("/status")
+        .then((response) => {
 
-        setStatusData(response.data);
+          setStatusData(response.data);
 
-      });
+        });
+
+    loadStatus();
+
+    // Commits alone do not change the status; everything else can
+    return subscribeToEvents((type) => {
+      if (type !== "commit-created") {
+        loadStatus();
+      }
+    });
 
   }, []);
   return (
@@ -1,5 +1,65 @@
 import axios from "axios";
 
-export default axios.create({
+const vcsApi = axios.create({
   baseURL: "http://localhost:8080/api",
-});
\ No newline at end of file
+});
+
+const EVENT_TYPES = [
+  "commit-created",
+  "ref-moved",
+  "index-changed",
+  "worktree-changed",
+  "resync",
+];
+
+// Calls onEvent(type, data) for every change the API pushes.
+// Returns a function that closes the stream.
+export function subscribeToEvents(onEvent) {
+  const source = new EventSource(`${vcsApi.defaults.baseURL}/events`);
+
+  EVENT_TYPES.forEach((type) => {
+    source.addEventListener(type, (event) => {
+      onEvent(type, JSON.parse(event.data));
+    });
+  });
+
+  return () => source.close();
+}
+
+// Streams GET /diff, calling onRecord(record) for each "file" and "hunk"
+// record as it arrives, so large diffs never sit in memory all at once.
+// Pass an AbortSignal to stop reading early.
+export async function streamDiff({ from, to, path }, onRecord, signal) {
+  const params = new URLSearchParams();
+  if (from) params.set("from", from);
+  if (to) params.set("to", to);
+  if (path) params.set("path", path);
+
+  const response = await fetch(
+    `${vcsApi.defaults.baseURL}/diff?${params}`,
+    { signal }
+  );
+  if (!response.ok) {
+    throw new Error(await response.text());
+  }
+
+  const reader = response.body
+    .pipeThrough(new TextDecoderStream())
+    .getReader();
+  let buffered = "";
+
+  for (;;) {
+    const { value, done } = await reader.read();
+    if (done) break;
+
+    buffered += value;
+    const lines = buffered.split("\n");
+    buffered = lines.pop();
+    lines.filter(Boolean).forEach((line) => onRecord(JSON.parse(line)));
+  }
+  if (buffered) {
+    onRecord(JSON.parse(buffered));
+  }
+}
+
+export default vcsApi;
\ No newline at end of file